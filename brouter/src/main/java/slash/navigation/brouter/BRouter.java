@@ -35,6 +35,7 @@ import java.util.*;
 import java.util.logging.Logger;
 import java.util.prefs.Preferences;
 
+import static java.lang.Math.max;
 import static java.lang.String.format;
 import static java.lang.System.currentTimeMillis;
 import static java.util.Arrays.asList;
@@ -62,6 +63,7 @@ public class BRouter extends BaseRoutingService {
 
     private final DownloadManager downloadManager;
     private DataSource profiles, segments;
+    private String routingDataVersion;
 
     public BRouter(DownloadManager downloadManager) {
         this.downloadManager = downloadManager;
@@ -86,6 +88,7 @@ public class BRouter extends BaseRoutingService {
     public synchronized void setProfilesAndSegments(DataSource profiles, DataSource segments) {
         this.profiles = profiles;
         this.segments = segments;
+        invalidateRoutingDataVersion();
     }
 
     public boolean isDownload() {
@@ -108,6 +111,11 @@ public class BRouter extends BaseRoutingService {
         return false;
     }
 
+    public boolean isSupportParallelRouting() {
+        // every route is calculated with its own RoutingContext and RoutingEngine
+        return true;
+    }
+
     public List<TravelMode> getAvailableTravelModes() {
         List<TravelMode> result = new ArrayList<>();
         if (getProfiles() != null) {
@@ -131,6 +139,28 @@ public class BRouter extends BaseRoutingService {
 
     public void setPath(String path) {
         preferences.put(DIRECTORY_PREFERENCE, path);
+        invalidateRoutingDataVersion();
+    }
+
+    public synchronized String getRoutingDataVersion() {
+        if (routingDataVersion == null && isInitialized())
+            routingDataVersion = getLastModified(getProfilesDirectory()) + "/" + getLastModified(getSegmentsDirectory());
+        return routingDataVersion;
+    }
+
+    private synchronized void invalidateRoutingDataVersion() {
+        routingDataVersion = null;
+    }
+
+    private long getLastModified(java.io.File directory) {
+        // the directory changes if files are added or removed, the files if they are updated
+        long lastModified = directory.lastModified();
+        java.io.File[] files = directory.listFiles();
+        if (files != null) {
+            for (java.io.File file : files)
+                lastModified = max(lastModified, file.lastModified());
+        }
+        return lastModified;
     }
 
     private String getProfilesBaseUrl() {
@@ -204,42 +234,20 @@ public class BRouter extends BaseRoutingService {
 
         long start = currentTimeMillis();
         try {
-            File profile = new File(getProfilesDirectory(), travelMode.getName() + ".brf");
-            if (!profile.exists()) {
-                profile = new File(getProfilesDirectory(), getPreferredTravelMode().getName() + ".brf");
-                log.warning(format("Failed to find profile for travel mode %s; using preferred travel mode %s", travelMode, getPreferredTravelMode()));
+            File profile = findProfile(travelMode);
+            if (profile == null) {
+                log.warning(format("Cannot route between %s and %s: no travel modes found in %s", from, to, getProfilesDirectory()));
+                return new RoutingResult(asList(from, to), new DistanceAndTime(calculateBearing(from.getLongitude(), from.getLatitude(), to.getLongitude(), to.getLatitude()).getDistance(), null), Invalid);
             }
-            if (!profile.exists()) {
-                List<TravelMode> availableTravelModes = getAvailableTravelModes();
-                if (availableTravelModes.size() == 0) {
-                    log.warning(format("Cannot route between %s and %s: no travel modes found in %s", from, to, getProfilesDirectory()));
-                    return new RoutingResult(asList(from, to), new DistanceAndTime(calculateBearing(from.getLongitude(), from.getLatitude(), to.getLongitude(), to.getLatitude()).getDistance(), null), Invalid);
-                }
-
-                TravelMode firstTravelMode = availableTravelModes.get(0);
-                profile = new File(getProfilesDirectory(), firstTravelMode.getName() + ".brf");
-                log.warning(format("Failed to find profile for travel mode %s; using first travel mode %s", travelMode, firstTravelMode));
-            }
-
-            double bearing = Bearing.calculateBearing(from.getLongitude(), from.getLatitude(),
-                    to.getLongitude(), to.getLatitude()).getDistance();
-            long routingTimeout = (long) (3000L + bearing / 20.0);
-            log.info(format("Distance %f results to default routing timeout %d milliseconds", bearing, routingTimeout));
-
-            RoutingContext routingContext = new RoutingContext();
-            routingContext.localFunction = profile.getPath();
-
-            RoutingEngine routingEngine = new RoutingEngine(null, null, getSegmentsDirectory().getPath(), createWaypoints(from, to), routingContext);
-            routingEngine.quite = true;
-            routingEngine.doRun(preferences.getLong("routingTimeout", routingTimeout));
 
+            RoutingEngine routingEngine = route(profile, asList(from, to));
             if (routingEngine.getErrorMessage() != null)
                 log.severe(format("Error while routing between %s and %s: %s", from, to, routingEngine.getErrorMessage()));
 
             OsmTrack track = routingEngine.getFoundTrack();
             double distance = routingEngine.getDistance();
             Validity validity = routingEngine.getErrorMessage() == null ? Valid : Invalid;
-            return new RoutingResult(asPositions(track), new DistanceAndTime(distance, null), validity);
+            return new RoutingResult(asPositions(track.nodes), new DistanceAndTime(distance, null), validity);
         } finally {
             secondCounter.stop();
 
@@ -248,10 +256,138 @@ public class BRouter extends BaseRoutingService {
         }
     }
 
-    private List<OsmNodeNamed> createWaypoints(NavigationPosition from, NavigationPosition to) {
+    public List<RoutingResult> getRouteVia(List<NavigationPosition> positions, TravelMode travelMode) {
+        if (positions.size() <= 2)
+            return super.getRouteVia(positions, travelMode);
+
+        List<RoutingResult> result = routeVia(positions, travelMode);
+        if (result == null) {
+            // route leg by leg to find out which legs fail
+            log.info(format("BRouter: routing via %d positions failed; routing each leg", positions.size()));
+            return super.getRouteVia(positions, travelMode);
+        }
+        return result;
+    }
+
+    private List<RoutingResult> routeVia(List<NavigationPosition> positions, TravelMode travelMode) {
+        SecondCounter secondCounter = new SecondCounter() {
+            protected void second(int second) {
+                fireRouting(second);
+            }
+        };
+        secondCounter.start();
+
+        long start = currentTimeMillis();
+        try {
+            File profile = findProfile(travelMode);
+            if (profile == null)
+                return null;
+
+            // one engine parses the profile and loads the segments once for all legs
+            RoutingEngine routingEngine = route(profile, positions);
+            if (routingEngine.getErrorMessage() != null)
+                return null;
+
+            OsmTrack track = routingEngine.getFoundTrack();
+            return track != null ? splitIntoLegs(positions, track.nodes) : null;
+        } finally {
+            secondCounter.stop();
+
+            long end = currentTimeMillis();
+            log.info(format("BRouter: routing via %d positions took %d milliseconds", positions.size(), end - start));
+        }
+    }
+
+    private File findProfile(TravelMode travelMode) {
+        File profile = new File(getProfilesDirectory(), travelMode.getName() + ".brf");
+        if (!profile.exists()) {
+            profile = new File(getProfilesDirectory(), getPreferredTravelMode().getName() + ".brf");
+            log.warning(format("Failed to find profile for travel mode %s; using preferred travel mode %s", travelMode, getPreferredTravelMode()));
+        }
+        if (!profile.exists()) {
+            List<TravelMode> availableTravelModes = getAvailableTravelModes();
+            if (availableTravelModes.size() == 0)
+                return null;
+
+            TravelMode firstTravelMode = availableTravelModes.get(0);
+            profile = new File(getProfilesDirectory(), firstTravelMode.getName() + ".brf");
+            log.warning(format("Failed to find profile for travel mode %s; using first travel mode %s", travelMode, firstTravelMode));
+        }
+        return profile;
+    }
+
+    private RoutingEngine route(File profile, List<NavigationPosition> positions) {
+        long routingTimeout = 0L;
+        for (int i = 0; i < positions.size() - 1; i++) {
+            NavigationPosition from = positions.get(i), to = positions.get(i + 1);
+            double bearing = Bearing.calculateBearing(from.getLongitude(), from.getLatitude(),
+                    to.getLongitude(), to.getLatitude()).getDistance();
+            routingTimeout += (long) (3000L + bearing / 20.0);
+        }
+        log.info(format("%d positions result to default routing timeout %d milliseconds", positions.size(), routingTimeout));
+
+        RoutingContext routingContext = new RoutingContext();
+        routingContext.localFunction = profile.getPath();
+
+        RoutingEngine routingEngine = new RoutingEngine(null, null, getSegmentsDirectory().getPath(), createWaypoints(positions), routingContext);
+        routingEngine.quite = true;
+        routingEngine.doRun(preferences.getLong("routingTimeout", routingTimeout));
+        return routingEngine;
+    }
+
+    private List<OsmNodeNamed> createWaypoints(List<NavigationPosition> positions) {
         List<OsmNodeNamed> result = new ArrayList<>();
-        result.add(asOsmNodeNamed(from.getDescription(), from.getLongitude(), from.getLatitude()));
-        result.add(asOsmNodeNamed(to.getDescription(), to.getLongitude(), to.getLatitude()));
+        for (NavigationPosition position : positions)
+            result.add(asOsmNodeNamed(position.getDescription(), position.getLongitude(), position.getLatitude()));
+        return result;
+    }
+
+    /**
+     * Splits the track via the positions into the legs between the positions. The
+     * track passes the positions at the nodes they are matched to, which are the first
+     * nodes with the smallest distance to the positions.
+     */
+    List<RoutingResult> splitIntoLegs(List<NavigationPosition> positions, List<OsmPathElement> nodes) {
+        List<RoutingResult> result = new ArrayList<>();
+        int first = 0;
+        for (int i = 1; i < positions.size(); i++) {
+            int last = nodes.size() - 1;
+            if (i < positions.size() - 1) {
+                NavigationPosition position = positions.get(i);
+                // leave at least one node for each of the remaining legs
+                last = findClosestNode(nodes, asLongitude(position.getLongitude()), asLatitude(position.getLatitude()),
+                        first, nodes.size() - (positions.size() - 1 - i));
+            }
+
+            List<NavigationPosition> leg = asPositions(nodes.subList(first, last + 1));
+            result.add(new RoutingResult(leg, new DistanceAndTime(calculateDistance(leg), null), Valid));
+            first = last;
+        }
+        return result;
+    }
+
+    private int findClosestNode(List<OsmPathElement> nodes, int longitude, int latitude, int fromIndex, int toIndex) {
+        int result = fromIndex;
+        long minimum = Long.MAX_VALUE;
+        for (int i = fromIndex; i < toIndex; i++) {
+            OsmPathElement node = nodes.get(i);
+            long deltaLongitude = node.getILon() - longitude;
+            long deltaLatitude = node.getILat() - latitude;
+            long distance = deltaLongitude * deltaLongitude + deltaLatitude * deltaLatitude;
+            if (distance < minimum) {
+                minimum = distance;
+                result = i;
+            }
+        }
+        return result;
+    }
+
+    private double calculateDistance(List<NavigationPosition> positions) {
+        double result = 0.0;
+        for (int i = 0; i < positions.size() - 1; i++) {
+            NavigationPosition from = positions.get(i), to = positions.get(i + 1);
+            result += calculateBearing(from.getLongitude(), from.getLatitude(), to.getLongitude(), to.getLatitude()).getDistance();
+        }
         return result;
     }
 
@@ -271,9 +407,9 @@ public class BRouter extends BaseRoutingService {
         return latitude != null ? (int) ((latitude + 90.0) * 1000000.0 + 0.5) : 0;
     }
 
-    private List<NavigationPosition> asPositions(OsmTrack track) {
+    private List<NavigationPosition> asPositions(List<OsmPathElement> nodes) {
         List<NavigationPosition> result = new ArrayList<>();
-        for (OsmPathElement element : track.nodes) {
+        for (OsmPathElement element : nodes) {
             result.add(new SimpleNavigationPosition(asLongitude(element.getILon()), asLatitude(element.getILat()), element.getElev(), null));
         }
         return result;
@@ -288,6 +424,9 @@ public class BRouter extends BaseRoutingService {
     }
 
     public DownloadFuture downloadRoutingDataFor(List<LongitudeAndLatitude> longitudeAndLatitudes) {
+        // the routing data may have been updated by the download manager in the meantime
+        invalidateRoutingDataVersion();
+
         Collection<String> uris = new HashSet<>();
         for (LongitudeAndLatitude longitudeAndLatitude : longitudeAndLatitudes) {
             uris.addAll(createFileKeys(longitudeAndLatitude.longitude, longitudeAndLatitude.latitude));
@@ -346,8 +485,10 @@ public class BRouter extends BaseRoutingService {
         for (Downloadable downloadable : segments)
             downloads.add(downloadSegment(downloadable));
 
-        if (!downloads.isEmpty())
+        if (!downloads.isEmpty()) {
             downloadManager.waitForCompletion(downloads);
+            invalidateRoutingDataVersion();
+        }
     }
 
     private Download downloadProfile(Downloadable downloadable) {
@@ -34,8 +34,10 @@ import slash.navigation.routing.TravelMode;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 import static java.io.File.createTempFile;
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
@@ -116,4 +118,20 @@ public class BRouterIT {
         assertEquals(13899.0, result.getDistanceAndTime().getDistance(), 25.0);
         assertNull(result.getDistanceAndTime().getTime());
     }
+
+    @Test
+    public void testGetRouteVia() {
+        NavigationPosition via = new SimpleNavigationPosition(10.12, 53.45);
+        List<RoutingResult> results = router.getRouteVia(asList(FROM, via, TO), getTravelMode("car-test"));
+        assertEquals(2, results.size());
+
+        RoutingResult first = router.getRouteBetween(FROM, via, getTravelMode("car-test"));
+        RoutingResult second = router.getRouteBetween(via, TO, getTravelMode("car-test"));
+        assertEquals(Valid, results.get(0).getValidity());
+        assertEquals(first.getDistanceAndTime().getDistance(), results.get(0).getDistanceAndTime().getDistance(), 50.0);
+        assertEquals(first.getPositions().size(), results.get(0).getPositions().size(), 5);
+        assertEquals(Valid, results.get(1).getValidity());
+        assertEquals(second.getDistanceAndTime().getDistance(), results.get(1).getDistanceAndTime().getDistance(), 50.0);
+        assertEquals(second.getPositions().size(), results.get(1).getPositions().size(), 5);
+    }
 }
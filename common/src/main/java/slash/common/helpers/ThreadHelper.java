@@ -23,6 +23,7 @@ package slash.common.helpers;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.lang.String.format;
 import static javax.swing.SwingUtilities.invokeLater;
@@ -56,16 +57,20 @@ public class ThreadHelper {
         return Executors.newSingleThreadExecutor(new NamedThreadFactory(namePrefix));
     }
 
+    public static ExecutorService createFixedThreadPool(String namePrefix, int threadCount) {
+        return Executors.newFixedThreadPool(threadCount, new NamedThreadFactory(namePrefix));
+    }
+
     private static class NamedThreadFactory implements ThreadFactory {
         private String namePrefix;
-        private int number = 1;
+        private final AtomicInteger number = new AtomicInteger(1);
 
         private NamedThreadFactory(String namePrefix) {
             this.namePrefix = namePrefix;
         }
 
         public Thread newThread(Runnable runnable) {
-            return new Thread(runnable, format("%s-%d", namePrefix, number++));
+            return new Thread(runnable, format("%s-%d", namePrefix, number.getAndIncrement()));
         }
     }
 }
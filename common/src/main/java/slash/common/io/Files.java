@@ -290,13 +290,20 @@ public class Files {
 
     private static final String DEFAULT_ALGORITHM = "SHA1";
 
-    public static String generateChecksum(InputStream inputStream) throws IOException {
-        MessageDigest messageDigest;
+    public static MessageDigest createMessageDigest() throws IOException {
         try {
-            messageDigest = MessageDigest.getInstance(DEFAULT_ALGORITHM);
+            return MessageDigest.getInstance(DEFAULT_ALGORITHM);
         } catch (NoSuchAlgorithmException e) {
             throw new IOException(format("Should no happen: algorithm %s not found", DEFAULT_ALGORITHM), e);
         }
+    }
+
+    public static String generateChecksum(MessageDigest messageDigest) {
+        return encodeBytes(messageDigest.digest());
+    }
+
+    public static String generateChecksum(InputStream inputStream) throws IOException {
+        MessageDigest messageDigest = createMessageDigest();
 
         byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
         int read;
@@ -305,7 +312,7 @@ public class Files {
             messageDigest.update(buffer, 0, read);
         }
 
-        return encodeBytes(messageDigest.digest());
+        return generateChecksum(messageDigest);
     }
 
     public static String generateChecksum(File file) throws IOException {
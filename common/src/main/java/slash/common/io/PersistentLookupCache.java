@@ -0,0 +1,242 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.common.io;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.Logger;
+
+import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static slash.common.helpers.ExceptionHelper.getLocalizedMessage;
+
+/**
+ * A persistent cache for the results of lookups. The entries are appended to a log file
+ * and kept in an in-memory hash index. Entries expire after a time to live and the log
+ * is compacted once it exceeds a maximum size.
+ *
+ * @author Christian Pesch
+ */
+
+public class PersistentLookupCache implements Closeable {
+    private static final Logger log = Logger.getLogger(PersistentLookupCache.class.getName());
+    // identifies logs with length-prefixed UTF-8 keys and values
+    private static final int MAGIC = 0x504C4332;
+    private static final int HEADER_LENGTH = 4;
+
+    private static class Entry {
+        private final long timestamp;
+        private final String value;
+        private final int recordLength;
+
+        private Entry(long timestamp, String value, int recordLength) {
+            this.timestamp = timestamp;
+            this.value = value;
+            this.recordLength = recordLength;
+        }
+    }
+
+    private final File file;
+    private final long timeToLive;
+    private final long maximumByteCount;
+    // in the order of the log, which is the order of the timestamps
+    private final Map<String, Entry> index = new LinkedHashMap<>();
+    private OutputStream output;
+    private long byteCount;
+
+    public PersistentLookupCache(File file, long timeToLive, long maximumByteCount) {
+        this.file = file;
+        this.timeToLive = timeToLive;
+        this.maximumByteCount = maximumByteCount;
+        load();
+    }
+
+    private void load() {
+        if (!file.exists())
+            return;
+
+        try {
+            byte[] bytes = java.nio.file.Files.readAllBytes(file.toPath());
+            ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
+            DataInputStream dataInputStream = new DataInputStream(inputStream);
+            if (bytes.length < HEADER_LENGTH || dataInputStream.readInt() != MAGIC) {
+                log.info(format("Discarding lookup cache %s of %d bytes in an unknown format", file, bytes.length));
+                java.nio.file.Files.delete(file.toPath());
+                return;
+            }
+
+            long validLength = HEADER_LENGTH;
+            try {
+                while (inputStream.available() > 0) {
+                    long timestamp = dataInputStream.readLong();
+                    String key = readString(dataInputStream);
+                    String value = readString(dataInputStream);
+                    long length = bytes.length - inputStream.available();
+                    index.remove(key);
+                    index.put(key, new Entry(timestamp, value, (int) (length - validLength)));
+                    validLength = length;
+                }
+            } catch (IOException e) {
+                // a crash while appending leaves a truncated record at the end of the log
+                log.warning(format("Truncating lookup cache %s from %d to %d bytes", file, bytes.length, validLength));
+                try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                    randomAccessFile.setLength(validLength);
+                }
+            }
+            byteCount = validLength;
+        } catch (IOException e) {
+            log.severe(format("Cannot read lookup cache %s: %s", file, getLocalizedMessage(e)));
+            index.clear();
+            byteCount = 0;
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return entry.timestamp + timeToLive < currentTimeMillis();
+    }
+
+    public synchronized String get(String key) {
+        Entry entry = index.get(key);
+        if (entry == null)
+            return null;
+        if (isExpired(entry)) {
+            index.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    private static String readString(DataInputStream inputStream) throws IOException {
+        int length = inputStream.readInt();
+        // a truncated or corrupt record must not allocate arbitrary amounts of memory
+        if (length < 0 || length > inputStream.available())
+            throw new IOException("Invalid string length " + length);
+        byte[] bytes = new byte[length];
+        inputStream.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeString(DataOutputStream outputStream, String string) throws IOException {
+        // unlike DataOutput#writeUTF not limited to 64 kBytes
+        byte[] bytes = string.getBytes(UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    private byte[] encode(long timestamp, String key, String value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream outputStream = new DataOutputStream(bytes);
+        outputStream.writeLong(timestamp);
+        writeString(outputStream, key);
+        writeString(outputStream, value);
+        outputStream.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeHeader(OutputStream outputStream) throws IOException {
+        new DataOutputStream(outputStream).writeInt(MAGIC);
+    }
+
+    public synchronized void put(String key, String value) {
+        long timestamp = currentTimeMillis();
+        try {
+            byte[] record = encode(timestamp, key, value);
+            if (output == null) {
+                boolean empty = !file.exists() || file.length() == 0;
+                output = new FileOutputStream(file, true);
+                if (empty) {
+                    writeHeader(output);
+                    byteCount = HEADER_LENGTH;
+                }
+            }
+            output.write(record);
+            output.flush();
+
+            index.remove(key);
+            index.put(key, new Entry(timestamp, value, record.length));
+            byteCount += record.length;
+        } catch (IOException e) {
+            log.warning(format("Cannot append %s to lookup cache %s: %s", key, file, getLocalizedMessage(e)));
+            return;
+        }
+
+        if (byteCount > maximumByteCount)
+            compact();
+    }
+
+    /**
+     * Rewrites the log with the entries that are not expired, dropping the oldest
+     * entries until the log uses at most half of the maximum size.
+     */
+    synchronized void compact() {
+        List<Map.Entry<String, Entry>> entries = new ArrayList<>(index.entrySet());
+        int first = entries.size();
+        long compactedByteCount = 0;
+        while (first > 0) {
+            Entry entry = entries.get(first - 1).getValue();
+            if (isExpired(entry) || compactedByteCount + entry.recordLength > maximumByteCount / 2)
+                break;
+            compactedByteCount += entry.recordLength;
+            first--;
+        }
+
+        Map<String, Entry> compacted = new LinkedHashMap<>();
+        for (Map.Entry<String, Entry> entry : entries.subList(first, entries.size()))
+            compacted.put(entry.getKey(), entry.getValue());
+
+        File compactedFile = new File(file.getPath() + ".compact");
+        try {
+            try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(compactedFile))) {
+                writeHeader(outputStream);
+                for (Map.Entry<String, Entry> entry : compacted.entrySet())
+                    outputStream.write(encode(entry.getValue().timestamp, entry.getKey(), entry.getValue().value));
+            }
+
+            closeQuietly();
+            java.nio.file.Files.move(compactedFile.toPath(), file.toPath(), REPLACE_EXISTING);
+            index.clear();
+            index.putAll(compacted);
+            byteCount = HEADER_LENGTH + compactedByteCount;
+            log.info(format("Compacted lookup cache %s to %d entries with %d bytes", file, index.size(), byteCount));
+        } catch (IOException e) {
+            log.warning(format("Cannot compact lookup cache %s: %s", file, getLocalizedMessage(e)));
+        }
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    synchronized long getByteCount() {
+        return byteCount;
+    }
+
+    private void closeQuietly() {
+        InputOutput.closeQuietly(output);
+        output = null;
+    }
+
+    public synchronized void close() {
+        closeQuietly();
+    }
+}
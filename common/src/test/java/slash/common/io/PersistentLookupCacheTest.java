@@ -0,0 +1,161 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.common.io;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static java.io.File.createTempFile;
+import static org.junit.Assert.*;
+
+public class PersistentLookupCacheTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = createTempFile("lookup", ".cache");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        if (file.exists())
+            assertTrue(file.delete());
+    }
+
+    @Test
+    public void testPutAndGet() {
+        PersistentLookupCache cache = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+        assertNull(cache.get("a"));
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("a", "3");
+        assertEquals("3", cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        cache.close();
+    }
+
+    @Test
+    public void testPersists() {
+        PersistentLookupCache cache = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("a", "3");
+        cache.close();
+
+        PersistentLookupCache reloaded = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+        assertEquals(2, reloaded.size());
+        assertEquals("3", reloaded.get("a"));
+        assertEquals("2", reloaded.get("b"));
+        reloaded.close();
+    }
+
+    @Test
+    public void testExpires() {
+        PersistentLookupCache cache = new PersistentLookupCache(file, -1, 1024 * 1024);
+        cache.put("a", "1");
+        assertNull(cache.get("a"));
+        cache.close();
+    }
+
+    @Test
+    public void testToleratesTruncatedTail() throws IOException {
+        PersistentLookupCache cache = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.close();
+
+        long length = file.length();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(length - 1);
+        }
+
+        PersistentLookupCache reloaded = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+        assertEquals("1", reloaded.get("a"));
+        assertNull(reloaded.get("b"));
+        reloaded.put("b", "3");
+        reloaded.close();
+
+        PersistentLookupCache again = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+        assertEquals("1", again.get("a"));
+        assertEquals("3", again.get("b"));
+        again.close();
+    }
+
+    @Test
+    public void testPersistsLongValues() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100000; i++)
+            builder.append((char) ('a' + i % 26)).append('\u00e4');
+        String value = builder.toString();
+
+        PersistentLookupCache cache = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+        cache.put("long", value);
+        cache.close();
+
+        PersistentLookupCache reloaded = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+        assertEquals(value, reloaded.get("long"));
+        reloaded.close();
+    }
+
+    @Test
+    public void testDiscardsUnknownFormat() throws IOException {
+        try (DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(file))) {
+            outputStream.writeLong(0L);
+            outputStream.writeUTF("a");
+            outputStream.writeUTF("1");
+        }
+
+        PersistentLookupCache cache = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+        assertEquals(0, cache.size());
+        cache.put("b", "2");
+        cache.close();
+
+        PersistentLookupCache reloaded = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+        assertNull(reloaded.get("a"));
+        assertEquals("2", reloaded.get("b"));
+        reloaded.close();
+    }
+
+    @Test
+    public void testCompacts() {
+        PersistentLookupCache cache = new PersistentLookupCache(file, 60 * 1000, 1000);
+        for (int i = 0; i < 100; i++)
+            cache.put("key" + i, "value" + i);
+        assertTrue(cache.getByteCount() <= 1000);
+        assertTrue(file.length() <= 1000);
+        assertEquals("value99", cache.get("key99"));
+        assertNull(cache.get("key0"));
+        cache.close();
+
+        PersistentLookupCache reloaded = new PersistentLookupCache(file, 60 * 1000, 1000);
+        assertEquals(cache.size(), reloaded.size());
+        assertEquals("value99", reloaded.get("key99"));
+        reloaded.close();
+    }
+}
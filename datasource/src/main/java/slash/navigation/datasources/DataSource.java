@@ -20,6 +20,8 @@
 
 package slash.navigation.datasources;
 
+import slash.navigation.common.BoundingBox;
+
 import java.util.List;
 
 /**
@@ -45,4 +47,5 @@ public interface DataSource {
 
     Downloadable getDownloadableBySHA1(String sha1);
     Fragment<Downloadable> getFragmentBySHA1(String sha1);
+    List<File> getFilesContaining(BoundingBox boundingBox);
 }
@@ -20,6 +20,9 @@
 
 package slash.navigation.datasources;
 
+import slash.navigation.datasources.binding.CatalogType;
+import slash.navigation.datasources.binding.DatasourceType;
+import slash.navigation.datasources.helpers.CatalogSnapshot;
 import slash.navigation.datasources.helpers.DataSourceService;
 import slash.navigation.download.Action;
 import slash.navigation.download.Download;
@@ -35,8 +38,10 @@ import java.util.logging.Logger;
 
 import static java.lang.String.format;
 import static java.util.Collections.singletonList;
+import static slash.common.helpers.ExceptionHelper.getLocalizedMessage;
 import static slash.common.io.Directories.ensureDirectory;
 import static slash.common.io.Directories.getApplicationDirectory;
+import static slash.navigation.datasources.helpers.DataSourcesUtil.unmarshal;
 import static slash.navigation.download.Action.*;
 
 /**
@@ -53,6 +58,7 @@ public class DataSourceManager {
     public static final String DATASOURCES_URI = V1 + "datasources/";
     public static final String FORMAT_XML = "?format=xml";
     private static final String DOT_XML = ".xml";
+    private static final String DOT_SNAPSHOT = ".snapshot";
     public static final String DOT_ZIP = ".zip";
 
     private final DownloadManager downloadManager;
@@ -78,11 +84,11 @@ public class DataSourceManager {
     public void initialize(String edition, java.io.File directory) throws IOException, JAXBException {
         java.io.File file = new File(directory, edition + DOT_XML);
         log.info(format("Initializing edition '%s' from %s", edition, file));
-        Edition anEdition = loadEdition(file);
-        if(anEdition == null)
+        DataSourceService service = loadDataSources(edition, directory);
+        if (service == null)
             return;
 
-        this.dataSourceService = loadDataSources(anEdition.getDataSources(), directory);
+        this.dataSourceService = service;
     }
 
     private Edition loadEdition(java.io.File file) throws IOException, JAXBException {
@@ -96,20 +102,65 @@ public class DataSourceManager {
         return editions.size() > 0 ? editions.get(0) : null;
     }
 
-    private DataSourceService loadDataSources(List<DataSource> dataSources, java.io.File directory) throws IOException, JAXBException {
-        DataSourceService result = new DataSourceService();
-        for (DataSource dataSource : new ArrayList<>(dataSources)) {
-            java.io.File file = new java.io.File(directory, dataSource.getId() + DOT_XML);
+    private static CatalogType unmarshalCatalog(java.io.File file) throws IOException, JAXBException {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            return unmarshal(inputStream);
+        }
+    }
+
+    private List<CatalogType> unmarshalCatalogs(java.io.File editionFile, java.io.File directory, List<java.io.File> sources) throws IOException, JAXBException {
+        List<CatalogType> result = new ArrayList<>();
+        CatalogType editionCatalog = unmarshalCatalog(editionFile);
+        sources.add(editionFile);
+        result.add(editionCatalog);
+        if (editionCatalog.getEdition().isEmpty())
+            return result;
+
+        for (DatasourceType datasourceType : editionCatalog.getEdition().get(0).getDatasource()) {
+            java.io.File file = new java.io.File(directory, datasourceType.getId() + DOT_XML);
+            // a missing data source file invalidates the snapshot once it appears
+            sources.add(file);
             log.info(format("Initializing data source from %s", file));
             if (!file.exists()) {
                 log.warning(format("Cannot find data source file %s", file));
                 continue;
             }
 
-            try (InputStream inputStream = new FileInputStream(file)) {
-                result.load(inputStream);
-            }
+            result.add(unmarshalCatalog(file));
+        }
+        return result;
+    }
+
+    /**
+     * Loads the data sources of the edition from a {@link CatalogSnapshot} and unmarshals the
+     * edition and data source XMLs only if they changed since the snapshot was written.
+     */
+    private DataSourceService loadDataSources(String edition, java.io.File directory) throws IOException, JAXBException {
+        java.io.File editionFile = new java.io.File(directory, edition + DOT_XML);
+        if (!editionFile.exists()) {
+            log.warning(format("Cannot find edition file %s", editionFile));
+            return null;
         }
+
+        CatalogSnapshot snapshot = new CatalogSnapshot(new java.io.File(directory, edition + DOT_SNAPSHOT));
+        List<CatalogType> catalogs = snapshot.read();
+        if (catalogs == null) {
+            List<java.io.File> sources = new ArrayList<>();
+            catalogs = unmarshalCatalogs(editionFile, directory, sources);
+            try {
+                snapshot.write(sources, catalogs);
+            } catch (IOException e) {
+                log.warning(format("Cannot write catalog snapshot %s: %s", snapshot.getFile(), getLocalizedMessage(e)));
+            }
+        } else
+            log.info(format("Initialized edition '%s' from snapshot %s", edition, snapshot.getFile()));
+
+        if (catalogs.isEmpty() || catalogs.get(0).getEdition().isEmpty())
+            return null;
+
+        DataSourceService result = new DataSourceService();
+        for (CatalogType catalogType : catalogs.subList(1, catalogs.size()))
+            result.load(catalogType);
         return result;
     }
 
@@ -122,7 +173,10 @@ public class DataSourceManager {
             return;
 
         downloadDataSources(anEdition.getDataSources(), directory);
-        this.dataSourceService = loadDataSources(anEdition.getDataSources(), directory);
+        DataSourceService service = loadDataSources(edition, directory);
+        if (service == null)
+            return;
+        this.dataSourceService = service;
 
         updateQueueFromDataSources();
     }
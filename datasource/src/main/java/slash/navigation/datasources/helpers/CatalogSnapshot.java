@@ -0,0 +1,387 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.datasources.helpers;
+
+import slash.navigation.datasources.binding.*;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static slash.common.helpers.ExceptionHelper.getLocalizedMessage;
+import static slash.common.io.Files.generateChecksum;
+import static slash.common.type.HexadecimalNumber.decodeBytes;
+import static slash.common.type.HexadecimalNumber.encodeBytes;
+
+/**
+ * A compact binary snapshot of {@link CatalogType}s that avoids unmarshalling the catalog XMLs
+ * at every start. Strings are stored once in a table, SHA-1 checksums as bytes and the snapshot
+ * records the SHA-1 of every source XML so that it is only used while the XMLs are unchanged.
+ *
+ * @author Christian Pesch
+ */
+
+public class CatalogSnapshot {
+    private static final Logger log = Logger.getLogger(CatalogSnapshot.class.getName());
+    private static final int MAGIC = 0x52435343;
+    private static final int VERSION = 1;
+    private static final Pattern SHA1_PATTERN = Pattern.compile("[0-9A-F]{40}");
+    private static final String MISSING = "";
+    private static final byte NO_SHA1 = 0;
+    private static final byte BINARY_SHA1 = 1;
+    private static final byte STRING_SHA1 = 2;
+
+    private final File file;
+    private final DatatypeFactory datatypeFactory;
+
+    public CatalogSnapshot(File file) {
+        this.file = file;
+        try {
+            this.datatypeFactory = DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            throw new IllegalStateException("Cannot create datatype factory", e);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private static String createChecksum(File source) throws IOException {
+        return source.exists() ? generateChecksum(source) : MISSING;
+    }
+
+    /**
+     * Reads the catalogs if the snapshot exists and none of its source XMLs has changed.
+     *
+     * @return the catalogs in the order they were written or null if the snapshot cannot be used
+     */
+    public List<CatalogType> read() {
+        if (!file.exists())
+            return null;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            MappedByteBuffer buffer = channel.map(READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                return null;
+
+            int sourceCount = buffer.getInt();
+            for (int i = 0; i < sourceCount; i++) {
+                File source = new File(readString(buffer));
+                String checksum = readString(buffer);
+                if (!checksum.equals(createChecksum(source))) {
+                    log.info(format("Catalog snapshot %s is outdated since %s changed", file, source));
+                    return null;
+                }
+            }
+
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++)
+                strings[i] = readString(buffer);
+
+            int catalogCount = buffer.getInt();
+            List<CatalogType> result = new ArrayList<>(catalogCount);
+            for (int i = 0; i < catalogCount; i++)
+                result.add(readCatalog(buffer, strings));
+            return result;
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            log.warning(format("Cannot read catalog snapshot %s: %s", file, getLocalizedMessage(e)));
+            return null;
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buffer, String[] strings) {
+        int index = buffer.getInt();
+        return index < 0 ? null : strings[index];
+    }
+
+    private CatalogType readCatalog(ByteBuffer buffer, String[] strings) {
+        ObjectFactory objectFactory = new ObjectFactory();
+        CatalogType catalogType = objectFactory.createCatalogType();
+        int editionCount = buffer.getInt();
+        for (int i = 0; i < editionCount; i++) {
+            EditionType editionType = objectFactory.createEditionType();
+            editionType.setId(readString(buffer, strings));
+            editionType.setName(readString(buffer, strings));
+            editionType.setHref(readString(buffer, strings));
+            int datasourceCount = buffer.getInt();
+            for (int j = 0; j < datasourceCount; j++)
+                editionType.getDatasource().add(readDatasource(buffer, strings));
+            catalogType.getEdition().add(editionType);
+        }
+        int datasourceCount = buffer.getInt();
+        for (int i = 0; i < datasourceCount; i++)
+            catalogType.getDatasource().add(readDatasource(buffer, strings));
+        return catalogType;
+    }
+
+    private DatasourceType readDatasource(ByteBuffer buffer, String[] strings) {
+        ObjectFactory objectFactory = new ObjectFactory();
+        DatasourceType datasourceType = objectFactory.createDatasourceType();
+        datasourceType.setId(readString(buffer, strings));
+        datasourceType.setName(readString(buffer, strings));
+        datasourceType.setHref(readString(buffer, strings));
+        datasourceType.setBaseUrl(readString(buffer, strings));
+        datasourceType.setDirectory(readString(buffer, strings));
+        String action = readString(buffer, strings);
+        datasourceType.setAction(action != null ? ActionType.fromValue(action) : null);
+
+        int fileCount = buffer.getInt();
+        for (int i = 0; i < fileCount; i++) {
+            FileType fileType = objectFactory.createFileType();
+            readDownloadable(buffer, strings, fileType);
+            fileType.setBoundingBox(readBoundingBox(buffer));
+            datasourceType.getFile().add(fileType);
+        }
+        int mapCount = buffer.getInt();
+        for (int i = 0; i < mapCount; i++) {
+            MapType mapType = objectFactory.createMapType();
+            readDownloadable(buffer, strings, mapType);
+            mapType.setBoundingBox(readBoundingBox(buffer));
+            datasourceType.getMap().add(mapType);
+        }
+        int themeCount = buffer.getInt();
+        for (int i = 0; i < themeCount; i++) {
+            ThemeType themeType = objectFactory.createThemeType();
+            readDownloadable(buffer, strings, themeType);
+            themeType.setImageUrl(readString(buffer, strings));
+            datasourceType.getTheme().add(themeType);
+        }
+        return datasourceType;
+    }
+
+    private void readDownloadable(ByteBuffer buffer, String[] strings, DownloadableType downloadableType) {
+        downloadableType.setUri(readString(buffer, strings));
+        readChecksums(buffer, strings, downloadableType.getChecksum());
+        int fragmentCount = buffer.getInt();
+        for (int i = 0; i < fragmentCount; i++) {
+            FragmentType fragmentType = new ObjectFactory().createFragmentType();
+            fragmentType.setKey(readString(buffer, strings));
+            readChecksums(buffer, strings, fragmentType.getChecksum());
+            downloadableType.getFragment().add(fragmentType);
+        }
+    }
+
+    private void readChecksums(ByteBuffer buffer, String[] strings, List<ChecksumType> checksumTypes) {
+        int checksumCount = buffer.getInt();
+        for (int i = 0; i < checksumCount; i++) {
+            ChecksumType checksumType = new ObjectFactory().createChecksumType();
+            if (buffer.get() != 0) {
+                XMLGregorianCalendar lastModified = datatypeFactory.newXMLGregorianCalendar(buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                        buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+                checksumType.setLastModified(lastModified);
+            }
+            if (buffer.get() != 0)
+                checksumType.setContentLength(buffer.getLong());
+
+            byte sha1Type = buffer.get();
+            if (sha1Type == BINARY_SHA1) {
+                byte[] sha1 = new byte[20];
+                buffer.get(sha1);
+                checksumType.setSha1(encodeBytes(sha1));
+            } else if (sha1Type == STRING_SHA1)
+                checksumType.setSha1(readString(buffer, strings));
+            checksumTypes.add(checksumType);
+        }
+    }
+
+    private BoundingBoxType readBoundingBox(ByteBuffer buffer) {
+        if (buffer.get() == 0)
+            return null;
+
+        ObjectFactory objectFactory = new ObjectFactory();
+        BoundingBoxType boundingBoxType = objectFactory.createBoundingBoxType();
+        PositionType northEast = objectFactory.createPositionType();
+        northEast.setLongitude(buffer.getDouble());
+        northEast.setLatitude(buffer.getDouble());
+        boundingBoxType.setNorthEast(northEast);
+        PositionType southWest = objectFactory.createPositionType();
+        southWest.setLongitude(buffer.getDouble());
+        southWest.setLatitude(buffer.getDouble());
+        boundingBoxType.setSouthWest(southWest);
+        return boundingBoxType;
+    }
+
+    /**
+     * Writes the catalogs together with the SHA-1 of the source XMLs they have been read from.
+     */
+    public void write(List<File> sources, List<CatalogType> catalogs) throws IOException {
+        Map<String, Integer> stringToIndex = new LinkedHashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream bodyOutputStream = new DataOutputStream(body);
+        bodyOutputStream.writeInt(catalogs.size());
+        for (CatalogType catalogType : catalogs)
+            writeCatalog(bodyOutputStream, stringToIndex, catalogType);
+        bodyOutputStream.flush();
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(VERSION);
+            outputStream.writeInt(sources.size());
+            for (File source : sources) {
+                writeString(outputStream, source.getPath());
+                writeString(outputStream, createChecksum(source));
+            }
+            outputStream.writeInt(stringToIndex.size());
+            for (String string : stringToIndex.keySet())
+                writeString(outputStream, string);
+            body.writeTo(outputStream);
+        }
+        java.nio.file.Files.move(temp.toPath(), file.toPath(), REPLACE_EXISTING);
+        log.info(format("Wrote catalog snapshot %s with %d catalogs and %d strings", file, catalogs.size(), stringToIndex.size()));
+    }
+
+    private static void writeString(DataOutputStream outputStream, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    private static void writeString(DataOutputStream outputStream, Map<String, Integer> stringToIndex, String string) throws IOException {
+        if (string == null) {
+            outputStream.writeInt(-1);
+            return;
+        }
+        Integer index = stringToIndex.get(string);
+        if (index == null) {
+            index = stringToIndex.size();
+            stringToIndex.put(string, index);
+        }
+        outputStream.writeInt(index);
+    }
+
+    private void writeCatalog(DataOutputStream outputStream, Map<String, Integer> stringToIndex, CatalogType catalogType) throws IOException {
+        outputStream.writeInt(catalogType.getEdition().size());
+        for (EditionType editionType : catalogType.getEdition()) {
+            writeString(outputStream, stringToIndex, editionType.getId());
+            writeString(outputStream, stringToIndex, editionType.getName());
+            writeString(outputStream, stringToIndex, editionType.getHref());
+            outputStream.writeInt(editionType.getDatasource().size());
+            for (DatasourceType datasourceType : editionType.getDatasource())
+                writeDatasource(outputStream, stringToIndex, datasourceType);
+        }
+        outputStream.writeInt(catalogType.getDatasource().size());
+        for (DatasourceType datasourceType : catalogType.getDatasource())
+            writeDatasource(outputStream, stringToIndex, datasourceType);
+    }
+
+    private void writeDatasource(DataOutputStream outputStream, Map<String, Integer> stringToIndex, DatasourceType datasourceType) throws IOException {
+        writeString(outputStream, stringToIndex, datasourceType.getId());
+        writeString(outputStream, stringToIndex, datasourceType.getName());
+        writeString(outputStream, stringToIndex, datasourceType.getHref());
+        writeString(outputStream, stringToIndex, datasourceType.getBaseUrl());
+        writeString(outputStream, stringToIndex, datasourceType.getDirectory());
+        writeString(outputStream, stringToIndex, datasourceType.getAction() != null ? datasourceType.getAction().value() : null);
+
+        outputStream.writeInt(datasourceType.getFile().size());
+        for (FileType fileType : datasourceType.getFile()) {
+            writeDownloadable(outputStream, stringToIndex, fileType);
+            writeBoundingBox(outputStream, fileType.getBoundingBox());
+        }
+        outputStream.writeInt(datasourceType.getMap().size());
+        for (MapType mapType : datasourceType.getMap()) {
+            writeDownloadable(outputStream, stringToIndex, mapType);
+            writeBoundingBox(outputStream, mapType.getBoundingBox());
+        }
+        outputStream.writeInt(datasourceType.getTheme().size());
+        for (ThemeType themeType : datasourceType.getTheme()) {
+            writeDownloadable(outputStream, stringToIndex, themeType);
+            writeString(outputStream, stringToIndex, themeType.getImageUrl());
+        }
+    }
+
+    private void writeDownloadable(DataOutputStream outputStream, Map<String, Integer> stringToIndex, DownloadableType downloadableType) throws IOException {
+        writeString(outputStream, stringToIndex, downloadableType.getUri());
+        writeChecksums(outputStream, stringToIndex, downloadableType.getChecksum());
+        outputStream.writeInt(downloadableType.getFragment().size());
+        for (FragmentType fragmentType : downloadableType.getFragment()) {
+            writeString(outputStream, stringToIndex, fragmentType.getKey());
+            writeChecksums(outputStream, stringToIndex, fragmentType.getChecksum());
+        }
+    }
+
+    private void writeChecksums(DataOutputStream outputStream, Map<String, Integer> stringToIndex, List<ChecksumType> checksumTypes) throws IOException {
+        outputStream.writeInt(checksumTypes.size());
+        for (ChecksumType checksumType : checksumTypes) {
+            XMLGregorianCalendar lastModified = checksumType.getLastModified();
+            outputStream.writeBoolean(lastModified != null);
+            if (lastModified != null) {
+                // the fields may be undefined and thus are written as integers
+                outputStream.writeInt(lastModified.getYear());
+                outputStream.writeInt(lastModified.getMonth());
+                outputStream.writeInt(lastModified.getDay());
+                outputStream.writeInt(lastModified.getHour());
+                outputStream.writeInt(lastModified.getMinute());
+                outputStream.writeInt(lastModified.getSecond());
+                outputStream.writeInt(lastModified.getMillisecond());
+                outputStream.writeInt(lastModified.getTimezone());
+            }
+
+            Long contentLength = checksumType.getContentLength();
+            outputStream.writeBoolean(contentLength != null);
+            if (contentLength != null)
+                outputStream.writeLong(contentLength);
+
+            String sha1 = checksumType.getSha1();
+            if (sha1 == null)
+                outputStream.writeByte(NO_SHA1);
+            else if (SHA1_PATTERN.matcher(sha1).matches()) {
+                outputStream.writeByte(BINARY_SHA1);
+                outputStream.write(decodeBytes(sha1));
+            } else {
+                outputStream.writeByte(STRING_SHA1);
+                writeString(outputStream, stringToIndex, sha1);
+            }
+        }
+    }
+
+    private void writeBoundingBox(DataOutputStream outputStream, BoundingBoxType boundingBoxType) throws IOException {
+        boolean valid = boundingBoxType != null && boundingBoxType.getNorthEast() != null && boundingBoxType.getSouthWest() != null;
+        outputStream.writeBoolean(valid);
+        if (!valid)
+            return;
+
+        outputStream.writeDouble(boundingBoxType.getNorthEast().getLongitude());
+        outputStream.writeDouble(boundingBoxType.getNorthEast().getLatitude());
+        outputStream.writeDouble(boundingBoxType.getSouthWest().getLongitude());
+        outputStream.writeDouble(boundingBoxType.getSouthWest().getLatitude());
+    }
+}
@@ -53,7 +53,10 @@ public class DataSourceService {
     private final List<DataSource> dataSources = new ArrayList<>(1);
 
     public synchronized void load(InputStream inputStream) throws JAXBException {
-        CatalogType catalogType = unmarshal(inputStream);
+        load(unmarshal(inputStream));
+    }
+
+    public synchronized void load(CatalogType catalogType) {
         for (DatasourceType datasourceType : catalogType.getDatasource())
             dataSources.add(new DataSourceImpl(datasourceType));
         for (EditionType editionType : catalogType.getEdition())
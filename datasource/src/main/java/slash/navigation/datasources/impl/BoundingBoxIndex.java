@@ -0,0 +1,125 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.datasources.impl;
+
+import slash.navigation.common.BoundingBox;
+import slash.navigation.common.NavigationPosition;
+
+import java.util.*;
+
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * A grid index of values with {@link BoundingBox}es. Every value is registered in the cells
+ * its bounding box overlaps, values spanning large parts of the world are kept aside and
+ * always checked.
+ *
+ * @author Christian Pesch
+ */
+
+class BoundingBoxIndex<T> {
+    private static final double CELL_SIZE = 5.0;
+    private static final int COLUMN_COUNT = (int) (360 / CELL_SIZE);
+    private static final int ROW_COUNT = (int) (180 / CELL_SIZE);
+    private static final int MAXIMUM_CELL_COUNT = 64;
+
+    private static class Entry<T> {
+        private final BoundingBox boundingBox;
+        private final T value;
+
+        private Entry(BoundingBox boundingBox, T value) {
+            this.boundingBox = boundingBox;
+            this.value = value;
+        }
+    }
+
+    private final java.util.Map<Integer, List<Entry<T>>> cells = new HashMap<>();
+    private final List<Entry<T>> largeEntries = new ArrayList<>();
+    private int size;
+
+    private static int getColumn(double longitude) {
+        return max(0, min(COLUMN_COUNT - 1, (int) floor((longitude + 180.0) / CELL_SIZE)));
+    }
+
+    private static int getRow(double latitude) {
+        return max(0, min(ROW_COUNT - 1, (int) floor((latitude + 90.0) / CELL_SIZE)));
+    }
+
+    private static int getCell(int column, int row) {
+        return row * COLUMN_COUNT + column;
+    }
+
+    void add(BoundingBox boundingBox, T value) {
+        Entry<T> entry = new Entry<>(boundingBox, value);
+        size++;
+
+        int westColumn = getColumn(boundingBox.getSouthWest().getLongitude());
+        int eastColumn = getColumn(boundingBox.getNorthEast().getLongitude());
+        int southRow = getRow(boundingBox.getSouthWest().getLatitude());
+        int northRow = getRow(boundingBox.getNorthEast().getLatitude());
+        if (westColumn > eastColumn || southRow > northRow ||
+                (eastColumn - westColumn + 1) * (northRow - southRow + 1) > MAXIMUM_CELL_COUNT) {
+            largeEntries.add(entry);
+            return;
+        }
+
+        for (int column = westColumn; column <= eastColumn; column++) {
+            for (int row = southRow; row <= northRow; row++) {
+                int cell = getCell(column, row);
+                List<Entry<T>> entries = cells.get(cell);
+                if (entries == null) {
+                    entries = new ArrayList<>(1);
+                    cells.put(cell, entries);
+                }
+                entries.add(entry);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private List<Entry<T>> getCandidates(NavigationPosition position) {
+        List<Entry<T>> entries = cells.get(getCell(getColumn(position.getLongitude()), getRow(position.getLatitude())));
+        if (entries == null)
+            return largeEntries;
+
+        List<Entry<T>> result = new ArrayList<>(entries);
+        result.addAll(largeEntries);
+        return result;
+    }
+
+    /**
+     * Returns the values with a bounding box that contains the given bounding box.
+     */
+    List<T> getContaining(BoundingBox boundingBox) {
+        List<T> result = new ArrayList<>();
+        // a bounding box that contains the given one contains its south west corner
+        for (Entry<T> entry : getCandidates(boundingBox.getSouthWest())) {
+            if (entry.boundingBox.contains(boundingBox))
+                result.add(entry.value);
+        }
+        return result;
+    }
+}
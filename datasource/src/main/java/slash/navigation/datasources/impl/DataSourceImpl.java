@@ -19,6 +19,7 @@
 */
 package slash.navigation.datasources.impl;
 
+import slash.navigation.common.BoundingBox;
 import slash.navigation.datasources.*;
 import slash.navigation.datasources.binding.DatasourceType;
 import slash.navigation.datasources.binding.FileType;
@@ -41,6 +42,9 @@ public class DataSourceImpl implements DataSource {
     private boolean initialized;
     private final java.util.Map<String, Downloadable> downloadableMap = new HashMap<>();
     private final java.util.Map<String, Fragment<Downloadable>> fragmentMap = new HashMap<>();
+    private final java.util.Map<String, Downloadable> downloadableBySHA1Map = new HashMap<>();
+    private final java.util.Map<String, Fragment<Downloadable>> fragmentBySHA1Map = new HashMap<>();
+    private final BoundingBoxIndex<File> fileIndex = new BoundingBoxIndex<>();
 
     public DataSourceImpl(DatasourceType datasourceType) {
         this.datasourceType = datasourceType;
@@ -49,17 +53,32 @@ public class DataSourceImpl implements DataSource {
     private void putDownloadables(List<? extends Downloadable> downloadables) {
         for (Downloadable downloadable : downloadables) {
             downloadableMap.put(downloadable.getUri(), downloadable);
+            putSHA1(downloadable.getLatestChecksum(), downloadable, downloadableBySHA1Map);
 
-            for (Fragment<Downloadable> fragment : downloadable.getFragments())
+            for (Fragment<Downloadable> fragment : downloadable.getFragments()) {
                 fragmentMap.put(fragment.getKey(), fragment);
+                putSHA1(fragment.getLatestChecksum(), fragment, fragmentBySHA1Map);
+            }
         }
     }
 
+    private <T> void putSHA1(Checksum checksum, T value, java.util.Map<String, T> map) {
+        if (checksum != null && checksum.getSHA1() != null && !map.containsKey(checksum.getSHA1()))
+            map.put(checksum.getSHA1(), value);
+    }
+
     private synchronized void initialize() {
         if (initialized)
             return;
 
-        putDownloadables(getFiles());
+        List<File> files = getFiles();
+        putDownloadables(files);
+        for (File file : files) {
+            BoundingBox boundingBox = file.getBoundingBox();
+            if (boundingBox != null)
+                fileIndex.add(boundingBox, file);
+        }
+
         putDownloadables(getMaps());
         putDownloadables(getThemes());
         initialized = true;
@@ -122,22 +141,17 @@ public class DataSourceImpl implements DataSource {
 
     public Downloadable getDownloadableBySHA1(String sha1) {
         initialize();
-        for(Downloadable downloadable : downloadableMap.values()) {
-            Checksum checksum = downloadable.getLatestChecksum();
-            if(checksum != null && sha1.equals(checksum.getSHA1()))
-                return downloadable;
-        }
-        return null;
+        return downloadableBySHA1Map.get(sha1);
     }
 
     public Fragment<Downloadable> getFragmentBySHA1(String sha1) {
         initialize();
-        for(Fragment<Downloadable> fragment : fragmentMap.values()) {
-            Checksum checksum = fragment.getLatestChecksum();
-            if(checksum != null && sha1.equals(checksum.getSHA1()))
-                return fragment;
-        }
-        return null;
+        return fragmentBySHA1Map.get(sha1);
+    }
+
+    public List<File> getFilesContaining(BoundingBox boundingBox) {
+        initialize();
+        return fileIndex.getContaining(boundingBox);
     }
 
     public boolean equals(Object o) {
@@ -0,0 +1,157 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+package slash.navigation.datasources.helpers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import slash.navigation.datasources.binding.*;
+
+import javax.xml.datatype.DatatypeFactory;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import static java.io.File.createTempFile;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+public class CatalogSnapshotTest {
+    private static final String SHA1 = "0123456789ABCDEF0123456789ABCDEF01234567";
+
+    private File source, snapshotFile;
+
+    @Before
+    public void setUp() throws IOException {
+        source = createTempFile("catalog", ".xml");
+        writeSource("<catalog/>");
+        snapshotFile = createTempFile("catalog", ".snapshot");
+        assertTrue(snapshotFile.delete());
+    }
+
+    @After
+    public void tearDown() {
+        if (source.exists())
+            assertTrue(source.delete());
+        // mapped files cannot be deleted on every platform
+        snapshotFile.deleteOnExit();
+    }
+
+    private void writeSource(String content) throws IOException {
+        try (Writer writer = new FileWriter(source)) {
+            writer.write(content);
+        }
+    }
+
+    private CatalogType createCatalog() throws Exception {
+        ChecksumType checksum = new ChecksumType();
+        checksum.setSha1(SHA1);
+        checksum.setContentLength(4711L);
+        checksum.setLastModified(DatatypeFactory.newInstance().newXMLGregorianCalendar("2015-10-28T15:39:26.000Z"));
+
+        PositionType northEast = new PositionType();
+        northEast.setLatitude(48.5);
+        northEast.setLongitude(10.25);
+        PositionType southWest = new PositionType();
+        southWest.setLatitude(47.5);
+        southWest.setLongitude(9.75);
+        BoundingBoxType boundingBox = new BoundingBoxType();
+        boundingBox.setNorthEast(northEast);
+        boundingBox.setSouthWest(southWest);
+
+        FileType file = new FileType();
+        file.setUri("N47E009.hgt");
+        file.setBoundingBox(boundingBox);
+        file.getChecksum().add(checksum);
+
+        DatasourceType datasource = new DatasourceType();
+        datasource.setId("srtm3");
+        datasource.setName("SRTM 3");
+        datasource.setBaseUrl("http://download/srtm3/");
+        datasource.setDirectory("srtm3");
+        datasource.getFile().add(file);
+
+        CatalogType catalog = new CatalogType();
+        catalog.getDatasource().add(datasource);
+        return catalog;
+    }
+
+    @Test
+    public void testReadWithoutSnapshot() {
+        assertNull(new CatalogSnapshot(snapshotFile).read());
+    }
+
+    @Test
+    public void testRoundtrip() throws Exception {
+        CatalogSnapshot snapshot = new CatalogSnapshot(snapshotFile);
+        snapshot.write(singletonList(source), singletonList(createCatalog()));
+
+        List<CatalogType> catalogs = snapshot.read();
+        assertNotNull(catalogs);
+        assertEquals(1, catalogs.size());
+        DatasourceType datasource = catalogs.get(0).getDatasource().get(0);
+        assertEquals("srtm3", datasource.getId());
+        assertEquals("SRTM 3", datasource.getName());
+        assertEquals("http://download/srtm3/", datasource.getBaseUrl());
+        assertEquals("srtm3", datasource.getDirectory());
+        assertNull(datasource.getHref());
+
+        FileType file = datasource.getFile().get(0);
+        assertEquals("N47E009.hgt", file.getUri());
+        assertEquals(48.5, file.getBoundingBox().getNorthEast().getLatitude(), 0.0);
+        assertEquals(9.75, file.getBoundingBox().getSouthWest().getLongitude(), 0.0);
+
+        ChecksumType checksum = file.getChecksum().get(0);
+        assertEquals(SHA1, checksum.getSha1());
+        assertEquals(Long.valueOf(4711L), checksum.getContentLength());
+        assertEquals(createCatalog().getDatasource().get(0).getFile().get(0).getChecksum().get(0).getLastModified().toGregorianCalendar().getTimeInMillis(),
+                checksum.getLastModified().toGregorianCalendar().getTimeInMillis());
+    }
+
+    @Test
+    public void testOutdatedWhenSourceChanges() throws Exception {
+        CatalogSnapshot snapshot = new CatalogSnapshot(snapshotFile);
+        snapshot.write(singletonList(source), singletonList(createCatalog()));
+        assertNotNull(snapshot.read());
+
+        writeSource("<catalog><datasource/></catalog>");
+        assertNull(snapshot.read());
+    }
+
+    @Test
+    public void testOutdatedWhenMissingSourceAppears() throws Exception {
+        File missing = new File(source.getParentFile(), "missing-" + source.getName());
+        CatalogSnapshot snapshot = new CatalogSnapshot(snapshotFile);
+        snapshot.write(asList(source, missing), singletonList(createCatalog()));
+        assertNotNull(snapshot.read());
+
+        try {
+            writeSource("<catalog/>");
+            assertTrue(source.renameTo(missing));
+            assertNull(snapshot.read());
+        } finally {
+            if (missing.exists())
+                assertTrue(missing.delete());
+        }
+    }
+}
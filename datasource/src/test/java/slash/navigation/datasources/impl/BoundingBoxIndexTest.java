@@ -0,0 +1,72 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.datasources.impl;
+
+import org.junit.Test;
+import slash.navigation.common.BoundingBox;
+
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BoundingBoxIndexTest {
+    private BoundingBox box(double west, double south, double east, double north) {
+        return new BoundingBox(east, north, west, south);
+    }
+
+    @Test
+    public void testContaining() {
+        BoundingBoxIndex<String> index = new BoundingBoxIndex<>();
+        index.add(box(5.8, 47.2, 15.1, 55.1), "germany");
+        index.add(box(9.5, 46.3, 17.2, 49.1), "austria");
+        index.add(box(11.3, 48.0, 11.8, 48.3), "munich");
+        index.add(box(-180.0, -90.0, 180.0, 90.0), "world");
+        index.add(box(-74.3, 40.4, -73.6, 41.0), "new york");
+        assertEquals(5, index.size());
+
+        assertEquals(asList("germany", "austria", "munich", "world"), index.getContaining(box(11.5, 48.1, 11.6, 48.2)));
+        assertEquals(asList("germany", "austria", "world"), index.getContaining(box(11.0, 47.5, 12.0, 48.5)));
+        assertEquals(asList("new york", "world"), index.getContaining(box(-74.0, 40.7, -73.9, 40.8)));
+        assertEquals(singletonList("world"), index.getContaining(box(100.0, -10.0, 101.0, -9.0)));
+    }
+
+    @Test
+    public void testContainingAcrossCells() {
+        BoundingBoxIndex<String> index = new BoundingBoxIndex<>();
+        index.add(box(-1.0, -1.0, 1.0, 1.0), "origin");
+        assertEquals(singletonList("origin"), index.getContaining(box(-0.5, -0.5, 0.5, 0.5)));
+        assertEquals(singletonList("origin"), index.getContaining(box(0.5, 0.5, 0.6, 0.6)));
+        assertTrue(index.getContaining(box(0.5, 0.5, 1.5, 0.6)).isEmpty());
+    }
+
+    @Test
+    public void testEdges() {
+        BoundingBoxIndex<String> index = new BoundingBoxIndex<>();
+        index.add(box(170.0, 80.0, 180.0, 90.0), "north east");
+        index.add(box(-180.0, -90.0, -170.0, -80.0), "south west");
+        List<String> northEast = index.getContaining(box(180.0, 90.0, 180.0, 90.0));
+        assertEquals(singletonList("north east"), northEast);
+        assertEquals(singletonList("south west"), index.getContaining(box(-180.0, -90.0, -180.0, -90.0)));
+    }
+}
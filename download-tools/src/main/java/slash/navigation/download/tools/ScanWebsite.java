@@ -31,26 +31,27 @@ import slash.navigation.datasources.binding.MapType;
 import slash.navigation.datasources.binding.ThemeType;
 import slash.navigation.datasources.helpers.DataSourcesUtil;
 import slash.navigation.download.tools.base.BaseDownloadTool;
-import slash.navigation.download.tools.helpers.AnchorFilter;
-import slash.navigation.download.tools.helpers.AnchorParser;
+import slash.navigation.download.tools.helpers.CrawlProgress;
 import slash.navigation.download.tools.helpers.DownloadableType;
+import slash.navigation.download.tools.helpers.WebsiteCrawler;
 import slash.navigation.rest.Delete;
-import slash.navigation.rest.Get;
 import slash.navigation.rest.Post;
 
 import javax.xml.bind.JAXBException;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Logger;
 
 import static java.lang.String.format;
 import static java.lang.System.exit;
+import static java.lang.Integer.parseInt;
 import static java.util.Arrays.asList;
-import static java.util.Arrays.sort;
 import static slash.navigation.datasources.helpers.DataSourcesUtil.*;
 import static slash.navigation.download.tools.helpers.DownloadableType.File;
 import static slash.navigation.rest.HttpRequest.APPLICATION_JSON;
@@ -74,46 +75,12 @@ public class ScanWebsite extends BaseDownloadTool {
     private Set<String> extensions, includes, excludes;
     private int addCount, removeCount;
 
-    private String appendURIs(String uri, String anchor) {
-        int index = uri.lastIndexOf('/');
-        return index != -1 ? uri.substring(0, index + 1) + anchor : anchor;
-    }
-
-    private void recursiveCollect(String uri, Set<String> uris, Set<String> visitedUris) throws IOException {
-        if (visitedUris.contains(uri))
-            return;
-        visitedUris.add(uri);
-
-        log.info(format("Downloading %s", getUrl() + uri));
-        Get get = new Get(getUrl() + uri);
-        String result = get.executeAsString();
-
-        List<String> anchors = new AnchorParser().parseAnchors(result.replaceAll("<area", "<a"));
-
-        List<String> included = new AnchorFilter().filterAnchors(baseUrl, anchors, extensions, includes, excludes);
-        for (String anchor : included) {
-            // create the anchor relative to the current uri
-            String nextUri = appendURIs(uri, anchor);
-            uris.add(nextUri);
-        }
-
-        List<String> recurse = new AnchorFilter().filterAnchors(baseUrl, anchors, new HashSet<>(asList(".html", "/")), null, null);
-        for (String anchor : recurse) {
-            if((getUrl() + anchor).equals(baseUrl) || baseUrl.endsWith(anchor))
-                continue;
-            // create the anchor relative to the current uri
-            String nextUri = appendURIs(uri, anchor);
-            recursiveCollect(nextUri, uris, visitedUris);
-        }
-    }
-
     private List<String> collectUris() throws IOException {
-        Set<String> uris = new HashSet<>();
-        recursiveCollect("", uris, new HashSet<String>());
-
-        String[] sortedUris = uris.toArray(new String[0]);
-        sort(sortedUris);
-        return asList(sortedUris);
+        CrawlProgress progress = new CrawlProgress(getProgressFile("scan"));
+        List<String> uris = new WebsiteCrawler(getUrl(), baseUrl, extensions, includes, excludes,
+                getThreadCount(), MAXIMUM_THREADS_PER_HOST, progress).crawl();
+        progress.delete();
+        return uris;
     }
 
     private Set<String> collectURIs(DataSource source) {
@@ -147,10 +114,10 @@ public class ScanWebsite extends BaseDownloadTool {
 
         Set<String> files = collectURIs(source);
 
-        Set<String> addedUris = new HashSet<>(collectedUris);
+        Set<String> addedUris = new TreeSet<>(collectedUris);
         addedUris.removeAll(files);
 
-        Set<String> removedUris = new HashSet<>(files);
+        Set<String> removedUris = new TreeSet<>(files);
         removedUris.removeAll(collectedUris);
 
         if (hasDataSourcesServer()) {
@@ -189,7 +156,7 @@ public class ScanWebsite extends BaseDownloadTool {
     }
 
     private void addUrisInChunks(DataSource dataSource, Collection<String> uris) throws IOException {
-        Collection<String> chunk = new HashSet<>();
+        Collection<String> chunk = new ArrayList<>();
         for(String uri : uris) {
             chunk.add(uri);
 
@@ -259,6 +226,9 @@ public class ScanWebsite extends BaseDownloadTool {
         String[] excludeArguments = line.getOptionValues(EXCLUDE_ARGUMENT);
         excludes = excludeArguments != null ? new HashSet<>(asList(excludeArguments)) : null;
         type = typeArgument != null ? DownloadableType.fromValue(typeArgument) : File;
+        String threadsArgument = line.getOptionValue(THREADS_ARGUMENT);
+        if (threadsArgument != null)
+            setThreadCount(parseInt(threadsArgument));
         setDataSourcesServer(line.getOptionValue(DATASOURCES_SERVER_ARGUMENT));
         setDataSourcesUserName(line.getOptionValue(DATASOURCES_USERNAME_ARGUMENT));
         setDataSourcesPassword(line.getOptionValue(DATASOURCES_PASSWORD_ARGUMENT));
@@ -283,6 +253,8 @@ public class ScanWebsite extends BaseDownloadTool {
                 desc("Regex for resources to exclude").build());
         options.addOption(Option.builder().argName(TYPE_ARGUMENT).numberOfArgs(1).longOpt("type").
                 desc("Type of the resources").build());
+        options.addOption(Option.builder().argName(THREADS_ARGUMENT).numberOfArgs(1).longOpt("threads").
+                desc("Number of pages to crawl in parallel").build());
         options.addOption(Option.builder().argName(DATASOURCES_SERVER_ARGUMENT).numberOfArgs(1).longOpt("server").
                 desc("Data sources server").build());
         options.addOption(Option.builder().argName(DATASOURCES_USERNAME_ARGUMENT).numberOfArgs(1).longOpt("username").
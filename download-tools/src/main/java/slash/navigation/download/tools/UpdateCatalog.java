@@ -23,11 +23,13 @@ import org.apache.commons.cli.*;
 import slash.navigation.common.BoundingBox;
 import slash.navigation.datasources.*;
 import slash.navigation.datasources.binding.*;
+import slash.navigation.download.Action;
 import slash.navigation.download.Checksum;
 import slash.navigation.download.Download;
 import slash.navigation.download.DownloadManager;
 import slash.navigation.download.FileAndChecksum;
 import slash.navigation.download.tools.base.BaseDownloadTool;
+import slash.navigation.download.tools.helpers.CrawlProgress;
 import slash.navigation.graphhopper.PbfUtil;
 import slash.navigation.maps.mapsforge.helpers.MapUtil;
 import slash.navigation.rest.Post;
@@ -36,16 +38,25 @@ import javax.xml.bind.JAXBException;
 import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import static java.lang.Integer.parseInt;
 import static java.lang.String.format;
 import static java.lang.System.exit;
 import static java.util.Collections.singletonList;
+import static java.util.Collections.sort;
+import static slash.common.helpers.ThreadHelper.createFixedThreadPool;
 import static slash.common.io.Directories.ensureDirectory;
 import static slash.common.io.Files.extractFileName;
 import static slash.navigation.datasources.DataSourceManager.DOT_ZIP;
@@ -67,10 +78,13 @@ public class UpdateCatalog extends BaseDownloadTool {
     private static final String MIRROR_ARGUMENT = "mirror";
     private static final String DOT_HGT = ".hgt";
     private static final String DOT_MAP = ".map";
+    private static final String CHECKED = "checked";
 
     private DataSourceManager dataSourceManager;
+    private final Object queueMutex = new Object();
+    private CrawlProgress progress;
     private java.io.File mirror;
-    private int updateCount;
+    private int updateCount, rejectedCount;
 
     private void open() {
         dataSourceManager = new DataSourceManager(new DownloadManager(new java.io.File(getSnapshotDirectory(), "update-queue.xml")));
@@ -82,47 +96,118 @@ public class UpdateCatalog extends BaseDownloadTool {
         dataSourceManager.dispose();
     }
 
+    private static <T extends Downloadable> List<T> sortByUri(List<T> downloadables) {
+        List<T> result = new ArrayList<>(downloadables);
+        sort(result, new Comparator<T>() {
+            public int compare(T d1, T d2) {
+                return d1.getUri().compareTo(d2.getUri());
+            }
+        });
+        return result;
+    }
+
     private void update() throws IOException, JAXBException {
         DataSource source = loadDataSource(getId());
+        progress = new CrawlProgress(getProgressFile("update"));
+        progress.load();
         open();
 
-        DatasourceType datasourceType = asDatasourceType(source);
-        for (File file : source.getFiles()) {
-            updateFile(datasourceType, file);
-        }
+        final String baseUrl = source.getBaseUrl();
+        List<Future<DownloadableType>> futures = new ArrayList<>();
+        ExecutorService executor = createFixedThreadPool("UpdateCatalog", getThreadCount());
+        try {
+            // submitted in the order of the URIs to post updates that diff cleanly
+            for (final File file : sortByUri(source.getFiles())) {
+                if (progress.contains(CHECKED, file.getUri()))
+                    continue;
+                futures.add(executor.submit(new Callable<DownloadableType>() {
+                    public DownloadableType call() throws IOException {
+                        return updateFile(baseUrl, file);
+                    }
+                }));
+            }
 
-        for (Map map : source.getMaps()) {
-            updateMap(datasourceType, map);
-        }
+            for (final Map map : sortByUri(source.getMaps())) {
+                if (progress.contains(CHECKED, map.getUri()))
+                    continue;
+                futures.add(executor.submit(new Callable<DownloadableType>() {
+                    public DownloadableType call() throws IOException {
+                        return updateMap(baseUrl, map);
+                    }
+                }));
+            }
 
-        for (Theme theme : source.getThemes()) {
-            updateTheme(datasourceType, theme);
-        }
+            for (final Theme theme : sortByUri(source.getThemes())) {
+                if (progress.contains(CHECKED, theme.getUri()))
+                    continue;
+                futures.add(executor.submit(new Callable<DownloadableType>() {
+                    public DownloadableType call() throws IOException {
+                        return updateTheme(baseUrl, theme);
+                    }
+                }));
+            }
 
-        if (getDownloadableCount(datasourceType) > 0)
-            updateUris(datasourceType);
+            DatasourceType datasourceType = asDatasourceType(source);
+            for (Future<DownloadableType> future : futures) {
+                DownloadableType downloadableType = future.get();
+                if (downloadableType == null)
+                    continue;
+
+                addDownloadableType(datasourceType, downloadableType);
+                updatePartially(datasourceType);
+            }
+
+            if (getDownloadableCount(datasourceType) > 0)
+                updateUris(datasourceType);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while updating catalog");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+            progress.close();
+        }
 
         log.info(format("Updated %d URIs out of %d URIs", updateCount,
                 source.getFiles().size() + source.getMaps().size() + source.getThemes().size()));
         close();
+        // keep the progress to update the URIs that were not accepted when resuming
+        if (rejectedCount > 0)
+            throw new IOException(format("Server did not accept %d URIs", rejectedCount));
+        progress.delete();
+    }
+
+    private void addDownloadableType(DatasourceType datasourceType, DownloadableType downloadableType) {
+        if (downloadableType instanceof FileType)
+            datasourceType.getFile().add((FileType) downloadableType);
+        else if (downloadableType instanceof MapType)
+            datasourceType.getMap().add((MapType) downloadableType);
+        else if (downloadableType instanceof ThemeType)
+            datasourceType.getTheme().add((ThemeType) downloadableType);
+    }
+
+    private void checked(String uri) throws IOException {
+        progress.record(CHECKED, uri);
     }
 
-    private void updateFile(DatasourceType datasourceType, File file) throws IOException {
-        String url = datasourceType.getBaseUrl() + file.getUri();
+    private FileType updateFile(String baseUrl, File file) throws IOException {
+        String url = baseUrl + file.getUri();
 
         // HEAD for last modified, content length, etag
         Download download = head(url);
-        if (download.getState().equals(NotModified))
-            return;
+        if (download.getState().equals(NotModified)) {
+            checked(file.getUri());
+            return null;
+        }
 
         if (download.getState().equals(Failed)) {
             log.severe(format("Failed to download %s as a file", file.getUri()));
-            return;
+            return null;
         }
 
         Checksum checksum = download.getFile().getActualChecksum();
         FileType fileType = createFileType(file.getUri(), singletonList(checksum), null);
-        datasourceType.getFile().add(fileType);
 
         if (file.getUri().endsWith(DOT_ZIP)) {
             // GET with range for .pbf header
@@ -168,26 +253,26 @@ public class UpdateCatalog extends BaseDownloadTool {
             }
         } else
             log.warning(format("Ignoring %s as a file", file.getUri()));
-
-        updatePartially(datasourceType);
+        return fileType;
     }
 
-    private void updateMap(DatasourceType datasourceType, Map map) throws IOException {
-        String url = datasourceType.getBaseUrl() + map.getUri();
+    private MapType updateMap(String baseUrl, Map map) throws IOException {
+        String url = baseUrl + map.getUri();
 
         // HEAD for last modified, content length, etag
         Download download = head(url);
-        if (download.getState().equals(NotModified))
-            return;
+        if (download.getState().equals(NotModified)) {
+            checked(map.getUri());
+            return null;
+        }
 
         if (download.getState().equals(Failed)) {
             log.severe(format("Failed to download %s as a map", map.getUri()));
-            return;
+            return null;
         }
 
         Checksum checksum = download.getFile().getActualChecksum();
         MapType mapType = createMapType(map.getUri(), singletonList(checksum), null);
-        datasourceType.getMap().add(mapType);
 
         // GET with range for .zip or .map header
         if (!download.getFile().getFile().exists())
@@ -195,7 +280,7 @@ public class UpdateCatalog extends BaseDownloadTool {
 
         if (download.getState().equals(Failed)) {
             log.severe(format("Failed to download %s partially as a map", map.getUri()));
-            return;
+            return mapType;
         }
 
         if (map.getUri().endsWith(DOT_ZIP)) {
@@ -236,26 +321,26 @@ public class UpdateCatalog extends BaseDownloadTool {
                 mapType.setBoundingBox(asBoundingBoxType(boundingBox));
         } else
             log.warning(format("Ignoring %s as a map", map.getUri()));
-
-        updatePartially(datasourceType);
+        return mapType;
     }
 
-    private void updateTheme(DatasourceType datasourceType, Theme theme) {
-        String url = datasourceType.getBaseUrl() + theme.getUri();
+    private ThemeType updateTheme(String baseUrl, Theme theme) throws IOException {
+        String url = baseUrl + theme.getUri();
 
         // GET for local mirror
         Download download = download(url);
-        if (download.getState().equals(NotModified))
-            return;
+        if (download.getState().equals(NotModified)) {
+            checked(theme.getUri());
+            return null;
+        }
 
         if (download.getState().equals(Failed)) {
             log.severe(format("Failed to download %s as a theme", theme.getUri()));
-            return;
+            return null;
         }
 
         Checksum checksum = download.getFile().getActualChecksum();
         ThemeType themeType = createThemeType(theme.getUri(), singletonList(checksum), null);
-        datasourceType.getTheme().add(themeType);
 
         if (theme.getUri().endsWith(DOT_ZIP)) {
             List<FragmentType> fragmentTypes = new ArrayList<>();
@@ -279,27 +364,30 @@ public class UpdateCatalog extends BaseDownloadTool {
             themeType.getFragment().addAll(fragmentTypes);
         } else
             log.warning(format("Ignoring %s as a theme", theme.getUri()));
+        return themeType;
     }
 
-    private Download head(String url) {
-        Download download = dataSourceManager.getDownloadManager().queueForDownload("HEAD for " + url, url, Head,
-                new FileAndChecksum(createMirrorFile(url), null), null);
+    private Download queueAndWait(String description, String url, Action action, FileAndChecksum file) {
+        Download download;
+        // the queue of the download manager is not meant to be modified concurrently
+        synchronized (queueMutex) {
+            download = dataSourceManager.getDownloadManager().queueForDownload(description, url, action, file, null);
+        }
         dataSourceManager.getDownloadManager().waitForCompletion(singletonList(download));
         return download;
     }
 
+    private Download head(String url) {
+        return queueAndWait("HEAD for " + url, url, Head, new FileAndChecksum(createMirrorFile(url), null));
+    }
+
     private Download download(String url) {
-        Download download = dataSourceManager.getDownloadManager().queueForDownload("GET for " + url, url, Copy,
-                new FileAndChecksum(createMirrorFile(url), null), null);
-        dataSourceManager.getDownloadManager().waitForCompletion(singletonList(download));
-        return download;
+        return queueAndWait("GET for " + url, url, Copy, new FileAndChecksum(createMirrorFile(url), null));
     }
 
     private Download downloadPartial(String url, long fileSize) {
-        Download download = dataSourceManager.getDownloadManager().queueForDownload("GET 16k for " + url, url, GetRange,
-                new FileAndChecksum(createMirrorFile(url), new Checksum(null, fileSize, null)), null);
-        dataSourceManager.getDownloadManager().waitForCompletion(singletonList(download));
-        return download;
+        return queueAndWait("GET 16k for " + url, url, GetRange,
+                new FileAndChecksum(createMirrorFile(url), new Checksum(null, fileSize, null)));
     }
 
     private java.io.File createMirrorFile(String url) {
@@ -335,11 +423,25 @@ public class UpdateCatalog extends BaseDownloadTool {
         String result = null;
         try {
             result = request.executeAsString();
+            if (!request.isSuccessful()) {
+                log.severe(format("Cannot update URIs: status code %d, result:%n%s", request.getStatusCode(), result));
+                rejectedCount += getDownloadableCount(dataSourceType);
+                return result;
+            }
+
             log.info(format("Updated URIs with result:%n%s", result));
             updateCount += getDownloadableCount(dataSourceType);
+
+            for (FileType fileType : dataSourceType.getFile())
+                checked(fileType.getUri());
+            for (MapType mapType : dataSourceType.getMap())
+                checked(mapType.getUri());
+            for (ThemeType themeType : dataSourceType.getTheme())
+                checked(themeType.getUri());
         }
         catch(Exception e) {
             log.severe(format("Cannot update URIs: %s", e));
+            rejectedCount += getDownloadableCount(dataSourceType);
         }
         return result;
     }
@@ -351,6 +453,9 @@ public class UpdateCatalog extends BaseDownloadTool {
         setDataSourcesUserName(line.getOptionValue(DATASOURCES_USERNAME_ARGUMENT));
         setDataSourcesPassword(line.getOptionValue(DATASOURCES_PASSWORD_ARGUMENT));
         mirror = new java.io.File(line.getOptionValue(MIRROR_ARGUMENT));
+        String threadsArgument = line.getOptionValue(THREADS_ARGUMENT);
+        if (threadsArgument != null)
+            setThreadCount(parseInt(threadsArgument));
         update();
     }
 
@@ -368,6 +473,8 @@ public class UpdateCatalog extends BaseDownloadTool {
                 desc("Data sources server password").build());
         options.addOption(Option.builder().argName(MIRROR_ARGUMENT).numberOfArgs(1).required().longOpt("mirror").
                 desc("Filesystem path to mirror resources").build());
+        options.addOption(Option.builder().argName(THREADS_ARGUMENT).numberOfArgs(1).longOpt("threads").
+                desc("Number of resources to check in parallel").build());
         try {
             return parser.parse(options, args);
         } catch (ParseException e) {
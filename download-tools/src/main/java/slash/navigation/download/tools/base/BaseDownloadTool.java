@@ -45,10 +45,14 @@ public class BaseDownloadTool {
     protected static final String DATASOURCES_SERVER_ARGUMENT = "server";
     protected static final String DATASOURCES_USERNAME_ARGUMENT = "username";
     protected static final String DATASOURCES_PASSWORD_ARGUMENT = "password";
+    protected static final String THREADS_ARGUMENT = "threads";
     protected static final int SOCKET_TIMEOUT = 15 * 60 * 1000;
     protected static final int MAXIMUM_UPDATE_COUNT = 10;
+    protected static final int DEFAULT_THREAD_COUNT = 8;
+    protected static final int MAXIMUM_THREADS_PER_HOST = 4;
 
     private String url, id, dataSourcesServer, dataSourcesUserName, dataSourcesPassword;
+    private int threadCount = DEFAULT_THREAD_COUNT;
 
     public String getUrl() {
         return url;
@@ -82,6 +86,14 @@ public class BaseDownloadTool {
         this.dataSourcesPassword = dataSourcesPassword;
     }
 
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
     protected boolean hasDataSourcesServer() {
         return getDataSourcesServer() != null && dataSourcesUserName != null && dataSourcesPassword != null;
     }
@@ -109,6 +121,10 @@ public class BaseDownloadTool {
         return ensureDirectory(getApplicationDirectory("snapshot-" + postFix).getAbsolutePath());
     }
 
+    protected File getProgressFile(String prefix) {
+        return new File(getSnapshotDirectory(), prefix + "-" + getId() + ".progress");
+    }
+
     public File getRootDirectory() {
         return ensureDirectory(new File(getSnapshotDirectory(), "root"));
     }
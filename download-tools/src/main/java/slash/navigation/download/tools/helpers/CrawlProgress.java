@@ -0,0 +1,121 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+package slash.navigation.download.tools.helpers;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.Logger;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.readAllBytes;
+
+/**
+ * Records the progress of a crawl or check in an append-only file so that
+ * an interrupted run resumes where it stopped.
+ *
+ * @author Christian Pesch
+ */
+
+public class CrawlProgress implements Closeable {
+    private static final Logger log = Logger.getLogger(CrawlProgress.class.getName());
+
+    private final File file;
+    private final Map<String, Set<String>> kindToUris = new HashMap<>();
+    private Writer writer;
+
+    public CrawlProgress(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the progress of a previous run.
+     */
+    public synchronized void load() throws IOException {
+        kindToUris.clear();
+        if (!file.exists())
+            return;
+
+        String content = new String(readAllBytes(file.toPath()), UTF_8);
+        // the last line lacks its line feed if the previous run died while writing it
+        String[] lines = content.substring(0, content.lastIndexOf('\n') + 1).split("\n");
+        int count = 0;
+        for (String line : lines) {
+            int index = line.indexOf(' ');
+            if (index == -1)
+                continue;
+            getOrCreateUris(line.substring(0, index)).add(line.substring(index + 1));
+            count++;
+        }
+        log.info(format("Loaded %d entries of progress from %s", count, file));
+    }
+
+    private Set<String> getOrCreateUris(String kind) {
+        Set<String> uris = kindToUris.get(kind);
+        if (uris == null) {
+            uris = new HashSet<>();
+            kindToUris.put(kind, uris);
+        }
+        return uris;
+    }
+
+    public synchronized Set<String> getUris(String kind) {
+        Set<String> uris = kindToUris.get(kind);
+        return uris != null ? new HashSet<>(uris) : Collections.<String>emptySet();
+    }
+
+    public synchronized boolean contains(String kind, String uri) {
+        Set<String> uris = kindToUris.get(kind);
+        return uris != null && uris.contains(uri);
+    }
+
+    public synchronized void record(String kind, String uri) throws IOException {
+        if (kind.indexOf(' ') != -1 || uri.indexOf('\n') != -1)
+            throw new IllegalArgumentException(format("Cannot record %s %s", kind, uri));
+        if (!getOrCreateUris(kind).add(uri))
+            return;
+
+        if (writer == null)
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), UTF_8));
+        writer.write(kind + " " + uri + "\n");
+        writer.flush();
+    }
+
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    /**
+     * Forgets the progress once a run completed.
+     */
+    public synchronized void delete() throws IOException {
+        close();
+        kindToUris.clear();
+        if (file.exists() && !file.delete())
+            throw new IOException(format("Cannot delete progress %s", file));
+    }
+}
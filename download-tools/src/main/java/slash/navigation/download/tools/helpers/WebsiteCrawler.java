@@ -0,0 +1,196 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+package slash.navigation.download.tools.helpers;
+
+import slash.navigation.rest.Get;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+import static slash.common.helpers.ThreadHelper.createFixedThreadPool;
+
+/**
+ * Crawls a website for resources with a bounded number of threads and a limit of
+ * parallel requests per host. Visited pages are only fetched once and the progress is
+ * recorded so that an interrupted crawl resumes where it stopped.
+ *
+ * @author Christian Pesch
+ */
+
+public class WebsiteCrawler {
+    private static final Logger log = Logger.getLogger(WebsiteCrawler.class.getName());
+    static final String PAGE = "page";
+    static final String VISITED = "visited";
+    static final String RESOURCE = "resource";
+
+    private final String url, baseUrl;
+    private final Set<String> extensions, includes, excludes;
+    private final int maximumThreads, maximumThreadsPerHost;
+    private final CrawlProgress progress;
+
+    private final Set<String> visitedUris = ConcurrentHashMap.newKeySet();
+    private final Set<String> resourceUris = ConcurrentHashMap.newKeySet();
+    private final Map<String, Semaphore> hostToPermits = new HashMap<>();
+    private final Phaser pending = new Phaser(1);
+    private final List<IOException> failures = new CopyOnWriteArrayList<>();
+    private ExecutorService executor;
+
+    public WebsiteCrawler(String url, String baseUrl, Set<String> extensions, Set<String> includes, Set<String> excludes,
+                          int maximumThreads, int maximumThreadsPerHost, CrawlProgress progress) {
+        this.url = url;
+        this.baseUrl = baseUrl;
+        this.extensions = extensions;
+        this.includes = includes;
+        this.excludes = excludes;
+        this.maximumThreads = maximumThreads;
+        this.maximumThreadsPerHost = maximumThreadsPerHost;
+        this.progress = progress;
+    }
+
+    private static String appendURIs(String uri, String anchor) {
+        int index = uri.lastIndexOf('/');
+        return index != -1 ? uri.substring(0, index + 1) + anchor : anchor;
+    }
+
+    private static String getHost(String url) {
+        try {
+            return new URL(url).getHost().toLowerCase();
+        } catch (MalformedURLException e) {
+            return "";
+        }
+    }
+
+    private synchronized Semaphore getPermits(String host) {
+        Semaphore permits = hostToPermits.get(host);
+        if (permits == null) {
+            permits = new Semaphore(maximumThreadsPerHost);
+            hostToPermits.put(host, permits);
+        }
+        return permits;
+    }
+
+    protected String fetch(String url) throws IOException {
+        Get get = new Get(url);
+        return get.executeAsString();
+    }
+
+    private String fetchLimited(String url) throws IOException {
+        Semaphore permits = getPermits(getHost(url));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            throw new IOException(format("Interrupted while waiting to fetch %s", url), e);
+        }
+        try {
+            return fetch(url);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void submit(final String uri) throws IOException {
+        if (!visitedUris.add(uri))
+            return;
+        progress.record(PAGE, uri);
+
+        pending.register();
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    visit(uri);
+                } catch (IOException e) {
+                    log.warning(format("Cannot crawl %s: %s", url + uri, e));
+                    failures.add(e);
+                } finally {
+                    pending.arriveAndDeregister();
+                }
+            }
+        });
+    }
+
+    private void visit(String uri) throws IOException {
+        log.info(format("Downloading %s", url + uri));
+        String result = fetchLimited(url + uri);
+
+        List<String> anchors = new AnchorParser().parseAnchors(result.replaceAll("<area", "<a"));
+
+        List<String> included = new AnchorFilter().filterAnchors(baseUrl, anchors, extensions, includes, excludes);
+        for (String anchor : included) {
+            // create the anchor relative to the current uri
+            String resourceUri = appendURIs(uri, anchor);
+            if (resourceUris.add(resourceUri))
+                progress.record(RESOURCE, resourceUri);
+        }
+
+        List<String> recurse = new AnchorFilter().filterAnchors(baseUrl, anchors, new HashSet<>(asList(".html", "/")), null, null);
+        for (String anchor : recurse) {
+            if ((url + anchor).equals(baseUrl) || baseUrl.endsWith(anchor))
+                continue;
+            // create the anchor relative to the current uri
+            submit(appendURIs(uri, anchor));
+        }
+
+        // only now all pages and resources found on the page are recorded
+        progress.record(VISITED, uri);
+    }
+
+    /**
+     * Crawls the website starting at the url and the pages left over by a previous crawl.
+     *
+     * @return the sorted URIs of the resources relative to the url
+     * @throws IOException if a page could not be fetched; the progress allows to resume the crawl
+     */
+    public List<String> crawl() throws IOException {
+        progress.load();
+        Set<String> pageUris = progress.getUris(PAGE);
+        Set<String> visited = progress.getUris(VISITED);
+        resourceUris.addAll(progress.getUris(RESOURCE));
+        visitedUris.addAll(visited);
+        if (!pageUris.isEmpty())
+            log.info(format("Resuming crawl of %s with %d visited pages and %d resources", url, visited.size(), resourceUris.size()));
+
+        executor = createFixedThreadPool("WebsiteCrawler", maximumThreads);
+        try {
+            if (pageUris.isEmpty())
+                submit("");
+            else {
+                pageUris.removeAll(visited);
+                for (String uri : new TreeSet<>(pageUris))
+                    submit(uri);
+            }
+            pending.arriveAndAwaitAdvance();
+        } finally {
+            executor.shutdownNow();
+            progress.close();
+        }
+
+        if (!failures.isEmpty())
+            throw new IOException(format("Cannot crawl %d pages of %s", failures.size(), url), failures.get(0));
+
+        // sorted for catalogs that diff cleanly
+        return new ArrayList<>(new TreeSet<>(resourceUris));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+package slash.navigation.download.tools.helpers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.io.File.createTempFile;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.write;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.junit.Assert.*;
+
+public class WebsiteCrawlerTest {
+    private File directory, progressFile;
+    private HttpServer server;
+    private String url;
+    private final Set<String> requested = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requestCount = new AtomicInteger(), parallelCount = new AtomicInteger(),
+            maximumParallelCount = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = createTempFile("website", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdirs());
+        progressFile = createTempFile("website", ".progress");
+        assertTrue(progressFile.delete());
+
+        writePage("index.html", "<a href=\"a.html\">a</a> <a href=\"sub/\">sub</a> <a href=\"x.zip\">x</a>");
+        writePage("a.html", "<a href=\"index.html\">index</a> <a href=\"sub/\">sub</a> <a href=\"b.zip\">b</a>");
+        writePage("sub/index.html", "<a href=\"c.html\">c</a> <a href=\"y.zip\">y</a> <a href=\"y.zip?download\">y</a>");
+        writePage("sub/c.html", "<area href=\"z.zip\"> <a href=\"c.html\">c</a> <a href=\"http://elsewhere/w.zip\">w</a>");
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        server.setExecutor(newFixedThreadPool(8));
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        deleteRecursively(directory);
+        if (progressFile.exists())
+            assertTrue(progressFile.delete());
+    }
+
+    private void deleteRecursively(File file) {
+        File[] files = file.listFiles();
+        if (files != null)
+            for (File child : files)
+                deleteRecursively(child);
+        assertTrue(file.delete());
+    }
+
+    private void writePage(String path, String anchors) throws IOException {
+        File file = new File(directory, path);
+        assertTrue(file.getParentFile().exists() || file.getParentFile().mkdirs());
+        write(file.toPath(), ("<html><body>" + anchors + "</body></html>").getBytes(UTF_8));
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        int parallel = parallelCount.incrementAndGet();
+        try {
+            while (true) {
+                int maximum = maximumParallelCount.get();
+                if (parallel <= maximum || maximumParallelCount.compareAndSet(maximum, parallel))
+                    break;
+            }
+            requestCount.incrementAndGet();
+            String path = exchange.getRequestURI().getPath().substring(1);
+            requested.add(path);
+
+            File file = new File(directory, path);
+            if (file.isDirectory())
+                file = new File(file, "index.html");
+            // let requests overlap
+            Thread.sleep(50);
+
+            byte[] body = file.isFile() ? readAllBytes(file.toPath()) : new byte[0];
+            exchange.sendResponseHeaders(file.isFile() ? 200 : 404, body.length > 0 ? body.length : -1);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } finally {
+            parallelCount.decrementAndGet();
+        }
+    }
+
+    private WebsiteCrawler createCrawler(int maximumThreadsPerHost) {
+        return new WebsiteCrawler(url, url, new HashSet<>(asList(".zip")), null, null,
+                8, maximumThreadsPerHost, new CrawlProgress(progressFile));
+    }
+
+    @Test
+    public void testCrawl() throws IOException {
+        List<String> uris = createCrawler(4).crawl();
+        assertEquals(asList("b.zip", "sub/y.zip", "sub/z.zip", "x.zip"), uris);
+        assertEquals(new HashSet<>(asList("", "a.html", "sub/", "sub/c.html")), requested);
+        assertEquals(4, requestCount.get());
+    }
+
+    @Test
+    public void testCrawlIsLimitedPerHost() throws IOException {
+        createCrawler(1).crawl();
+        assertEquals(1, maximumParallelCount.get());
+    }
+
+    @Test
+    public void testResumeCrawl() throws IOException {
+        WebsiteCrawler failing = new WebsiteCrawler(url, url, new HashSet<>(asList(".zip")), null, null,
+                8, 4, new CrawlProgress(progressFile)) {
+            protected String fetch(String url) throws IOException {
+                if (url.endsWith("sub/"))
+                    throw new IOException("failure for " + url);
+                return super.fetch(url);
+            }
+        };
+        try {
+            failing.crawl();
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertTrue(progressFile.exists());
+        }
+        assertEquals(new HashSet<>(asList("", "a.html")), requested);
+
+        requested.clear();
+        List<String> uris = createCrawler(4).crawl();
+        assertEquals(asList("b.zip", "sub/y.zip", "sub/z.zip", "x.zip"), uris);
+        assertEquals(new HashSet<>(asList("sub/", "sub/c.html")), requested);
+    }
+}
@@ -74,8 +74,34 @@ public class Checksum {
     }
 
     public static Checksum createChecksum(File file) throws IOException {
-        return file != null && file.exists() ?
-                new Checksum(fromMillis(roundMillisecondsToSecondPrecision(file.lastModified())), file.length(), generateChecksum(file)) : null;
+        return file != null && file.exists() ? createChecksum(file, generateChecksum(file)) : null;
+    }
+
+    /**
+     * Creates a checksum for the given file with a SHA-1 that was calculated while writing the file.
+     *
+     * @param file the file that has been written
+     * @param sha1 the SHA-1 of the written bytes
+     * @return the checksum of the file
+     */
+    public static Checksum createChecksum(File file, String sha1) {
+        return new Checksum(getLastModifiedOf(file), file.length(), sha1);
+    }
+
+    private static CompactCalendar getLastModifiedOf(File file) {
+        return fromMillis(roundMillisecondsToSecondPrecision(file.lastModified()));
+    }
+
+    /**
+     * Tells whether this checksum describes the given file, i.e. the file has not been
+     * modified since the checksum has been calculated.
+     *
+     * @param file the file to compare with
+     * @return true if the last modified timestamp and the content length are the same
+     */
+    public boolean isCurrentFor(File file) {
+        return file != null && file.isFile() && getLastModified() != null && getContentLength() != null &&
+                getContentLength() == file.length() && getLastModified().equals(getLastModifiedOf(file));
     }
 
     public boolean equals(Object o) {
@@ -0,0 +1,82 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+package slash.navigation.download;
+
+import slash.common.io.PersistentLookupCache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import static slash.navigation.download.Checksum.createChecksum;
+
+/**
+ * Caches the SHA-1 of files by their path, size and last modification
+ * to avoid reading unchanged files again.
+ *
+ * @author Christian Pesch
+ */
+
+public class ChecksumCache implements Closeable {
+    private static final long TIME_TO_LIVE = 365 * 24 * 60 * 60 * 1000L;
+    private static final long MAXIMUM_BYTE_COUNT = 16 * 1024 * 1024L;
+
+    private final PersistentLookupCache cache;
+
+    public ChecksumCache(File file) {
+        this.cache = new PersistentLookupCache(file, TIME_TO_LIVE, MAXIMUM_BYTE_COUNT);
+    }
+
+    private String createKey(File file) {
+        return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+    }
+
+    /**
+     * Returns the checksum of the given file and reads the file only if
+     * it has been modified since its checksum has been calculated.
+     *
+     * @param file the file to calculate the checksum for
+     * @return the checksum of the file or null if the file doesn't exist
+     * @throws IOException if the file cannot be read
+     */
+    public Checksum getChecksum(File file) throws IOException {
+        if (file == null || !file.isFile())
+            return createChecksum(file);
+
+        String key = createKey(file);
+        String sha1 = cache.get(key);
+        if (sha1 != null)
+            return createChecksum(file, sha1);
+
+        Checksum checksum = createChecksum(file);
+        if (checksum != null && checksum.getSHA1() != null)
+            cache.put(key, checksum.getSHA1());
+        return checksum;
+    }
+
+    public void putChecksum(File file, Checksum checksum) {
+        if (file != null && file.isFile() && checksum != null && checksum.getSHA1() != null)
+            cache.put(createKey(file), checksum.getSHA1());
+    }
+
+    public void close() {
+        cache.close();
+    }
+}
@@ -47,6 +47,7 @@ public class Download {
     private Action action;
     private FileAndChecksum file;
     private List<FileAndChecksum> fragments;
+    private List<Segment> segments;
     private final File tempFile;
 
     private State state;
@@ -113,6 +114,14 @@ public class Download {
         this.fragments = fragments;
     }
 
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    public void setSegments(List<Segment> segments) {
+        this.segments = segments;
+    }
+
     public String getETag() {
         return eTag;
     }
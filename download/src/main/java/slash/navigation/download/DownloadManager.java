@@ -22,7 +22,8 @@ package slash.navigation.download;
 
 import slash.navigation.download.actions.Validator;
 import slash.navigation.download.executor.DownloadExecutor;
-import slash.navigation.download.executor.DownloadExecutorComparator;
+import slash.navigation.download.executor.DownloadScheduler;
+import slash.navigation.download.queue.QueueJournal;
 import slash.navigation.download.queue.QueuePersister;
 
 import javax.swing.event.EventListenerList;
@@ -30,19 +31,23 @@ import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.logging.Logger;
 
+import static java.lang.Math.min;
+import static java.lang.Runtime.getRuntime;
 import static java.lang.String.format;
 import static java.lang.System.currentTimeMillis;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
-import static java.util.concurrent.TimeUnit.SECONDS;
 import static slash.common.helpers.ExceptionHelper.printStackTrace;
+import static slash.common.helpers.ThreadHelper.createFixedThreadPool;
+import static slash.common.io.Files.removeExtension;
 import static slash.navigation.download.Action.*;
 import static slash.navigation.download.State.*;
 
@@ -56,47 +61,62 @@ public class DownloadManager {
     private static final Logger log = Logger.getLogger(DownloadManager.class.getName());
     static final int WAIT_TIMEOUT = 600 * 1000;
     private static final int PARALLEL_DOWNLOAD_COUNT = 4;
+    private static final int MAXIMUM_PARALLEL_DOWNLOAD_COUNT = 16;
+    private static final int MAXIMUM_PARALLEL_HOST_DOWNLOAD_COUNT = 12;
+    private static final int PARALLEL_VERIFICATION_COUNT = 4;
 
     private final File queueFile;
+    private final QueueJournal queueJournal;
+    private final ChecksumCache checksumCache;
 
     private final EventListenerList listenerList = new EventListenerList();
     private final DownloadTableModel model = new DownloadTableModel();
     private final Map<Download,Future> downloadToFutures = new HashMap<>();
     private final Map<Download,DownloadExecutor> downloadToExecutors = new HashMap<>();
-    private final ThreadPoolExecutor pool;
+    private final DownloadScheduler scheduler;
 
     public DownloadManager(File queueFile) {
         this.queueFile = queueFile;
-        BlockingQueue<Runnable> queue = new PriorityBlockingQueue<>(1, new DownloadExecutorComparator());
-        pool = new ThreadPoolExecutor(PARALLEL_DOWNLOAD_COUNT, PARALLEL_DOWNLOAD_COUNT * 2, 60, SECONDS, queue);
-        pool.allowCoreThreadTimeOut(true);
+        this.queueJournal = queueFile != null ? new QueueJournal(new File(removeExtension(queueFile.getPath()) + ".journal")) : null;
+        this.checksumCache = queueFile != null ? new ChecksumCache(new File(removeExtension(queueFile.getPath()) + "-checksums.cache")) : null;
+        scheduler = new DownloadScheduler(MAXIMUM_PARALLEL_DOWNLOAD_COUNT, PARALLEL_DOWNLOAD_COUNT, MAXIMUM_PARALLEL_HOST_DOWNLOAD_COUNT);
         addDownloadListener(new DownloadListener() {
             public void initialized(Download download) {
-                saveQueue();
+                saveDownload(download);
             }
 
             public void progressed(Download download) {
             }
 
             public void failed(Download download) {
-                saveQueue();
+                saveDownload(download);
             }
 
             public void succeeded(Download download) {
-                saveQueue();
+                saveDownload(download);
             }
         });
     }
 
     public void loadQueue() {
+        if (queueJournal == null)
+            return;
+
         try {
-            log.info(format("Loading download queue from '%s'", queueFile));
-            List<Download> downloads = new QueuePersister().load(queueFile);
-            if (downloads == null)
-                return;
+            List<Download> downloads;
+            if (queueJournal.exists()) {
+                log.info(format("Loading download queue from '%s'", queueJournal.getFile()));
+                downloads = queueJournal.load();
+            } else {
+                log.info(format("Importing download queue from '%s'", queueFile));
+                downloads = new QueuePersister().load(queueFile);
+                if (downloads == null)
+                    return;
+                queueJournal.update(downloads);
+            }
             model.setDownloads(downloads);
         } catch (Exception e) {
-            log.severe(format("Could not load download queue from '%s': %s", queueFile, e));
+            log.severe(format("Could not load download queue from '%s': %s", queueJournal.getFile(), e));
         }
 
         restartDownloadsWithState(Running, Resuming, Downloading, Processing, Queued);
@@ -138,24 +158,58 @@ public class DownloadManager {
                 executor.stopped();
         }
 
-        pool.purge();
+        scheduler.purge();
     }
 
     public void saveQueue() {
+        if (queueJournal == null)
+            return;
+
         try {
-            new QueuePersister().save(queueFile, model.getDownloads());
+            queueJournal.update(model.getDownloads());
         } catch (Exception e) {
-            log.severe(format("Could not save %d download queue to '%s': %s, %s", model.getRowCount(), queueFile, e, printStackTrace(e)));
+            log.severe(format("Could not save %d download queue to '%s': %s, %s", model.getRowCount(), queueJournal.getFile(), e, printStackTrace(e)));
+        }
+    }
+
+    private void saveDownload(Download download) {
+        if (queueJournal == null)
+            return;
+
+        try {
+            queueJournal.update(download);
+        } catch (Exception e) {
+            log.severe(format("Could not save download %s to '%s': %s, %s", download, queueJournal.getFile(), e, printStackTrace(e)));
+        }
+    }
+
+    private void removeFromQueue(Download download) {
+        model.removeDownload(download);
+        if (queueJournal == null)
+            return;
+
+        try {
+            queueJournal.remove(download);
+        } catch (Exception e) {
+            log.severe(format("Could not remove download %s from '%s': %s, %s", download, queueJournal.getFile(), e, printStackTrace(e)));
         }
     }
 
     public void clearQueue() {
         for (Download download : model.getDownloads())
-            model.removeDownload(download);
+            removeFromQueue(download);
     }
 
     public void dispose() {
-        pool.shutdownNow();
+        scheduler.shutdownNow();
+        if (queueJournal != null)
+            queueJournal.close();
+        if (checksumCache != null)
+            checksumCache.close();
+    }
+
+    public ChecksumCache getChecksumCache() {
+        return checksumCache;
     }
 
     public DownloadTableModel getModel() {
@@ -170,6 +224,10 @@ public class DownloadManager {
         listenerList.add(DownloadListener.class, l);
     }
 
+    public void removeDownloadListener(DownloadListener l) {
+        listenerList.remove(DownloadListener.class, l);
+    }
+
     private void fireInitialized(Download download) {
         Object[] listeners = listenerList.getListenerList();
         for (int i = listeners.length - 2; i >= 0; i -= 2) {
@@ -209,7 +267,7 @@ public class DownloadManager {
     private void startExecutor(Download download) {
         DownloadExecutor executor = new DownloadExecutor(download, this);
         model.addOrUpdateDownload(download);
-        Future<?> future = pool.submit(executor);
+        Future<?> future = scheduler.submit(executor);
         downloadToFutures.put(download, future);
         downloadToExecutors.put(download, executor);
         fireInitialized(download);
@@ -245,7 +303,7 @@ public class DownloadManager {
         if (queued != null) {
             // let a GET replace a HEAD
             if (queued.getAction().equals(Head) || queued.getAction().equals(GetRange))
-                model.removeDownload(queued);
+                removeFromQueue(queued);
             else {
                 if (COMPLETED.contains(queued.getState()) && startExecutor) {
                     log.info("Restarting completed download " + download);
@@ -287,20 +345,48 @@ public class DownloadManager {
     }
 
     public void scanForOutdatedFilesInQueue() throws IOException {
-        for(Download download : model.getDownloads()) {
-            if (COMPLETED.contains(download.getState()) && !Outdated.equals(download.getState())) {
+        List<Download> downloads = new ArrayList<>();
+        for (Download download : model.getDownloads()) {
+            if (COMPLETED.contains(download.getState()) && !Outdated.equals(download.getState()))
+                downloads.add(download);
+        }
+        if (downloads.isEmpty())
+            return;
 
-                Validator validator = new Validator(download);
-                if (!validator.isChecksumsValid()) {
+        // reading the files is bound by the disk rather than by the processors
+        ExecutorService executor = createFixedThreadPool("VerifyDownload", min(getRuntime().availableProcessors(), PARALLEL_VERIFICATION_COUNT));
+        try {
+            Map<Download, Future<Boolean>> futures = new LinkedHashMap<>();
+            for (final Download download : downloads) {
+                futures.put(download, executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws IOException {
+                        Validator validator = new Validator(download, checksumCache);
+                        if (!validator.isChecksumsValid())
+                            return false;
+
+                        // set expected to actual checksum to avoid endless "locally later than remote"
+                        validator.expectedChecksumIsCurrentChecksum();
+                        return true;
+                    }
+                }));
+            }
+
+            for (Map.Entry<Download, Future<Boolean>> entry : futures.entrySet()) {
+                if (!entry.getValue().get()) {
+                    Download download = entry.getKey();
                     log.info("Found outdated download " + download);
 
                     download.setState(Outdated);
                     getModel().updateDownload(download);
-
-                } else
-                    // set expected to actual checksum to avoid endless "locally later than remote"
-                    validator.expectedChecksumIsCurrentChecksum();
+                }
             }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while scanning for outdated files in queue");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
@@ -372,6 +458,6 @@ public class DownloadManager {
     public void removeDownload(String url) {
         Download download = model.getDownload(url);
         if(download != null)
-            model.removeDownload(download);
+            removeFromQueue(download);
     }
 }
@@ -0,0 +1,93 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+package slash.navigation.download;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A byte range of a {@link Download} that is downloaded in parallel to other segments
+ *
+ * @author Christian Pesch
+ */
+
+public class Segment {
+    private final long start, end;
+    private final String eTag;
+    private volatile long position;
+
+    public Segment(long start, long end, long position, String eTag) {
+        this.start = start;
+        this.end = end;
+        this.position = position;
+        this.eTag = eTag;
+    }
+
+    public static List<Segment> createSegments(long contentLength, int count, String eTag) {
+        List<Segment> result = new ArrayList<>(count);
+        long length = (contentLength + count - 1) / count;
+        for (long start = 0; start < contentLength; start += length) {
+            long end = Math.min(start + length, contentLength) - 1;
+            result.add(new Segment(start, end, start, eTag));
+        }
+        return result;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return the index of the last byte of the segment
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the index of the next byte to download
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public void advance(long byteCount) {
+        position += byteCount;
+    }
+
+    /**
+     * @return the ETag of the version of the resource the segment is downloaded from
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    public long getProcessedBytes() {
+        return position - start;
+    }
+
+    public boolean isCompleted() {
+        return position > end;
+    }
+
+    public String toString() {
+        return getClass().getSimpleName() + "[start=" + getStart() + ", end=" + getEnd() + ", position=" + getPosition() + ", eTag=" + getETag() + "]";
+    }
+}
@@ -20,8 +20,12 @@
 package slash.navigation.download.actions;
 
 import java.io.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 
 import static slash.common.io.Directories.ensureDirectory;
+import static slash.common.io.Files.createMessageDigest;
+import static slash.common.io.Files.generateChecksum;
 import static slash.common.io.InputOutput.DEFAULT_BUFFER_SIZE;
 import static slash.common.io.InputOutput.closeQuietly;
 
@@ -44,6 +48,24 @@ public class Copier {
         }
     }
 
+    /**
+     * Copies a file and calculates the SHA-1 of the copied bytes on the fly.
+     *
+     * @param from the file to copy
+     * @param to the file to copy to
+     * @return the SHA-1 of the copied bytes
+     * @throws IOException if the copying fails
+     */
+    public String copyAndCloseWithChecksum(File from, File to) throws IOException {
+        ensureDirectory(to.getParent());
+        MessageDigest messageDigest = createMessageDigest();
+        try(InputStream inputStream = new FileInputStream(from);
+            OutputStream outputStream = new DigestOutputStream(new FileOutputStream(to), messageDigest)) {
+            copyAndClose(inputStream, outputStream, 0, from.length());
+        }
+        return generateChecksum(messageDigest);
+    }
+
     public long copyAndClose(InputStream input, OutputStream output, long startByte, Long expectingBytes) throws IOException {
         BufferedInputStream bis = new BufferedInputStream(input);
         BufferedOutputStream bos = new BufferedOutputStream(output);
@@ -25,16 +25,30 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import static java.io.File.createTempFile;
 import static java.lang.Integer.MAX_VALUE;
 import static java.lang.String.format;
+import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.util.logging.Logger.getLogger;
 import static slash.common.io.Directories.ensureDirectory;
+import static slash.common.io.Files.createMessageDigest;
+import static slash.common.io.Files.generateChecksum;
 import static slash.common.io.Files.lastPathFragment;
 import static slash.common.io.Files.setLastModified;
+import static slash.common.io.InputOutput.DEFAULT_BUFFER_SIZE;
 import static slash.common.io.InputOutput.closeQuietly;
 import static slash.common.type.CompactCalendar.fromMillis;
 
@@ -51,8 +65,48 @@ public class Extractor {
         this.listener = listener;
     }
 
-    private void doExtract(File tempFile, File destination, boolean flatten) throws IOException {
-        try (ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(tempFile))) {
+    private Map<File, String> doExtract(File tempFile, File destination, boolean flatten) throws IOException {
+        MessageDigest archiveDigest = createMessageDigest();
+        Map<File, String> checksums = extract(new DigestInputStream(new FileInputStream(tempFile), archiveDigest),
+                tempFile.getPath(), destination, flatten);
+        checksums.put(tempFile, generateChecksum(archiveDigest));
+        return checksums;
+    }
+
+    /**
+     * Extracts the files of an archive while it is read from the given stream,
+     * i.e. while it is downloaded. The stream is read until its end, so that a
+     * digest of the stream covers the whole archive. The files are extracted to
+     * temp files next to their targets which replace the targets only after the
+     * whole archive has been read, so that a broken stream keeps the previous files.
+     *
+     * @param archiveInputStream the stream to read the archive from, is closed afterwards
+     * @param archiveName the name of the archive for logging
+     * @param destination the directory to extract to
+     * @param flatten true if the files should be extracted into a single directory
+     * @return the SHA-1 of each extracted file
+     * @throws IOException if the extraction fails
+     */
+    public Map<File, String> extract(InputStream archiveInputStream, String archiveName, File destination,
+                                     boolean flatten) throws IOException {
+        Map<File, String> checksums = new HashMap<>();
+        Map<File, File> tempFiles = new LinkedHashMap<>();
+        try {
+            readArchive(archiveInputStream, archiveName, destination, flatten, tempFiles, checksums);
+
+            for (Map.Entry<File, File> entry : tempFiles.entrySet())
+                move(entry.getValue().toPath(), entry.getKey().toPath(), REPLACE_EXISTING);
+        } finally {
+            for (File tempFile : tempFiles.values())
+                if (tempFile.exists() && !tempFile.delete())
+                    log.warning(format("Cannot delete temp file %s", tempFile));
+        }
+        return checksums;
+    }
+
+    private void readArchive(InputStream archiveInputStream, String archiveName, File destination, boolean flatten,
+                             Map<File, File> tempFiles, Map<File, String> checksums) throws IOException {
+        try (ZipInputStream zipInputStream = new ZipInputStream(archiveInputStream)) {
             ZipEntry entry = zipInputStream.getNextEntry();
             while (entry != null) {
                 if (entry.isDirectory()) {
@@ -71,18 +125,34 @@ public class Extractor {
                     File directory = extracted.getParentFile();
                     handleDirectory(directory, entry);
 
-                    log.info(format("Extracting from %s to %s", tempFile, extracted));
-                    FileOutputStream output = new FileOutputStream(extracted);
-                    new Copier(listener).copy(zipInputStream, output, 0, entry.getSize());
-                    // do not close zip input stream
-                    closeQuietly(output);
-                    setLastModified(extracted, fromMillis(entry.getTime()));
+                    File tempFile = createTempFile(extracted.getName() + "-", ".extracting", directory);
+                    File previous = tempFiles.put(extracted, tempFile);
+                    if (previous != null && !previous.delete())
+                        log.warning(format("Cannot delete temp file %s", previous));
+
+                    log.info(format("Extracting from %s to %s", archiveName, extracted));
+                    MessageDigest messageDigest = createMessageDigest();
+                    OutputStream output = new DigestOutputStream(new FileOutputStream(tempFile), messageDigest);
+                    try {
+                        new Copier(listener).copy(zipInputStream, output, 0, entry.getSize());
+                    } finally {
+                        // do not close zip input stream
+                        closeQuietly(output);
+                    }
+                    setLastModified(tempFile, fromMillis(entry.getTime()));
+                    checksums.put(extracted, generateChecksum(messageDigest));
 
                     zipInputStream.closeEntry();
                 }
 
                 entry = zipInputStream.getNextEntry();
             }
+
+            // digest the central directory at the end of the archive, too
+            byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+            while (archiveInputStream.read(buffer) != -1) {
+                // intentionally left empty
+            }
         }
     }
 
@@ -91,11 +161,27 @@ public class Extractor {
         setLastModified(directory, fromMillis(entry.getTime()));
     }
 
-    public void flatten(File tempFile, File destination) throws IOException {
-        doExtract(tempFile, destination, true);
+    /**
+     * Extracts the files of an archive into a single directory.
+     *
+     * @param tempFile the archive
+     * @param destination the directory to extract to
+     * @return the SHA-1 of the archive and of each extracted file
+     * @throws IOException if the extraction fails
+     */
+    public Map<File, String> flatten(File tempFile, File destination) throws IOException {
+        return doExtract(tempFile, destination, true);
     }
 
-    public void extract(File tempFile, File destination) throws IOException {
-        doExtract(tempFile, destination, false);
+    /**
+     * Extracts the files of an archive with their paths.
+     *
+     * @param tempFile the archive
+     * @param destination the directory to extract to
+     * @return the SHA-1 of the archive and of each extracted file
+     * @throws IOException if the extraction fails
+     */
+    public Map<File, String> extract(File tempFile, File destination) throws IOException {
+        return doExtract(tempFile, destination, false);
     }
 }
@@ -21,6 +21,7 @@
 package slash.navigation.download.actions;
 
 import slash.navigation.download.Checksum;
+import slash.navigation.download.ChecksumCache;
 import slash.navigation.download.Download;
 import slash.navigation.download.FileAndChecksum;
 
@@ -42,11 +43,17 @@ import static slash.navigation.download.Checksum.createChecksum;
 public class Validator {
     private static final Logger log = getLogger(Validator.class.getName());
     private final Download download;
+    private final ChecksumCache checksumCache;
     private boolean calculatedChecksums;
     private Boolean existsTargets, checksumsValid;
 
-    public Validator(Download download) {
+    public Validator(Download download, ChecksumCache checksumCache) {
         this.download = download;
+        this.checksumCache = checksumCache;
+    }
+
+    public Validator(Download download) {
+        this(download, null);
     }
 
     public boolean isExistsTargets() {
@@ -91,15 +98,30 @@ public class Validator {
         if (calculatedChecksums)
             return;
 
-        download.getFile().setActualChecksum(createChecksum(getFileTarget()));
+        File fileTarget = getFileTarget();
+        // an archive that was extracted while downloading has no temp file, keep the checksum calculated while streaming
+        boolean extractedWhileDownloading = download.getFile().getFile().isDirectory() && !fileTarget.exists() &&
+                download.getFile().getActualChecksum() != null;
+        if (!extractedWhileDownloading)
+            download.getFile().setActualChecksum(calculateChecksum(download.getFile(), fileTarget));
         List<FileAndChecksum> fragments = download.getFragments();
         if (fragments != null)
             for (FileAndChecksum fragment : fragments)
-                fragment.setActualChecksum(createChecksum(fragment.getFile()));
+                fragment.setActualChecksum(calculateChecksum(fragment, fragment.getFile()));
 
         calculatedChecksums = true;
     }
 
+    private Checksum calculateChecksum(FileAndChecksum fileAndChecksum, File file) throws IOException {
+        // the checksum calculated while downloading is valid as long as the file is not modified
+        Checksum actual = fileAndChecksum.getActualChecksum();
+        if (actual != null && actual.getSHA1() != null && actual.isCurrentFor(file))
+            return actual;
+
+        // only checksums calculated from the file are trusted, the cache keeps them by timestamp and size
+        return checksumCache != null ? checksumCache.getChecksum(file) : createChecksum(file);
+    }
+
     private boolean isChecksumValid(FileAndChecksum file) {
         if (file.getFile().isDirectory())
             return true;
@@ -50,6 +50,7 @@ public class DownloadExecutor implements Runnable {
     private final Download download;
     private final DownloadManager downloadManager;
     private final ModelUpdater modelUpdater;
+    private volatile int statusCode;
 
     public DownloadExecutor(Download download, DownloadManager downloadManager) {
         this.download = download;
@@ -62,10 +63,22 @@ public class DownloadExecutor implements Runnable {
         return download;
     }
 
+    public DownloadManager getDownloadManager() {
+        return downloadManager;
+    }
+
     public ModelUpdater getModelUpdater() {
         return modelUpdater;
     }
 
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
     public void run() {
         updateState(Running);
 
@@ -0,0 +1,200 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.download.executor;
+
+import slash.navigation.download.Download;
+import slash.navigation.download.State;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.logging.Logger;
+
+import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static slash.navigation.download.State.*;
+
+/**
+ * Schedules {@link DownloadExecutor}s with a global limit and an adaptive {@link HostLimit}
+ * per host. Waiting executors are started in the order of the {@link DownloadExecutorComparator}
+ * as long as their host has capacity, so that a slow host cannot occupy every thread.
+ *
+ * @author Christian Pesch
+ */
+
+public class DownloadScheduler {
+    private static final Logger log = Logger.getLogger(DownloadScheduler.class.getName());
+    private static final Set<State> FAILED = new HashSet<>(asList(Failed, NoFileError, ChecksumError));
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final int SC_SERVICE_UNAVAILABLE = 503;
+
+    private final int maximumCount;
+    private final int initialHostCount;
+    private final int maximumHostCount;
+    private final ExecutorService pool;
+    private final Comparator<Runnable> comparator = new DownloadExecutorComparator();
+    private final Map<String, Queue<ScheduledDownload>> hostToWaiting = new HashMap<>();
+    private final Map<String, HostLimit> hostToLimit = new HashMap<>();
+    private int running;
+
+    DownloadScheduler(int maximumCount, int initialHostCount, int maximumHostCount, ExecutorService pool) {
+        this.maximumCount = maximumCount;
+        this.initialHostCount = initialHostCount;
+        this.maximumHostCount = maximumHostCount;
+        this.pool = pool;
+    }
+
+    public DownloadScheduler(int maximumCount, int initialHostCount, int maximumHostCount) {
+        // the waiting executors are kept here, the pool only queues what has been dispatched
+        this(maximumCount, initialHostCount, maximumHostCount, createPool(maximumCount));
+    }
+
+    private static ExecutorService createPool(int maximumCount) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maximumCount, maximumCount, 60, SECONDS, new LinkedBlockingQueue<Runnable>());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private class ScheduledDownload extends FutureTask<Object> {
+        private final DownloadExecutor executor;
+        private final String host;
+        private long started;
+
+        private ScheduledDownload(DownloadExecutor executor, String host) {
+            super(executor, null);
+            this.executor = executor;
+            this.host = host;
+        }
+
+        public void run() {
+            started = currentTimeMillis();
+            try {
+                super.run();
+            } finally {
+                finished(this);
+            }
+        }
+    }
+
+    static String getHost(String url) {
+        try {
+            String host = new URL(url).getHost();
+            return host != null ? host.toLowerCase() : "";
+        } catch (MalformedURLException e) {
+            return "";
+        }
+    }
+
+    public synchronized Future<?> submit(DownloadExecutor executor) {
+        ScheduledDownload download = new ScheduledDownload(executor, getHost(executor.getDownload().getUrl()));
+        Queue<ScheduledDownload> waiting = hostToWaiting.get(download.host);
+        if (waiting == null) {
+            waiting = new PriorityQueue<>(11, new Comparator<ScheduledDownload>() {
+                public int compare(ScheduledDownload d1, ScheduledDownload d2) {
+                    return comparator.compare(d1.executor, d2.executor);
+                }
+            });
+            hostToWaiting.put(download.host, waiting);
+        }
+        waiting.add(download);
+        dispatch();
+        return download;
+    }
+
+    private HostLimit getLimit(String host) {
+        HostLimit limit = hostToLimit.get(host);
+        if (limit == null) {
+            limit = new HostLimit(initialHostCount, 1, maximumHostCount);
+            hostToLimit.put(host, limit);
+        }
+        return limit;
+    }
+
+    synchronized int getLimitForHost(String host) {
+        return getLimit(host).getLimit();
+    }
+
+    private void dispatch() {
+        while (running < maximumCount) {
+            ScheduledDownload next = null;
+            for (Map.Entry<String, Queue<ScheduledDownload>> entry : hostToWaiting.entrySet()) {
+                Queue<ScheduledDownload> waiting = entry.getValue();
+                // drop executors that have been stopped while waiting
+                while (!waiting.isEmpty() && waiting.peek().isCancelled())
+                    waiting.poll();
+
+                ScheduledDownload candidate = waiting.peek();
+                if (candidate == null || !getLimit(entry.getKey()).hasCapacity())
+                    continue;
+                if (next == null || comparator.compare(candidate.executor, next.executor) < 0)
+                    next = candidate;
+            }
+            if (next == null)
+                break;
+
+            hostToWaiting.get(next.host).poll();
+            getLimit(next.host).started();
+            running++;
+            pool.execute(next);
+        }
+    }
+
+    private synchronized void finished(ScheduledDownload scheduled) {
+        running--;
+
+        HostLimit limit = getLimit(scheduled.host);
+        Download download = scheduled.executor.getDownload();
+        int statusCode = scheduled.executor.getStatusCode();
+        if (scheduled.isCancelled() || Stopped.equals(download.getState()))
+            limit.cancelled();
+        else if (statusCode == SC_TOO_MANY_REQUESTS || statusCode == SC_SERVICE_UNAVAILABLE) {
+            limit.throttled();
+            log.info(format("Host %s throttles downloads with status code %d, limiting to %d concurrent downloads",
+                    scheduled.host, statusCode, limit.getLimit()));
+        } else if (FAILED.contains(download.getState()))
+            limit.failed();
+        else
+            limit.succeeded(currentTimeMillis() - scheduled.started, download.getProcessedBytes());
+
+        dispatch();
+    }
+
+    public synchronized void purge() {
+        for (Queue<ScheduledDownload> waiting : hostToWaiting.values()) {
+            for (Iterator<ScheduledDownload> iterator = waiting.iterator(); iterator.hasNext(); ) {
+                if (iterator.next().isCancelled())
+                    iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void shutdownNow() {
+        hostToWaiting.clear();
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.download.executor;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Adapts the number of concurrent downloads from a host to the observed latency,
+ * throughput and errors: the limit grows additively while downloads complete about
+ * as fast as the best observed and shrinks multiplicatively on slow downloads,
+ * failures and throttling.
+ *
+ * @author Christian Pesch
+ */
+
+class HostLimit {
+    // downloads are normalized to the time they need per chunk to compare small and large files
+    private static final long CHUNK_SIZE = 256 * 1024;
+    private static final double SMOOTHING = 0.2;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double FAILURE_DECREASE = 0.75;
+    private static final double THROTTLE_DECREASE = 0.5;
+
+    private final int minimumLimit;
+    private final int maximumLimit;
+    private double limit;
+    private double averageLatency = -1;
+    private double bestLatency = Double.MAX_VALUE;
+    private int running;
+
+    HostLimit(int initialLimit, int minimumLimit, int maximumLimit) {
+        this.limit = initialLimit;
+        this.minimumLimit = minimumLimit;
+        this.maximumLimit = maximumLimit;
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    boolean hasCapacity() {
+        return running < getLimit();
+    }
+
+    int getRunning() {
+        return running;
+    }
+
+    void started() {
+        running++;
+    }
+
+    private void finished() {
+        running = max(0, running - 1);
+    }
+
+    void succeeded(long durationInMillis, long bytes) {
+        finished();
+
+        double latency = (double) durationInMillis / (1 + bytes / CHUNK_SIZE);
+        averageLatency = averageLatency < 0 ? latency : averageLatency + SMOOTHING * (latency - averageLatency);
+        bestLatency = min(bestLatency, averageLatency);
+
+        if (averageLatency <= bestLatency * LATENCY_TOLERANCE)
+            setLimit(limit + 1.0 / limit);
+        else
+            setLimit(limit * FAILURE_DECREASE);
+    }
+
+    void failed() {
+        finished();
+        setLimit(limit * FAILURE_DECREASE);
+    }
+
+    void throttled() {
+        finished();
+        setLimit(limit * THROTTLE_DECREASE);
+    }
+
+    void cancelled() {
+        finished();
+    }
+
+    private void setLimit(double limit) {
+        this.limit = max(minimumLimit, min(maximumLimit, limit));
+    }
+}
@@ -21,24 +21,54 @@ package slash.navigation.download.performer;
 
 import slash.navigation.download.Action;
 import slash.navigation.download.Checksum;
+import slash.navigation.download.ChecksumCache;
 import slash.navigation.download.Download;
+import slash.navigation.download.FileAndChecksum;
+import slash.navigation.download.Segment;
 import slash.navigation.download.actions.Copier;
+import slash.navigation.download.actions.CopierListener;
 import slash.navigation.download.actions.Extractor;
 import slash.navigation.download.actions.Validator;
 import slash.navigation.download.executor.DownloadExecutor;
 import slash.navigation.download.executor.ModelUpdater;
 import slash.navigation.rest.Get;
+import slash.navigation.rest.Head;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
+import java.util.zip.ZipException;
 
+import static java.lang.Math.min;
 import static java.lang.String.format;
+import static java.nio.file.StandardOpenOption.WRITE;
 import static java.util.logging.Logger.getLogger;
+import static slash.common.helpers.ThreadHelper.createFixedThreadPool;
 import static slash.common.io.Directories.ensureDirectory;
+import static slash.common.io.Files.createMessageDigest;
+import static slash.common.io.Files.generateChecksum;
 import static slash.common.io.Files.setLastModified;
+import static slash.common.type.CompactCalendar.fromMillis;
+import static slash.navigation.download.Action.Extract;
+import static slash.navigation.download.Action.Flatten;
+import static slash.navigation.download.Checksum.createChecksum;
 import static slash.navigation.download.State.*;
 
 /**
@@ -47,6 +77,10 @@ import static slash.navigation.download.State.*;
 public class GetPerformer implements ActionPerformer {
     private static final Logger log = getLogger(GetPerformer.class.getName());
     private static final int SOCKET_TIMEOUT = 15 * 60 * 1000;
+    private static final long SEGMENTED_DOWNLOAD_MINIMUM_SIZE = 64 * 1024 * 1024L;
+    private static final int SEGMENT_COUNT = 4;
+    private static final int SEGMENT_RETRY_COUNT = 3;
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     private DownloadExecutor downloadExecutor;
 
@@ -79,14 +113,184 @@ public class GetPerformer implements ActionPerformer {
         Get get = new Get(getDownload().getUrl());
         get.setRange(fileSize, contentLength);
 
-        InputStream inputStream = get.executeAsStream();
-        log.info(format("Resume from %s returned with status code %s", getDownload().getUrl(), get.getStatusCode()));
-        if (get.isPartialContent()) {
-            getModelUpdater().expectingBytes(contentLength != null ? contentLength : get.getContentLength() != null ? get.getContentLength() : 0);
-            new Copier(getModelUpdater()).copyAndClose(inputStream, new FileOutputStream(getDownload().getTempFile(), true), fileSize, contentLength);
-            return new Result(true);
+        try {
+            InputStream inputStream = get.executeAsStream();
+            log.info(format("Resume from %s returned with status code %s", getDownload().getUrl(), get.getStatusCode()));
+            downloadExecutor.setStatusCode(get.getStatusCode());
+            if (get.isPartialContent()) {
+                getModelUpdater().expectingBytes(contentLength != null ? contentLength : get.getContentLength() != null ? get.getContentLength() : 0);
+                new Copier(getModelUpdater()).copyAndClose(inputStream, new FileOutputStream(getDownload().getTempFile(), true), fileSize, contentLength);
+                return new Result(true);
+            }
+            return new Result(false);
+        } finally {
+            // returns the connection to the pool if the body has not been read
+            get.release();
+        }
+    }
+
+    private Long getExpectedContentLength() {
+        Checksum checksum = getDownload().getFile().getExpectedChecksum();
+        return checksum != null ? checksum.getContentLength() : null;
+    }
+
+    private boolean canDownloadSegments() {
+        // a conditional GET for existing targets is cheaper than a segmented download
+        if (new Validator(getDownload()).isExistsTargets() && getDownload().getETag() != null)
+            return false;
+        Long contentLength = getExpectedContentLength();
+        return contentLength != null && contentLength >= SEGMENTED_DOWNLOAD_MINIMUM_SIZE;
+    }
+
+    private boolean canResumeSegments(List<Segment> segments, long contentLength, String eTag) {
+        File tempFile = getDownload().getTempFile();
+        if (segments == null || segments.isEmpty() || !tempFile.exists() || tempFile.length() != contentLength ||
+                segments.get(segments.size() - 1).getEnd() != contentLength - 1)
+            return false;
+
+        // segments of another version of the resource would mix both versions
+        for (Segment segment : segments) {
+            if (!eTag.equals(segment.getETag()))
+                return false;
+        }
+        return true;
+    }
+
+    private List<Segment> prepareSegments(long contentLength, String eTag) throws IOException {
+        List<Segment> segments = getDownload().getSegments();
+        if (canResumeSegments(segments, contentLength, eTag)) {
+            log.info(format("Resuming segments %s of %s", segments, getDownload().getUrl()));
+            return segments;
+        }
+
+        if (segments != null)
+            log.info(format("Restarting segments %s of %s with %d bytes and ETag %s", segments, getDownload().getUrl(), contentLength, eTag));
+        segments = Segment.createSegments(contentLength, SEGMENT_COUNT, eTag);
+        try (RandomAccessFile file = new RandomAccessFile(getDownload().getTempFile(), "rw")) {
+            file.setLength(contentLength);
+        }
+        getDownload().setSegments(segments);
+        return segments;
+    }
+
+    private Result downloadSegments() throws IOException {
+        Head head = new Head(getDownload().getUrl());
+        head.executeAsString();
+        if (!head.isSuccessful() || !head.getAcceptByteRanges()) {
+            log.info(format("HEAD for %s returned with status code %s and no byte ranges", getDownload().getUrl(), head.getStatusCode()));
+            return new Result(false);
+        }
+
+        // the segments are sized and validated against the resource on the server, not the catalog
+        Long headContentLength = head.getContentLength();
+        final String eTag = head.getETag();
+        if (headContentLength == null || eTag == null || eTag.startsWith("W/")) {
+            log.info(format("HEAD for %s returned no content length or strong ETag", getDownload().getUrl()));
+            return new Result(false);
+        }
+
+        downloadExecutor.updateState(getDownload().getSegments() != null ? Resuming : Downloading);
+        long contentLength = headContentLength;
+        final List<Segment> segments = prepareSegments(contentLength, eTag);
+        log.info(format("Downloading %d bytes in %d segments from %s", contentLength, segments.size(), getDownload().getUrl()));
+
+        final AtomicLong processedBytes = new AtomicLong();
+        for (Segment segment : segments)
+            processedBytes.addAndGet(segment.getProcessedBytes());
+        getModelUpdater().expectingBytes(contentLength);
+
+        ExecutorService executor = createFixedThreadPool("DownloadSegment", segments.size());
+        try (final FileChannel channel = FileChannel.open(getDownload().getTempFile().toPath(), WRITE)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (final Segment segment : segments) {
+                futures.add(executor.submit(new Runnable() {
+                    public void run() {
+                        downloadSegment(segment, channel, processedBytes);
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException(format("Interrupted segmented download from %s", getDownload().getUrl()));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof SegmentException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof ResourceChangedException) {
+                // restart with a complete download of the new version
+                log.info(format("Restarting download from %s: %s", getDownload().getUrl(), cause.getMessage()));
+                getDownload().setSegments(null);
+                return new Result(false);
+            }
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        getDownload().setSegments(null);
+        getDownload().setETag(eTag);
+        return new Result(true, head.getLastModified());
+    }
+
+    private void downloadSegment(Segment segment, FileChannel channel, AtomicLong processedBytes) {
+        for (int retry = 0; !segment.isCompleted(); retry++) {
+            try {
+                transferSegment(segment, channel, processedBytes);
+            } catch (ResourceChangedException e) {
+                throw new SegmentException(e);
+            } catch (IOException e) {
+                if (retry >= SEGMENT_RETRY_COUNT || Thread.currentThread().isInterrupted())
+                    throw new SegmentException(e);
+                log.warning(format("Retrying segment %s of %s: %s", segment, getDownload().getUrl(), e));
+            }
+        }
+    }
+
+    private void transferSegment(Segment segment, FileChannel channel, AtomicLong processedBytes) throws IOException {
+        Get get = new Get(getDownload().getUrl());
+        get.setSocketTimeout(SOCKET_TIMEOUT);
+        get.setRange(segment.getPosition(), segment.getEnd());
+        get.setIfRange(segment.getETag());
+
+        try {
+            InputStream inputStream = get.executeAsStream();
+            if (get.isOk())
+                throw new ResourceChangedException(format("GET %d-%d returned the complete resource since it no longer matches ETag %s",
+                        segment.getPosition(), segment.getEnd(), segment.getETag()));
+            if (!get.isPartialContent() || inputStream == null) {
+                downloadExecutor.setStatusCode(get.getStatusCode());
+                throw new IOException(format("GET %d-%d returned with status code %s", segment.getPosition(), segment.getEnd(), get.getStatusCode()));
+            }
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!segment.isCompleted()) {
+                int read = inputStream.read(buffer, 0, (int) min(buffer.length, segment.getEnd() - segment.getPosition() + 1));
+                if (read == -1)
+                    throw new IOException(format("Segment %s ended prematurely", segment));
+
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                long position = segment.getPosition();
+                while (byteBuffer.hasRemaining())
+                    position += channel.write(byteBuffer, position);
+                segment.advance(read);
+                getModelUpdater().processedBytes(processedBytes.addAndGet(read));
+            }
+        } finally {
+            // closes the connection without reading the rest of the body
+            get.release();
+        }
+    }
+
+    private static class SegmentException extends RuntimeException {
+        private SegmentException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    private static class ResourceChangedException extends IOException {
+        private ResourceChangedException(String message) {
+            super(message);
         }
-        return new Result(false);
     }
 
     private Result download() throws IOException {
@@ -100,35 +304,140 @@ public class GetPerformer implements ActionPerformer {
         if (new Validator(getDownload()).isExistsTargets() && getDownload().getETag() != null)
             get.setIfNoneMatch(getDownload().getETag());
 
-        InputStream inputStream = get.executeAsStream();
-        log.info(format("Download from %s returned with status code %s and content length %d", getDownload().getUrl(), get.getStatusCode(), get.getContentLength()));
-        if (get.isSuccessful() && inputStream != null) {
-            if(contentLength == null)
-                contentLength = get.getContentLength();
-            if (contentLength != null)
-                getModelUpdater().expectingBytes(contentLength);
-            new Copier(getModelUpdater()).copyAndClose(inputStream, new FileOutputStream(getDownload().getTempFile()), 0, contentLength);
-            getDownload().setETag(get.getETag());
-            return new Result(true, get.getLastModified());
+        try {
+            InputStream inputStream = get.executeAsStream();
+            log.info(format("Download from %s returned with status code %s and content length %d", getDownload().getUrl(), get.getStatusCode(), get.getContentLength()));
+            downloadExecutor.setStatusCode(get.getStatusCode());
+            if (get.isSuccessful() && inputStream != null) {
+                if(contentLength == null)
+                    contentLength = get.getContentLength();
+                if (contentLength != null)
+                    getModelUpdater().expectingBytes(contentLength);
+                new Copier(getModelUpdater()).copyAndClose(inputStream, new FileOutputStream(getDownload().getTempFile()), 0, contentLength);
+                getDownload().setETag(get.getETag());
+                return new Result(true, get.getLastModified());
+            }
+            return new Result(get.isSuccessful(), get.isNotModified());
+        } finally {
+            get.release();
+        }
+    }
+
+    private boolean canExtractWhileDownloading() {
+        Action action = getDownload().getAction();
+        // resuming needs the archive in the temp file
+        return (Extract.equals(action) || Flatten.equals(action)) && getDownload().getSegments() == null && !canResume();
+    }
+
+    private Result extractWhileDownloading() throws IOException {
+        downloadExecutor.updateState(Downloading);
+
+        Long contentLength = getExpectedContentLength();
+        log.info(format("Downloading and extracting %d bytes from %s with ETag %s", contentLength, getDownload().getUrl(), getDownload().getETag()));
+
+        Get get = new Get(getDownload().getUrl());
+        get.setSocketTimeout(SOCKET_TIMEOUT);
+        if (new Validator(getDownload()).isExistsTargets() && getDownload().getETag() != null)
+            get.setIfNoneMatch(getDownload().getETag());
+
+        try {
+            InputStream inputStream = get.executeAsStream();
+            log.info(format("Download from %s returned with status code %s and content length %d", getDownload().getUrl(), get.getStatusCode(), get.getContentLength()));
+            downloadExecutor.setStatusCode(get.getStatusCode());
+            if (get.isSuccessful() && inputStream != null) {
+                if (contentLength == null)
+                    contentLength = get.getContentLength();
+                if (contentLength != null)
+                    getModelUpdater().expectingBytes(contentLength);
+
+                // report the downloaded instead of the extracted bytes
+                ProgressInputStream progressInputStream = new ProgressInputStream(inputStream);
+                MessageDigest archiveDigest = createMessageDigest();
+                InputStream archiveInputStream = new BufferedInputStream(new DigestInputStream(progressInputStream, archiveDigest), BUFFER_SIZE);
+                Map<File, String> checksums;
+                try {
+                    checksums = new Extractor(NO_LISTENER).extract(archiveInputStream, getDownload().getUrl(),
+                            getDownload().getFile().getFile(), Flatten.equals(getDownload().getAction()));
+                } catch (ZipException e) {
+                    log.warning(format("Cannot extract while downloading from %s: %s", getDownload().getUrl(), e));
+                    return new Result(false);
+                }
+
+                // a stale temp file would be validated instead of the checksum of the streamed archive
+                File tempFile = getDownload().getTempFile();
+                if (tempFile.exists() && !tempFile.delete())
+                    throw new IOException(format("Cannot delete temp file %s", tempFile));
+
+                getDownload().setETag(get.getETag());
+                Long lastModified = get.getLastModified();
+                setActualChecksums(new Checksum(lastModified != null ? fromMillis(lastModified) : null,
+                        progressInputStream.getProcessedBytes(), generateChecksum(archiveDigest)), checksums);
+                return new Result(true, false, lastModified, true);
+            }
+            return new Result(get.isSuccessful(), get.isNotModified());
+        } finally {
+            get.release();
+        }
+    }
+
+    private static final CopierListener NO_LISTENER = new CopierListener() {
+        public void expectingBytes(long byteCount) {
+        }
+
+        public void processedBytes(long byteCount) {
+        }
+    };
+
+    private class ProgressInputStream extends FilterInputStream {
+        private long processedBytes;
+
+        private ProgressInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        public long getProcessedBytes() {
+            return processedBytes;
+        }
+
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1)
+                processed(1);
+            return read;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0)
+                processed(read);
+            return read;
+        }
+
+        private void processed(int byteCount) {
+            processedBytes += byteCount;
+            getModelUpdater().processedBytes(processedBytes);
         }
-        return new Result(get.isSuccessful(), get.isNotModified());
     }
 
     public void run() throws IOException {
         Result result = new Result(false);
-        if (canResume())
+        if (canExtractWhileDownloading())
+            result = extractWhileDownloading();
+        else if (canDownloadSegments())
+            result = downloadSegments();
+        else if (canResume())
             result = resume();
-        if (!result.success)
+        if (!result.success && !result.notModified)
             result = download();
 
         if (result.notModified) {
             downloadExecutor.notModified();
 
         } else if (result.success) {
-            if(!getDownload().getTempFile().exists())
+            if(!result.extracted && !getDownload().getTempFile().exists())
                 downloadExecutor.downloadFailed();
 
-            if (postProcess(result.lastModified))
+            if (postProcess(result))
                 downloadExecutor.succeeded();
             else
                 downloadExecutor.postProcessFailed();
@@ -137,10 +446,11 @@ public class GetPerformer implements ActionPerformer {
             downloadExecutor.downloadFailed();
     }
 
-    private boolean postProcess(Long lastModified) throws IOException {
+    private boolean postProcess(Result result) throws IOException {
         downloadExecutor.updateState(Processing);
 
-        bringToTarget(lastModified);
+        if (!result.extracted)
+            bringToTarget(result.lastModified);
 
         if (!validate())
             return false;
@@ -173,26 +483,54 @@ public class GetPerformer implements ActionPerformer {
     private void copy(Long lastModified) throws IOException {
         File target = getDownload().getFile().getFile();
         ensureDirectory(target.getParent());
-        new Copier(getModelUpdater()).copyAndClose(getDownload().getTempFile(), target);
+        String sha1 = new Copier(getModelUpdater()).copyAndCloseWithChecksum(getDownload().getTempFile(), target);
         setLastModified(target, lastModified);
+        setActualChecksum(getDownload().getFile(), target, sha1);
+    }
+
+    private void setActualChecksum(FileAndChecksum fileAndChecksum, File file, String sha1) {
+        Checksum checksum = createChecksum(file, sha1);
+        fileAndChecksum.setActualChecksum(checksum);
+        ChecksumCache checksumCache = getChecksumCache();
+        if (checksumCache != null)
+            checksumCache.putChecksum(file, checksum);
+    }
+
+    private ChecksumCache getChecksumCache() {
+        return downloadExecutor.getDownloadManager().getChecksumCache();
     }
 
     private void flatten(Long lastModified) throws IOException {
         File target = getDownload().getFile().getFile();
-        new Extractor(getModelUpdater()).flatten(getDownload().getTempFile(), target);
+        Map<File, String> checksums = new Extractor(getModelUpdater()).flatten(getDownload().getTempFile(), target);
         setLastModified(getDownload().getTempFile(), lastModified);
+        setActualChecksums(createChecksum(getDownload().getTempFile(), checksums.get(getDownload().getTempFile())), checksums);
     }
 
     private void extract(Long lastModified) throws IOException {
         File target = getDownload().getFile().getFile();
-        new Extractor(getModelUpdater()).extract(getDownload().getTempFile(), target);
+        Map<File, String> checksums = new Extractor(getModelUpdater()).extract(getDownload().getTempFile(), target);
         setLastModified(getDownload().getTempFile(), lastModified);
+        setActualChecksums(createChecksum(getDownload().getTempFile(), checksums.get(getDownload().getTempFile())), checksums);
+    }
+
+    private void setActualChecksums(Checksum archiveChecksum, Map<File, String> checksums) {
+        getDownload().getFile().setActualChecksum(archiveChecksum);
+
+        List<FileAndChecksum> fragments = getDownload().getFragments();
+        if (fragments != null) {
+            for (FileAndChecksum fragment : fragments) {
+                String sha1 = checksums.get(fragment.getFile());
+                if (sha1 != null)
+                    setActualChecksum(fragment, fragment.getFile(), sha1);
+            }
+        }
     }
 
     private boolean validate() throws IOException {
         downloadExecutor.updateState(Validating);
 
-        Validator validator = new Validator(getDownload());
+        Validator validator = new Validator(getDownload(), getChecksumCache());
         if (!validator.isExistsTargets()) {
             downloadExecutor.updateState(NoFileError);
             return false;
@@ -210,6 +548,7 @@ public class GetPerformer implements ActionPerformer {
         public final boolean success;
         public final boolean notModified;
         public final Long lastModified;
+        public final boolean extracted;
 
         public Result(boolean success) {
             this(success, null);
@@ -224,9 +563,14 @@ public class GetPerformer implements ActionPerformer {
         }
 
         private Result(boolean success, boolean notModified, Long lastModified) {
+            this(success, notModified, lastModified, false);
+        }
+
+        private Result(boolean success, boolean notModified, Long lastModified, boolean extracted) {
             this.success = success;
             this.notModified = notModified;
             this.lastModified = lastModified;
+            this.extracted = extracted;
         }
     }
 }
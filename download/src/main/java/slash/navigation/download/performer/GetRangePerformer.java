@@ -61,17 +61,21 @@ public class GetRangePerformer implements ActionPerformer {
         if (getDownload().getETag() != null)
             request.setIfNoneMatch(getDownload().getETag());
 
-        InputStream inputStream = request.executeAsStream();
-        log.info(format("GET 0-%d for %s returned with status code %s and content length %d", RANGE_END_INDEX, getDownload().getUrl(), request.getStatusCode(), request.getContentLength()));
-        if (request.isPartialContent()) {
-            writePartialFile(inputStream, getDownload().getFile().getExpectedChecksum().getContentLength(), getDownload().getFile().getFile());
-            closeQuietly(inputStream);
-        } else if (request.isOk()){
-            // HTTP Range not supported
-            copyAndClose(inputStream, new FileOutputStream(getDownload().getFile().getFile()));
-            setLastModified(getDownload().getFile().getFile(), request.getLastModified());
+        try {
+            InputStream inputStream = request.executeAsStream();
+            log.info(format("GET 0-%d for %s returned with status code %s and content length %d", RANGE_END_INDEX, getDownload().getUrl(), request.getStatusCode(), request.getContentLength()));
+            downloadExecutor.setStatusCode(request.getStatusCode());
+            if (request.isPartialContent()) {
+                writePartialFile(inputStream, getDownload().getFile().getExpectedChecksum().getContentLength(), getDownload().getFile().getFile());
+                closeQuietly(inputStream);
+            } else if (request.isOk()) {
+                // HTTP Range not supported
+                copyAndClose(inputStream, new FileOutputStream(getDownload().getFile().getFile()));
+                setLastModified(getDownload().getFile().getFile(), request.getLastModified());
+            }
+        } finally {
+            request.release();
         }
-        request.release();
 
         if (request.isNotModified()) {
             downloadExecutor.notModified();
@@ -56,6 +56,7 @@ public class HeadPerformer implements ActionPerformer {
 
         String body = request.executeAsString();
         log.info(format("HEAD for %s returned with status code %s and body %s", getDownload().getUrl(), request.getStatusCode(), body));
+        downloadExecutor.setStatusCode(request.getStatusCode());
 
         if (request.isNotModified()) {
             ensureChecksum(request);
@@ -72,7 +73,7 @@ public class HeadPerformer implements ActionPerformer {
 
     private void ensureChecksum(Head request) throws IOException {
         if (getDownload().getFile().getFile().exists()) {
-            Validator validator = new Validator(getDownload());
+            Validator validator = new Validator(getDownload(), downloadExecutor.getDownloadManager().getChecksumCache());
             validator.calculateChecksums();
 
         } else
@@ -0,0 +1,333 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.download.queue;
+
+import slash.common.io.InputOutput;
+import slash.navigation.download.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import static java.lang.String.format;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static slash.common.helpers.ExceptionHelper.getLocalizedMessage;
+import static slash.common.type.CompactCalendar.fromMillis;
+
+/**
+ * Persists the {@link Download}s of a queue in an append-only journal. Every change of a
+ * download appends a record, the journal is compacted once it grows to a multiple of the
+ * live records and a truncated or corrupt record at its end is dropped when loading.
+ *
+ * @author Christian Pesch
+ */
+
+public class QueueJournal implements Closeable {
+    private static final Logger log = Logger.getLogger(QueueJournal.class.getName());
+    private static final byte UPDATE = 1;
+    private static final byte REMOVE = 2;
+    private static final int COMPACTION_FACTOR = 4;
+    private static final long MINIMUM_COMPACTION_BYTE_COUNT = 64 * 1024;
+
+    private final File file;
+    // the latest record for each url in the order of the first appearance
+    private final Map<String, byte[]> records = new LinkedHashMap<>();
+    private DataOutputStream output;
+    private long byteCount;
+    private long liveByteCount;
+
+    public QueueJournal(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean exists() {
+        return file.exists();
+    }
+
+    public synchronized List<Download> load() throws IOException {
+        records.clear();
+        byteCount = 0;
+        liveByteCount = 0;
+        if (!file.exists())
+            return new ArrayList<>();
+
+        byte[] bytes = java.nio.file.Files.readAllBytes(file.toPath());
+        DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(bytes));
+        long validLength = 0;
+        try {
+            while (validLength < bytes.length) {
+                int length = inputStream.readInt();
+                if (length <= 0 || length > bytes.length - validLength)
+                    throw new IOException("Invalid record length " + length);
+                byte[] payload = new byte[length];
+                inputStream.readFully(payload);
+                if (inputStream.readLong() != crc(payload))
+                    throw new IOException("Invalid record checksum");
+                try {
+                    apply(payload);
+                } catch (IOException e) {
+                    // an intact record that cannot be read does not affect the following ones
+                    log.warning(format("Skipping record at %d of queue journal %s: %s", validLength, file, getLocalizedMessage(e)));
+                }
+                validLength += recordLength(payload);
+            }
+        } catch (IOException e) {
+            // a crash while appending leaves a truncated record at the end of the journal
+            log.warning(format("Truncating queue journal %s from %d to %d bytes: %s", file, bytes.length, validLength, getLocalizedMessage(e)));
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(validLength);
+            }
+        }
+        byteCount = validLength;
+
+        List<Download> result = new ArrayList<>();
+        for (Map.Entry<String, byte[]> entry : records.entrySet()) {
+            try {
+                result.add(decode(entry.getValue()));
+            } catch (IOException | IllegalArgumentException e) {
+                // for example an action or state of another version, the next update removes the record
+                log.warning(format("Skipping download %s of queue journal %s: %s", entry.getKey(), file, getLocalizedMessage(e)));
+            }
+        }
+        return result;
+    }
+
+    private void apply(byte[] payload) throws IOException {
+        DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = inputStream.readByte();
+        String url = inputStream.readUTF();
+        byte[] previous = records.get(url);
+        if (previous != null)
+            liveByteCount -= recordLength(previous);
+
+        if (type == UPDATE) {
+            records.put(url, payload);
+            liveByteCount += recordLength(payload);
+        } else if (type == REMOVE)
+            records.remove(url);
+        else
+            throw new IOException("Invalid record type " + type);
+    }
+
+    private static long recordLength(byte[] payload) {
+        return 4 + payload.length + 8;
+    }
+
+    private static long crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue();
+    }
+
+    public synchronized void update(Download download) throws IOException {
+        byte[] payload = encode(download);
+        // avoid growing the journal for notifications that did not change the download
+        if (Arrays.equals(payload, records.get(download.getUrl())))
+            return;
+        append(payload);
+    }
+
+    public synchronized void remove(Download download) throws IOException {
+        remove(download.getUrl());
+    }
+
+    private void remove(String url) throws IOException {
+        if (!records.containsKey(url))
+            return;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream outputStream = new DataOutputStream(bytes);
+        outputStream.writeByte(REMOVE);
+        outputStream.writeUTF(url);
+        outputStream.flush();
+        append(bytes.toByteArray());
+    }
+
+    /**
+     * Brings the journal in line with the given downloads by appending records only for the
+     * downloads that changed or disappeared since the last update.
+     */
+    public synchronized void update(List<Download> downloads) throws IOException {
+        Set<String> urls = new HashSet<>();
+        for (Download download : downloads) {
+            // make more robust against strange effects seen on chinese Macs
+            if (download == null)
+                continue;
+            urls.add(download.getUrl());
+            update(download);
+        }
+
+        for (String url : new ArrayList<>(records.keySet())) {
+            if (!urls.contains(url))
+                remove(url);
+        }
+    }
+
+    private void append(byte[] payload) throws IOException {
+        if (output == null)
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        output.writeInt(payload.length);
+        output.write(payload);
+        output.writeLong(crc(payload));
+        output.flush();
+        byteCount += recordLength(payload);
+        apply(payload);
+
+        if (byteCount > MINIMUM_COMPACTION_BYTE_COUNT && byteCount > COMPACTION_FACTOR * liveByteCount)
+            compact();
+    }
+
+    /**
+     * Rewrites the journal with the latest record of every download that is still queued.
+     */
+    synchronized void compact() throws IOException {
+        File compactedFile = new File(file.getPath() + ".compact");
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compactedFile)))) {
+            for (byte[] payload : records.values()) {
+                outputStream.writeInt(payload.length);
+                outputStream.write(payload);
+                outputStream.writeLong(crc(payload));
+            }
+        }
+
+        closeQuietly();
+        java.nio.file.Files.move(compactedFile.toPath(), file.toPath(), REPLACE_EXISTING);
+        byteCount = liveByteCount;
+        log.info(format("Compacted queue journal %s to %d downloads with %d bytes", file, records.size(), byteCount));
+    }
+
+    synchronized long getByteCount() {
+        return byteCount;
+    }
+
+    private byte[] encode(Download download) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream outputStream = new DataOutputStream(bytes);
+        outputStream.writeByte(UPDATE);
+        outputStream.writeUTF(download.getUrl());
+        writeString(outputStream, download.getDescription());
+        outputStream.writeUTF(download.getAction().name());
+        outputStream.writeUTF(download.getState().name());
+        writeString(outputStream, download.getETag());
+        outputStream.writeUTF(download.getTempFile().getPath());
+        writeFileAndChecksum(outputStream, download.getFile());
+
+        List<FileAndChecksum> fragments = download.getFragments();
+        outputStream.writeInt(fragments != null ? fragments.size() : -1);
+        if (fragments != null) {
+            for (FileAndChecksum fragment : fragments)
+                writeFileAndChecksum(outputStream, fragment);
+        }
+
+        List<Segment> segments = download.getSegments();
+        outputStream.writeInt(segments != null ? segments.size() : -1);
+        if (segments != null) {
+            for (Segment segment : segments) {
+                outputStream.writeLong(segment.getStart());
+                outputStream.writeLong(segment.getEnd());
+                outputStream.writeLong(segment.getPosition());
+                writeString(outputStream, segment.getETag());
+            }
+        }
+        outputStream.flush();
+        return bytes.toByteArray();
+    }
+
+    private void writeFileAndChecksum(DataOutputStream outputStream, FileAndChecksum fileAndChecksum) throws IOException {
+        outputStream.writeUTF(fileAndChecksum.getFile().getPath());
+        Checksum checksum = fileAndChecksum.getExpectedChecksum();
+        outputStream.writeBoolean(checksum != null);
+        if (checksum == null)
+            return;
+
+        outputStream.writeLong(checksum.getLastModified() != null ? checksum.getLastModified().getTimeInMillis() : -1);
+        outputStream.writeLong(checksum.getContentLength() != null ? checksum.getContentLength() : -1);
+        writeString(outputStream, checksum.getSHA1());
+    }
+
+    private void writeString(DataOutputStream outputStream, String string) throws IOException {
+        outputStream.writeBoolean(string != null);
+        if (string != null)
+            outputStream.writeUTF(string);
+    }
+
+    private Download decode(byte[] payload) throws IOException {
+        DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(payload));
+        inputStream.readByte();
+        String url = inputStream.readUTF();
+        String description = readString(inputStream);
+        Action action = Action.valueOf(inputStream.readUTF());
+        State state = State.valueOf(inputStream.readUTF());
+        String eTag = readString(inputStream);
+        File tempFile = new File(inputStream.readUTF());
+        FileAndChecksum file = readFileAndChecksum(inputStream);
+
+        List<FileAndChecksum> fragments = null;
+        int fragmentCount = inputStream.readInt();
+        if (fragmentCount >= 0) {
+            fragments = new ArrayList<>();
+            for (int i = 0; i < fragmentCount; i++)
+                fragments.add(readFileAndChecksum(inputStream));
+        }
+
+        List<Segment> segments = null;
+        int segmentCount = inputStream.readInt();
+        if (segmentCount >= 0) {
+            segments = new ArrayList<>();
+            for (int i = 0; i < segmentCount; i++)
+                segments.add(new Segment(inputStream.readLong(), inputStream.readLong(), inputStream.readLong(), readString(inputStream)));
+        }
+
+        Download download = new Download(description, url, action, file, fragments, eTag, state, tempFile);
+        download.setSegments(segments);
+        return download;
+    }
+
+    private FileAndChecksum readFileAndChecksum(DataInputStream inputStream) throws IOException {
+        File file = new File(inputStream.readUTF());
+        if (!inputStream.readBoolean())
+            return new FileAndChecksum(file, null);
+
+        long lastModified = inputStream.readLong();
+        long contentLength = inputStream.readLong();
+        String sha1 = readString(inputStream);
+        return new FileAndChecksum(file, new Checksum(lastModified != -1 ? fromMillis(lastModified) : null,
+                contentLength != -1 ? contentLength : null, sha1));
+    }
+
+    private String readString(DataInputStream inputStream) throws IOException {
+        return inputStream.readBoolean() ? inputStream.readUTF() : null;
+    }
+
+    private void closeQuietly() {
+        InputOutput.closeQuietly(output);
+        output = null;
+    }
+
+    public synchronized void close() {
+        closeQuietly();
+    }
+}
@@ -62,10 +62,22 @@ public class QueuePersister {
     }
 
     private Download asDownload(DownloadType downloadType) {
-        return new Download(downloadType.getDescription(), downloadType.getUrl(), Action.valueOf(downloadType.getAction()),
+        Download download = new Download(downloadType.getDescription(), downloadType.getUrl(), Action.valueOf(downloadType.getAction()),
                 new FileAndChecksum(new File(downloadType.getDownloadable().getTarget()), asChecksum(downloadType.getDownloadable().getChecksum())),
                 asFileAndChecksums(downloadType.getDownloadable().getFragment()),
                 downloadType.getETag(), State.valueOf(downloadType.getState()), new File(downloadType.getTempFile()));
+        download.setSegments(asSegments(downloadType.getSegment()));
+        return download;
+    }
+
+    private List<Segment> asSegments(List<SegmentType> segmentTypes) {
+        if (segmentTypes.isEmpty())
+            return null;
+
+        List<Segment> segments = new ArrayList<>();
+        for (SegmentType segmentType : segmentTypes)
+            segments.add(new Segment(segmentType.getStart(), segmentType.getEnd(), segmentType.getPosition(), segmentType.getETag()));
+        return segments;
     }
 
     private List<FileAndChecksum> asFileAndChecksums(List<FragmentType> fragmentTypes) {
@@ -111,9 +123,23 @@ public class QueuePersister {
         downloadType.setState(download.getState().name());
         downloadType.setETag(download.getETag());
         downloadType.setTempFile(download.getTempFile().getPath());
+        List<Segment> segments = download.getSegments();
+        if (segments != null) {
+            for (Segment segment : segments)
+                downloadType.getSegment().add(asSegmentType(segment));
+        }
         return downloadType;
     }
 
+    private SegmentType asSegmentType(Segment segment) {
+        SegmentType segmentType = new ObjectFactory().createSegmentType();
+        segmentType.setStart(segment.getStart());
+        segmentType.setEnd(segment.getEnd());
+        segmentType.setPosition(segment.getPosition());
+        segmentType.setETag(segment.getETag());
+        return segmentType;
+    }
+
     private DownloadableType asDownloadableType(Download download) {
         DownloadableType downloadableType = new ObjectFactory().createDownloadableType();
         downloadableType.setChecksum(asChecksumType(download.getFile().getExpectedChecksum()));
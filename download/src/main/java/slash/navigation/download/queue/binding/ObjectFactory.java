@@ -64,6 +64,14 @@ public class ObjectFactory {
         return new FragmentType();
     }
 
+    /**
+     * Create an instance of {@link SegmentType }
+     * 
+     */
+    public SegmentType createSegmentType() {
+        return new SegmentType();
+    }
+
     /**
      * Create an instance of {@link ChecksumType }
      * 
@@ -0,0 +1,108 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.download;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static java.io.File.createTempFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static slash.common.io.Files.generateChecksum;
+
+public class ChecksumCacheTest {
+    private File cacheFile, file;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheFile = createTempFile("checksums", ".cache");
+        assertTrue(cacheFile.delete());
+        file = createTempFile("file", ".txt");
+    }
+
+    @After
+    public void tearDown() {
+        if (cacheFile.exists())
+            assertTrue(cacheFile.delete());
+        if (file.exists())
+            assertTrue(file.delete());
+    }
+
+    private void write(String content, long lastModified) throws IOException {
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content.getBytes());
+        }
+        assertTrue(file.setLastModified(lastModified));
+    }
+
+    @Test
+    public void testUnchangedFileIsNotReadAgain() throws IOException {
+        write("first", 1000000000000L);
+        String sha1 = generateChecksum(file);
+
+        ChecksumCache cache = new ChecksumCache(cacheFile);
+        assertEquals(sha1, cache.getChecksum(file).getSHA1());
+        cache.close();
+
+        // same size and timestamp: the file is considered unchanged
+        write("FIRST", 1000000000000L);
+        cache = new ChecksumCache(cacheFile);
+        assertEquals(sha1, cache.getChecksum(file).getSHA1());
+        cache.close();
+    }
+
+    @Test
+    public void testModifiedFileIsReadAgain() throws IOException {
+        write("first", 1000000000000L);
+        ChecksumCache cache = new ChecksumCache(cacheFile);
+        String sha1 = cache.getChecksum(file).getSHA1();
+
+        write("second", 1000000000000L);
+        Checksum checksum = cache.getChecksum(file);
+        assertNotEquals(sha1, checksum.getSHA1());
+        assertEquals(generateChecksum(file), checksum.getSHA1());
+        cache.close();
+    }
+
+    @Test
+    public void testPutChecksum() throws IOException {
+        write("first", 1000000000000L);
+        ChecksumCache cache = new ChecksumCache(cacheFile);
+        cache.putChecksum(file, new Checksum(null, 5L, "calculated-while-writing"));
+        assertEquals("calculated-while-writing", cache.getChecksum(file).getSHA1());
+        cache.close();
+    }
+
+    @Test
+    public void testMissingFile() throws IOException {
+        assertTrue(file.delete());
+        ChecksumCache cache = new ChecksumCache(cacheFile);
+        assertNull(cache.getChecksum(file));
+        cache.close();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.download;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static java.io.File.createTempFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static slash.navigation.download.Checksum.createChecksum;
+
+public class ChecksumTest {
+    private File createFile(String content) throws IOException {
+        File file = createTempFile("checksum", ".txt");
+        file.deleteOnExit();
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content.getBytes());
+        }
+        assertTrue(file.setLastModified(1000000000000L));
+        return file;
+    }
+
+    @Test
+    public void testCreateChecksumWithSHA1() throws IOException {
+        File file = createFile("content");
+        Checksum calculated = createChecksum(file);
+        Checksum given = createChecksum(file, calculated.getSHA1());
+        assertEquals(calculated, given);
+    }
+
+    @Test
+    public void testIsCurrentFor() throws IOException {
+        File file = createFile("content");
+        Checksum checksum = createChecksum(file, "sha1");
+        assertTrue(checksum.isCurrentFor(file));
+
+        assertTrue(file.setLastModified(1000000005000L));
+        assertFalse(checksum.isCurrentFor(file));
+
+        assertTrue(file.setLastModified(1000000000000L));
+        assertTrue(checksum.isCurrentFor(file));
+        try (FileOutputStream outputStream = new FileOutputStream(file, true)) {
+            outputStream.write('!');
+        }
+        assertTrue(file.setLastModified(1000000000000L));
+        assertFalse(checksum.isCurrentFor(file));
+
+        assertFalse(new Checksum(null, 7L, "sha1").isCurrentFor(file));
+        assertTrue(file.delete());
+        assertFalse(checksum.isCurrentFor(file));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.download;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static slash.navigation.download.Segment.createSegments;
+
+public class SegmentTest {
+    @Test
+    public void testCreateSegments() {
+        List<Segment> segments = createSegments(4711, 4, "etag");
+        assertEquals(4, segments.size());
+        assertEquals(0, segments.get(0).getStart());
+        assertEquals(1177, segments.get(0).getEnd());
+        assertEquals(1178, segments.get(1).getStart());
+        assertEquals(3534, segments.get(3).getStart());
+        assertEquals(4710, segments.get(3).getEnd());
+
+        long length = 0;
+        for (Segment segment : segments) {
+            assertEquals(segment.getStart(), segment.getPosition());
+            assertEquals("etag", segment.getETag());
+            length += segment.getEnd() - segment.getStart() + 1;
+        }
+        assertEquals(4711, length);
+    }
+
+    @Test
+    public void testCreateSegmentsForSmallContent() {
+        List<Segment> segments = createSegments(3, 4, "etag");
+        assertEquals(3, segments.size());
+        assertEquals(2, segments.get(2).getStart());
+        assertEquals(2, segments.get(2).getEnd());
+    }
+
+    @Test
+    public void testAdvance() {
+        Segment segment = new Segment(100, 199, 100, "etag");
+        assertFalse(segment.isCompleted());
+        segment.advance(60);
+        assertEquals(160, segment.getPosition());
+        assertEquals(60, segment.getProcessedBytes());
+        assertFalse(segment.isCompleted());
+        segment.advance(40);
+        assertTrue(segment.isCompleted());
+    }
+}
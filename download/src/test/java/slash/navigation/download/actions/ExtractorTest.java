@@ -0,0 +1,171 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.download.actions;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.io.File.createTempFile;
+import static java.lang.Math.min;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static slash.common.io.Directories.ensureDirectory;
+import static slash.common.io.Files.createMessageDigest;
+import static slash.common.io.Files.generateChecksum;
+import static slash.common.io.InputOutput.readFileToString;
+
+public class ExtractorTest {
+    private static final CopierListener NO_LISTENER = new CopierListener() {
+        public void expectingBytes(long byteCount) {
+        }
+
+        public void processedBytes(long byteCount) {
+        }
+    };
+    private File archive, directory;
+
+    @Before
+    public void setUp() throws IOException {
+        archive = createTempFile("archive", ".zip");
+        try (ZipOutputStream outputStream = new ZipOutputStream(new FileOutputStream(archive))) {
+            outputStream.putNextEntry(new ZipEntry("a/first.txt"));
+            outputStream.write("first".getBytes());
+            outputStream.closeEntry();
+            outputStream.putNextEntry(new ZipEntry("b/second.txt"));
+            outputStream.write("second".getBytes());
+            outputStream.closeEntry();
+        }
+        directory = createTempFile("extract", "");
+        assertTrue(directory.delete());
+        ensureDirectory(directory);
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : new File[]{new File(directory, "first.txt"), new File(directory, "second.txt"), directory, archive})
+            if (file.exists())
+                assertTrue(file.delete());
+    }
+
+    @Test
+    public void testFlattenCalculatesChecksums() throws IOException {
+        Map<File, String> checksums = new Extractor(NO_LISTENER).flatten(archive, directory);
+
+        File first = new File(directory, "first.txt");
+        File second = new File(directory, "second.txt");
+        assertEquals(3, checksums.size());
+        assertEquals(generateChecksum(archive), checksums.get(archive));
+        assertEquals(generateChecksum(first), checksums.get(first));
+        assertEquals(generateChecksum(second), checksums.get(second));
+    }
+
+    @Test
+    public void testExtractWhileReading() throws IOException {
+        MessageDigest archiveDigest = createMessageDigest();
+        InputStream inputStream = new DigestInputStream(new FileInputStream(archive), archiveDigest);
+        Map<File, String> checksums = new Extractor(NO_LISTENER).extract(inputStream, "stream", directory, true);
+
+        File first = new File(directory, "first.txt");
+        File second = new File(directory, "second.txt");
+        assertEquals(2, checksums.size());
+        assertEquals(generateChecksum(first), checksums.get(first));
+        assertEquals(generateChecksum(second), checksums.get(second));
+        assertEquals(generateChecksum(archive), generateChecksum(archiveDigest));
+    }
+
+    private static class BreakingInputStream extends FilterInputStream {
+        private long remaining;
+
+        private BreakingInputStream(InputStream inputStream, long remaining) {
+            super(inputStream);
+            this.remaining = remaining;
+        }
+
+        public int read() throws IOException {
+            if (remaining-- <= 0)
+                throw new IOException("Connection reset");
+            return super.read();
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0)
+                throw new IOException("Connection reset");
+            int read = super.read(b, off, (int) min(len, remaining));
+            if (read > 0)
+                remaining -= read;
+            return read;
+        }
+    }
+
+    @Test
+    public void testBrokenStreamKeepsPreviousFiles() throws IOException {
+        File first = new File(directory, "first.txt");
+        writeString(first, "previous");
+
+        // break within the central directory after both entries have been read
+        InputStream inputStream = new BreakingInputStream(new FileInputStream(archive), archive.length() - 10);
+        try {
+            new Extractor(NO_LISTENER).extract(inputStream, "stream", directory, true);
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertEquals("Connection reset", e.getMessage());
+        }
+
+        assertEquals("previous", readFileToString(first));
+        assertFalse(new File(directory, "second.txt").exists());
+        assertArrayEquals(new String[]{"first.txt"}, directory.list());
+    }
+
+    @Test
+    public void testExtractReplacesPreviousFiles() throws IOException {
+        File first = new File(directory, "first.txt");
+        writeString(first, "previous");
+
+        new Extractor(NO_LISTENER).extract(new FileInputStream(archive), "stream", directory, true);
+
+        assertEquals("first", readFileToString(first));
+        assertEquals("second", readFileToString(new File(directory, "second.txt")));
+        assertEquals(2, directory.list().length);
+    }
+
+    private static void writeString(File file, String string) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(string.getBytes());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.download.actions;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import slash.navigation.download.Checksum;
+import slash.navigation.download.Download;
+import slash.navigation.download.FileAndChecksum;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.io.File.createTempFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static slash.common.io.Directories.ensureDirectory;
+import static slash.common.type.CompactCalendar.fromMillis;
+import static slash.navigation.download.Action.Copy;
+import static slash.navigation.download.Action.Extract;
+import static slash.navigation.download.Checksum.createChecksum;
+import static slash.navigation.download.State.Queued;
+
+public class ValidatorTest {
+    private File directory, tempFile;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = createTempFile("validate", "");
+        assertTrue(directory.delete());
+        ensureDirectory(directory);
+        tempFile = createTempFile("download", ".tmp");
+        assertTrue(tempFile.delete());
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : new File[]{tempFile, directory})
+            if (file.exists())
+                assertTrue(file.delete());
+    }
+
+    private Download createDownload(Checksum expected) {
+        return new Download("Archive", "http://localhost/archive.zip", Extract, new FileAndChecksum(directory, expected),
+                null, null, Queued, tempFile);
+    }
+
+    @Test
+    public void testKeepsChecksumOfArchiveExtractedWhileDownloading() throws IOException {
+        Checksum streamed = new Checksum(fromMillis(1000000000000L), 42L, "streamed");
+        Download download = createDownload(new Checksum(fromMillis(1000000000000L), 42L, "streamed"));
+        download.getFile().setActualChecksum(streamed);
+        assertFalse(tempFile.exists());
+
+        Validator validator = new Validator(download);
+        assertTrue(validator.isExistsTargets());
+        assertTrue(validator.isChecksumsValid());
+        validator.expectedChecksumIsCurrentChecksum();
+
+        assertEquals(streamed, download.getFile().getActualChecksum());
+        assertEquals(streamed, download.getFile().getExpectedChecksum());
+    }
+
+    @Test
+    public void testReadsFileMatchingTimestampAndSizeOfExpectedChecksum() throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+            outputStream.write("corrupt".getBytes());
+        }
+        Checksum current = createChecksum(tempFile);
+        Checksum expected = new Checksum(current.getLastModified(), current.getContentLength(), "expected");
+        Download download = new Download("File", "http://localhost/file.txt", Copy, new FileAndChecksum(tempFile, expected),
+                null, null, Queued, new File(directory, "download.tmp"));
+
+        Validator validator = new Validator(download);
+        assertFalse(validator.isChecksumsValid());
+        assertEquals(current, download.getFile().getActualChecksum());
+    }
+
+    @Test
+    public void testCalculatesChecksumOfDownloadedArchive() throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+            outputStream.write("archive".getBytes());
+        }
+        Download download = createDownload(null);
+        download.getFile().setActualChecksum(new Checksum(fromMillis(1000000000000L), 42L, "stale"));
+
+        Validator validator = new Validator(download);
+        validator.expectedChecksumIsCurrentChecksum();
+
+        assertEquals(createChecksum(tempFile), download.getFile().getActualChecksum());
+        assertEquals(createChecksum(tempFile), download.getFile().getExpectedChecksum());
+    }
+}
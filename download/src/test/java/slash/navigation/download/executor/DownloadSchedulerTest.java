@@ -0,0 +1,196 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.download.executor;
+
+import org.junit.Test;
+import slash.navigation.download.Checksum;
+import slash.navigation.download.Download;
+import slash.navigation.download.FileAndChecksum;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static slash.common.type.CompactCalendar.fromMillis;
+import static slash.navigation.download.Action.Copy;
+import static slash.navigation.download.State.Failed;
+import static slash.navigation.download.State.Succeeded;
+import static slash.navigation.download.executor.DownloadScheduler.getHost;
+
+public class DownloadSchedulerTest {
+    private final List<String> performed = new ArrayList<>();
+
+    /**
+     * Queues the dispatched downloads until the test runs them.
+     */
+    private static class ManualExecutorService extends AbstractExecutorService {
+        private final List<Runnable> queued = new ArrayList<>();
+
+        public void execute(Runnable command) {
+            queued.add(command);
+        }
+
+        private int getQueuedCount() {
+            return queued.size();
+        }
+
+        private void runNext() {
+            queued.remove(0).run();
+        }
+
+        private void runAll() {
+            while (!queued.isEmpty())
+                runNext();
+        }
+
+        public void shutdown() {
+        }
+
+        public List<Runnable> shutdownNow() {
+            List<Runnable> result = new ArrayList<>(queued);
+            queued.clear();
+            return result;
+        }
+
+        public boolean isShutdown() {
+            return false;
+        }
+
+        public boolean isTerminated() {
+            return false;
+        }
+
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+    private class FakeDownloadExecutor extends DownloadExecutor {
+        private final String name;
+        private final int statusCode;
+
+        private FakeDownloadExecutor(String name, String host, long lastSync, int statusCode) {
+            super(new Download(name, "http://" + host + "/" + name, Copy,
+                    new FileAndChecksum(new File(name), new Checksum(fromMillis(lastSync), null, null)), null), null);
+            this.name = name;
+            this.statusCode = statusCode;
+        }
+
+        private FakeDownloadExecutor(String name, String host, long lastSync) {
+            this(name, host, lastSync, 200);
+        }
+
+        public void run() {
+            performed.add(name);
+            setStatusCode(statusCode);
+            getDownload().setState(statusCode == 200 ? Succeeded : Failed);
+        }
+    }
+
+    @Test
+    public void testGetHost() {
+        assertEquals("static.routeconverter.com", getHost("http://static.routeconverter.com/hgt/N47E011.zip"));
+        assertEquals("static.routeconverter.com", getHost("https://Static.RouteConverter.com:8080/"));
+        assertEquals("", getHost("file.zip"));
+    }
+
+    @Test
+    public void testDispatchesInPriorityOrderAcrossHosts() {
+        ManualExecutorService pool = new ManualExecutorService();
+        DownloadScheduler scheduler = new DownloadScheduler(1, 1, 1, pool);
+        scheduler.submit(new FakeDownloadExecutor("first", "a.com", 0));
+        scheduler.submit(new FakeDownloadExecutor("fourth", "a.com", 3000));
+        scheduler.submit(new FakeDownloadExecutor("second", "b.com", 1000));
+        scheduler.submit(new FakeDownloadExecutor("third", "a.com", 2000));
+        assertEquals(1, pool.getQueuedCount());
+
+        pool.runAll();
+        assertEquals(asList("first", "second", "third", "fourth"), performed);
+    }
+
+    @Test
+    public void testLimitsDownloadsPerHost() {
+        ManualExecutorService pool = new ManualExecutorService();
+        DownloadScheduler scheduler = new DownloadScheduler(4, 2, 2, pool);
+        scheduler.submit(new FakeDownloadExecutor("a1", "a.com", 1000));
+        scheduler.submit(new FakeDownloadExecutor("a2", "a.com", 2000));
+        scheduler.submit(new FakeDownloadExecutor("a3", "a.com", 3000));
+        scheduler.submit(new FakeDownloadExecutor("a4", "a.com", 4000));
+        scheduler.submit(new FakeDownloadExecutor("b1", "b.com", 5000));
+        // a slow host doesn't occupy every thread
+        assertEquals(3, pool.getQueuedCount());
+
+        pool.runNext();
+        assertEquals(3, pool.getQueuedCount());
+        pool.runAll();
+        assertEquals(asList("a1", "a2", "b1", "a3", "a4"), performed);
+    }
+
+    @Test
+    public void testCancelledDownloadFinishes() {
+        ManualExecutorService pool = new ManualExecutorService();
+        DownloadScheduler scheduler = new DownloadScheduler(1, 1, 1, pool);
+        Future<?> dispatched = scheduler.submit(new FakeDownloadExecutor("dispatched", "a.com", 1000));
+        Future<?> waiting = scheduler.submit(new FakeDownloadExecutor("waiting", "a.com", 2000));
+        scheduler.submit(new FakeDownloadExecutor("next", "a.com", 3000));
+
+        assertTrue(waiting.cancel(true));
+        assertTrue(dispatched.cancel(true));
+        // the pool still runs the cancelled download which frees its slot
+        assertEquals(1, pool.getQueuedCount());
+        pool.runNext();
+        assertEquals(1, pool.getQueuedCount());
+        assertEquals(1, scheduler.getLimitForHost("a.com"));
+
+        pool.runAll();
+        assertEquals(emptyList(), pool.shutdownNow());
+        assertEquals(asList("next"), performed);
+    }
+
+    @Test
+    public void testThrottlesHost() {
+        ManualExecutorService pool = new ManualExecutorService();
+        DownloadScheduler scheduler = new DownloadScheduler(8, 8, 8, pool);
+        scheduler.submit(new FakeDownloadExecutor("tooManyRequests", "a.com", 1000, 429));
+        pool.runAll();
+        assertEquals(4, scheduler.getLimitForHost("a.com"));
+
+        scheduler.submit(new FakeDownloadExecutor("serviceUnavailable", "a.com", 2000, 503));
+        pool.runAll();
+        assertEquals(2, scheduler.getLimitForHost("a.com"));
+
+        scheduler.submit(new FakeDownloadExecutor("notFound", "a.com", 3000, 404));
+        pool.runAll();
+        assertEquals(1, scheduler.getLimitForHost("a.com"));
+        assertEquals(8, scheduler.getLimitForHost("b.com"));
+
+        for (int i = 0; i < 3; i++)
+            scheduler.submit(new FakeDownloadExecutor("throttled" + i, "a.com", 4000 + i));
+        assertEquals(1, pool.getQueuedCount());
+    }
+}
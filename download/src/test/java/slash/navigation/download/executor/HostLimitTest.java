@@ -0,0 +1,90 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.download.executor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HostLimitTest {
+    @Test
+    public void testCapacity() {
+        HostLimit limit = new HostLimit(2, 1, 8);
+        assertTrue(limit.hasCapacity());
+        limit.started();
+        limit.started();
+        assertFalse(limit.hasCapacity());
+        limit.cancelled();
+        assertTrue(limit.hasCapacity());
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    public void testIncreasesWhileFast() {
+        HostLimit limit = new HostLimit(4, 1, 8);
+        for (int i = 0; i < 100; i++) {
+            limit.started();
+            limit.succeeded(100, 1000);
+        }
+        assertEquals(8, limit.getLimit());
+    }
+
+    @Test
+    public void testDecreasesWhenSlow() {
+        HostLimit limit = new HostLimit(8, 1, 8);
+        limit.started();
+        limit.succeeded(100, 1000);
+        for (int i = 0; i < 10; i++) {
+            limit.started();
+            limit.succeeded(1000, 1000);
+        }
+        assertTrue(limit.getLimit() < 8);
+    }
+
+    @Test
+    public void testLargeDownloadsAreNormalized() {
+        HostLimit limit = new HostLimit(4, 1, 8);
+        limit.started();
+        limit.succeeded(100, 1000);
+        limit.started();
+        limit.succeeded(10000, 100 * 256 * 1024);
+        assertEquals(4, limit.getLimit());
+    }
+
+    @Test
+    public void testFailedAndThrottled() {
+        HostLimit limit = new HostLimit(8, 1, 8);
+        limit.started();
+        limit.failed();
+        assertEquals(6, limit.getLimit());
+        limit.started();
+        limit.throttled();
+        assertEquals(3, limit.getLimit());
+        for (int i = 0; i < 10; i++) {
+            limit.started();
+            limit.throttled();
+        }
+        assertEquals(1, limit.getLimit());
+        assertEquals(0, limit.getRunning());
+    }
+}
@@ -0,0 +1,228 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.download.queue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import slash.navigation.download.Checksum;
+import slash.navigation.download.Download;
+import slash.navigation.download.FileAndChecksum;
+import slash.navigation.download.Segment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static java.io.File.createTempFile;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+import static slash.common.type.CompactCalendar.fromMillis;
+import static slash.navigation.download.Action.Copy;
+import static slash.navigation.download.Action.Flatten;
+import static slash.navigation.download.State.Downloading;
+import static slash.navigation.download.State.Queued;
+import static slash.navigation.download.State.Succeeded;
+
+public class QueueJournalTest {
+    private File journalFile;
+    private QueueJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        journalFile = createTempFile("queue", ".journal");
+        assertTrue(journalFile.delete());
+        journal = new QueueJournal(journalFile);
+    }
+
+    @After
+    public void tearDown() {
+        journal.close();
+        if (journalFile.exists())
+            assertTrue(journalFile.delete());
+    }
+
+    private Download createDownload(String url) {
+        Checksum checksum = new Checksum(fromMillis(1000000000000L), 4711L, "sha1");
+        return new Download("description", url, Flatten, new FileAndChecksum(new File("target"), checksum),
+                asList(new FileAndChecksum(new File("fragment1"), checksum), new FileAndChecksum(new File("fragment2"), null)),
+                "etag", Downloading, new File("temp"));
+    }
+
+    @Test
+    public void testUpdateAndLoad() throws IOException {
+        Download download = createDownload("url");
+        download.setSegments(singletonList(new Segment(0, 99, 50, "segment-etag")));
+        journal.update(download);
+        journal.update(new Download(null, "url2", Copy, new FileAndChecksum(new File("target2"), null), null, null, Queued, new File("temp2")));
+        journal.close();
+
+        List<Download> result = new QueueJournal(journalFile).load();
+        assertEquals(2, result.size());
+        Download first = result.get(0);
+        assertEquals("description", first.getDescription());
+        assertEquals("url", first.getUrl());
+        assertEquals(Flatten, first.getAction());
+        assertEquals(Downloading, first.getState());
+        assertEquals("etag", first.getETag());
+        assertEquals(new File("temp"), first.getTempFile());
+        assertEquals(new File("target"), first.getFile().getFile());
+        assertEquals(new Checksum(fromMillis(1000000000000L), 4711L, "sha1"), first.getFile().getExpectedChecksum());
+        assertEquals(2, first.getFragments().size());
+        assertNull(first.getFragments().get(1).getExpectedChecksum());
+        assertEquals(50, first.getSegments().get(0).getPosition());
+        assertEquals("segment-etag", first.getSegments().get(0).getETag());
+
+        Download second = result.get(1);
+        assertNull(second.getDescription());
+        assertNull(second.getETag());
+        assertNull(second.getFile().getExpectedChecksum());
+        assertNull(second.getSegments());
+    }
+
+    @Test
+    public void testLatestStateWins() throws IOException {
+        Download download = createDownload("url");
+        journal.update(download);
+        download.setState(Succeeded);
+        journal.update(download);
+        journal.update(createDownload("url2"));
+        journal.remove(createDownload("url2"));
+        journal.close();
+
+        List<Download> result = new QueueJournal(journalFile).load();
+        assertEquals(1, result.size());
+        assertEquals(Succeeded, result.get(0).getState());
+    }
+
+    @Test
+    public void testUnchangedDownloadIsNotAppended() throws IOException {
+        Download download = createDownload("url");
+        journal.update(download);
+        long byteCount = journal.getByteCount();
+        journal.update(download);
+        assertEquals(byteCount, journal.getByteCount());
+        assertEquals(byteCount, journalFile.length());
+    }
+
+    @Test
+    public void testUpdateListRemovesMissingDownloads() throws IOException {
+        journal.update(asList(createDownload("url"), createDownload("url2")));
+        journal.update(singletonList(createDownload("url2")));
+        journal.close();
+
+        List<Download> result = new QueueJournal(journalFile).load();
+        assertEquals(1, result.size());
+        assertEquals("url2", result.get(0).getUrl());
+    }
+
+    @Test
+    public void testTruncatedTail() throws IOException {
+        journal.update(createDownload("url"));
+        long validLength = journalFile.length();
+        journal.update(createDownload("url2"));
+        journal.close();
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(journalFile, "rw")) {
+            randomAccessFile.setLength(journalFile.length() - 5);
+        }
+
+        List<Download> result = new QueueJournal(journalFile).load();
+        assertEquals(1, result.size());
+        assertEquals("url", result.get(0).getUrl());
+        assertEquals(validLength, journalFile.length());
+    }
+
+    @Test
+    public void testCorruptTail() throws IOException {
+        journal.update(createDownload("url"));
+        long validLength = journalFile.length();
+        journal.update(createDownload("url2"));
+        journal.close();
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(journalFile, "rw")) {
+            randomAccessFile.seek(validLength + 10);
+            randomAccessFile.write(0xff);
+        }
+
+        assertEquals(1, new QueueJournal(journalFile).load().size());
+        assertEquals(validLength, journalFile.length());
+    }
+
+    private void appendRecord(byte type, String url, String action) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(type);
+        payload.writeUTF(url);
+        payload.writeBoolean(false);
+        payload.writeUTF(action);
+        payload.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        try (DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(journalFile, true))) {
+            outputStream.writeInt(bytes.size());
+            outputStream.write(bytes.toByteArray());
+            outputStream.writeLong(crc.getValue());
+        }
+    }
+
+    @Test
+    public void testSkipsIntactRecordsThatCannotBeRead() throws IOException {
+        journal.update(createDownload("url"));
+        journal.close();
+        appendRecord((byte) 1, "unknown-action", "Teleport");
+        appendRecord((byte) 9, "unknown-type", "Copy");
+        QueueJournal appending = new QueueJournal(journalFile);
+        appending.load();
+        appending.update(createDownload("url2"));
+        appending.close();
+        long length = journalFile.length();
+
+        List<Download> result = new QueueJournal(journalFile).load();
+        assertEquals(2, result.size());
+        assertEquals("url", result.get(0).getUrl());
+        assertEquals("url2", result.get(1).getUrl());
+        assertEquals(length, journalFile.length());
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        Download download = createDownload("url");
+        for (int i = 0; i < 5000; i++) {
+            download.setSegments(singletonList(new Segment(0, 9999, i, null)));
+            journal.update(download);
+        }
+        assertTrue(journal.getByteCount() < 128 * 1024);
+        assertEquals(journal.getByteCount(), journalFile.length());
+        journal.close();
+
+        List<Download> result = new QueueJournal(journalFile).load();
+        assertEquals(1, result.size());
+        assertEquals(4999, result.get(0).getSegments().get(0).getPosition());
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.Test;
 import slash.navigation.download.Checksum;
 import slash.navigation.download.Download;
 import slash.navigation.download.FileAndChecksum;
+import slash.navigation.download.Segment;
 
 import java.io.File;
 import java.io.IOException;
@@ -14,7 +15,10 @@ import java.util.List;
 
 import static java.io.File.createTempFile;
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static slash.common.type.CompactCalendar.now;
 import static slash.navigation.download.Action.Flatten;
@@ -67,6 +71,28 @@ public class QueuePersisterIT {
         assertEquals(downloads, result);
     }
 
+    @Test
+    public void testSaveAndLoadSegments() throws IOException {
+        Download download = new Download("description", "url", Flatten, new FileAndChecksum(fileTarget, createChecksum()),
+                null, "etag", Downloading, tempFile);
+        download.setSegments(asList(new Segment(0, 2355, 1000, "segment-etag"), new Segment(2356, 4710, 4711, null)));
+        persister.save(queueFile, singletonList(download));
+
+        List<Download> result = persister.load(queueFile);
+        assertEquals(1, result.size());
+        List<Segment> segments = result.get(0).getSegments();
+        assertEquals(2, segments.size());
+        assertEquals(0, segments.get(0).getStart());
+        assertEquals(2355, segments.get(0).getEnd());
+        assertEquals(1000, segments.get(0).getPosition());
+        assertEquals("segment-etag", segments.get(0).getETag());
+        assertFalse(segments.get(0).isCompleted());
+        assertEquals(2356, segments.get(1).getStart());
+        assertEquals(4710, segments.get(1).getEnd());
+        assertTrue(segments.get(1).isCompleted());
+        assertNull(segments.get(1).getETag());
+    }
+
     private Checksum createChecksum() {
         return new Checksum(now(), 4711L, "sha1");
     }
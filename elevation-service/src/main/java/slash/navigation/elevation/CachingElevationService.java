@@ -0,0 +1,147 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.elevation;
+
+import slash.common.io.PersistentLookupCache;
+import slash.navigation.common.BoundingBox;
+import slash.navigation.common.LongitudeAndLatitude;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static java.lang.Double.NaN;
+import static java.lang.Double.isNaN;
+import static java.lang.Double.parseDouble;
+import static java.lang.Math.round;
+
+/**
+ * An {@link ElevationService} that caches the elevations of another
+ * {@link ElevationService} in a {@link PersistentLookupCache}.
+ *
+ * @author Christian Pesch
+ */
+
+public class CachingElevationService implements ElevationService {
+    private static final double QUANTIZATION = 100000.0; // about one meter
+
+    private final ElevationService service;
+    private final PersistentLookupCache cache;
+
+    public CachingElevationService(ElevationService service, PersistentLookupCache cache) {
+        this.service = service;
+        this.cache = cache;
+    }
+
+    public ElevationService getService() {
+        return service;
+    }
+
+    public String getName() {
+        return service.getName();
+    }
+
+    public boolean isDownload() {
+        return service.isDownload();
+    }
+
+    public boolean isOverQueryLimit() {
+        return service.isOverQueryLimit();
+    }
+
+    public String getPath() {
+        return service.getPath();
+    }
+
+    public void setPath(String path) {
+        service.setPath(path);
+    }
+
+    public File getDirectory() {
+        return service.getDirectory();
+    }
+
+    String createKey(double longitude, double latitude) {
+        return getName() + "/elevation/" + round(longitude * QUANTIZATION) + "/" + round(latitude * QUANTIZATION);
+    }
+
+    public Double getElevationFor(double longitude, double latitude) throws IOException {
+        String key = createKey(longitude, latitude);
+        String cached = cache.get(key);
+        if (cached != null)
+            return parseDouble(cached);
+
+        Double elevation = service.getElevationFor(longitude, latitude);
+        if (elevation != null)
+            cache.put(key, Double.toString(elevation));
+        return elevation;
+    }
+
+    public void getElevationsFor(double[] longitudes, double[] latitudes, double[] result) throws IOException {
+        String[] keys = new String[longitudes.length];
+        int missing = 0;
+        for (int i = 0; i < longitudes.length; i++) {
+            keys[i] = createKey(longitudes[i], latitudes[i]);
+            String cached = cache.get(keys[i]);
+            result[i] = cached != null ? parseDouble(cached) : NaN;
+            if (cached == null)
+                missing++;
+        }
+        if (missing == 0)
+            return;
+
+        int[] indices = new int[missing];
+        double[] missingLongitudes = new double[missing];
+        double[] missingLatitudes = new double[missing];
+        for (int i = 0, j = 0; i < result.length; i++) {
+            if (isNaN(result[i])) {
+                indices[j] = i;
+                missingLongitudes[j] = longitudes[i];
+                missingLatitudes[j] = latitudes[i];
+                j++;
+            }
+        }
+
+        double[] elevations = new double[missing];
+        service.getElevationsFor(missingLongitudes, missingLatitudes, elevations);
+        for (int j = 0; j < missing; j++) {
+            result[indices[j]] = elevations[j];
+            if (!isNaN(elevations[j]))
+                cache.put(keys[indices[j]], Double.toString(elevations[j]));
+        }
+    }
+
+    public ElevationCoverage getCoverage() {
+        return service.getCoverage();
+    }
+
+    public void downloadElevationDataFor(List<LongitudeAndLatitude> longitudeAndLatitudes, boolean waitForDownload) {
+        service.downloadElevationDataFor(longitudeAndLatitudes, waitForDownload);
+    }
+
+    public long calculateRemainingDownloadSize(List<BoundingBox> boundingBoxes) {
+        return service.calculateRemainingDownloadSize(boundingBoxes);
+    }
+
+    public void downloadElevationData(List<BoundingBox> boundingBoxes) {
+        service.downloadElevationData(boundingBoxes);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+package slash.navigation.elevation;
+
+import java.util.BitSet;
+
+/**
+ * The cells of one degree in longitude and latitude for which an
+ * {@link ElevationService} is able to provide elevations.
+ *
+ * @author Christian Pesch
+ */
+
+public class ElevationCoverage {
+    private static final int LONGITUDE_CELLS = 360;
+    private static final int LATITUDE_CELLS = 180;
+
+    private final BitSet cells = new BitSet(LONGITUDE_CELLS * LATITUDE_CELLS);
+
+    static int getCellIndex(int longitudeCell, int latitudeCell) {
+        if (longitudeCell < -180 || longitudeCell >= 180 || latitudeCell < -90 || latitudeCell >= 90)
+            return -1;
+        return (longitudeCell + 180) * LATITUDE_CELLS + latitudeCell + 90;
+    }
+
+    private static int getCell(double coordinate) {
+        return (int) Math.floor(coordinate);
+    }
+
+    public synchronized void add(int longitudeCell, int latitudeCell) {
+        int index = getCellIndex(longitudeCell, latitudeCell);
+        if (index != -1)
+            cells.set(index);
+    }
+
+    public synchronized boolean covers(double longitude, double latitude) {
+        int index = getCellIndex(getCell(longitude), getCell(latitude));
+        return index != -1 && cells.get(index);
+    }
+
+    public synchronized int getCellCount() {
+        return cells.cardinality();
+    }
+}
@@ -43,6 +43,31 @@ public interface ElevationService {
 
     Double getElevationFor(double longitude, double latitude) throws IOException;
 
+    /**
+     * Looks up the elevations for many positions at once. Services that can answer
+     * several positions with one tile access or request should override this.
+     *
+     * @param longitudes the longitudes of the positions
+     * @param latitudes the latitudes of the positions
+     * @param result the elevations of the positions or {@link Double#NaN} if there is none
+     * @throws IOException if the lookup fails
+     */
+    default void getElevationsFor(double[] longitudes, double[] latitudes, double[] result) throws IOException {
+        for (int i = 0; i < longitudes.length; i++) {
+            Double elevation = getElevationFor(longitudes[i], latitudes[i]);
+            result[i] = elevation != null ? elevation : Double.NaN;
+        }
+    }
+
+    /**
+     * Returns the cells for which this service has elevation data at hand.
+     *
+     * @return the coverage of the service or null if it may provide elevations for any position
+     */
+    default ElevationCoverage getCoverage() {
+        return null;
+    }
+
     void downloadElevationDataFor(List<LongitudeAndLatitude> longitudeAndLatitudes, boolean waitForDownload);
     long calculateRemainingDownloadSize(List<BoundingBox> boundingBoxes);
     void downloadElevationData(List<BoundingBox> boundingBoxes);
@@ -0,0 +1,208 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.elevation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import slash.common.io.PersistentLookupCache;
+import slash.navigation.common.BoundingBox;
+import slash.navigation.common.LongitudeAndLatitude;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.io.File.createTempFile;
+import static java.lang.Double.NaN;
+import static org.junit.Assert.*;
+
+public class CachingElevationServiceTest {
+    private static final double DELTA = 0.0001;
+
+    private File file;
+    private PersistentLookupCache cache;
+    private final StubElevationService service = new StubElevationService();
+
+    @Before
+    public void setUp() throws IOException {
+        file = createTempFile("elevations", ".cache");
+        assertTrue(file.delete());
+        cache = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+        if (file.exists())
+            assertTrue(file.delete());
+    }
+
+    private static class StubElevationService implements ElevationService {
+        private final List<double[]> batches = new ArrayList<>();
+        private int singleCount;
+
+        public String getName() {
+            return "Stub";
+        }
+
+        public boolean isDownload() {
+            return false;
+        }
+
+        public boolean isOverQueryLimit() {
+            return false;
+        }
+
+        public String getPath() {
+            return null;
+        }
+
+        public void setPath(String path) {
+        }
+
+        public File getDirectory() {
+            return null;
+        }
+
+        // there is no elevation east of 10 degrees
+        private double elevationFor(double longitude, double latitude) {
+            return longitude > 10.0 ? NaN : longitude * 100 + latitude;
+        }
+
+        public Double getElevationFor(double longitude, double latitude) {
+            singleCount++;
+            double elevation = elevationFor(longitude, latitude);
+            return Double.isNaN(elevation) ? null : elevation;
+        }
+
+        public void getElevationsFor(double[] longitudes, double[] latitudes, double[] result) {
+            batches.add(longitudes.clone());
+            for (int i = 0; i < longitudes.length; i++)
+                result[i] = elevationFor(longitudes[i], latitudes[i]);
+        }
+
+        public void downloadElevationDataFor(List<LongitudeAndLatitude> longitudeAndLatitudes, boolean waitForDownload) {
+        }
+
+        public long calculateRemainingDownloadSize(List<BoundingBox> boundingBoxes) {
+            return 0;
+        }
+
+        public void downloadElevationData(List<BoundingBox> boundingBoxes) {
+        }
+    }
+
+    @Test
+    public void testGetElevationForIsCached() throws IOException {
+        CachingElevationService caching = new CachingElevationService(service, cache);
+        assertEquals(1.5 * 100 + 2.5, caching.getElevationFor(1.5, 2.5), DELTA);
+        assertEquals(1.5 * 100 + 2.5, caching.getElevationFor(1.5, 2.5), DELTA);
+        assertEquals(1, service.singleCount);
+    }
+
+    @Test
+    public void testMissingElevationIsNotCached() throws IOException {
+        CachingElevationService caching = new CachingElevationService(service, cache);
+        assertNull(caching.getElevationFor(11.0, 2.0));
+        assertNull(caching.getElevationFor(11.0, 2.0));
+        assertEquals(2, service.singleCount);
+        assertNull(cache.get(caching.createKey(11.0, 2.0)));
+    }
+
+    @Test
+    public void testGetElevationsForRequestsOnlyMissingPositions() throws IOException {
+        CachingElevationService caching = new CachingElevationService(service, cache);
+        assertEquals(2.0 * 100 + 1.0, caching.getElevationFor(2.0, 1.0), DELTA);
+        assertEquals(4.0 * 100 + 1.0, caching.getElevationFor(4.0, 1.0), DELTA);
+
+        double[] longitudes = new double[]{1.0, 2.0, 3.0, 4.0, 5.0};
+        double[] latitudes = new double[]{1.0, 1.0, 1.0, 1.0, 1.0};
+        double[] result = new double[longitudes.length];
+        caching.getElevationsFor(longitudes, latitudes, result);
+
+        assertEquals(1, service.batches.size());
+        assertArrayEquals(new double[]{1.0, 3.0, 5.0}, service.batches.get(0), DELTA);
+        assertArrayEquals(new double[]{101.0, 201.0, 301.0, 401.0, 501.0}, result, DELTA);
+    }
+
+    @Test
+    public void testGetElevationsForScattersResultsBackToTheirIndices() throws IOException {
+        CachingElevationService caching = new CachingElevationService(service, cache);
+        caching.getElevationFor(1.0, 1.0);
+        caching.getElevationFor(5.0, 1.0);
+
+        double[] longitudes = new double[]{5.0, 11.0, 3.0, 1.0, 2.0};
+        double[] latitudes = new double[]{1.0, 2.0, 3.0, 1.0, 5.0};
+        double[] result = new double[longitudes.length];
+        caching.getElevationsFor(longitudes, latitudes, result);
+
+        assertArrayEquals(new double[]{11.0, 3.0, 2.0}, service.batches.get(0), DELTA);
+        assertEquals(501.0, result[0], DELTA);
+        assertTrue(Double.isNaN(result[1]));
+        assertEquals(303.0, result[2], DELTA);
+        assertEquals(101.0, result[3], DELTA);
+        assertEquals(205.0, result[4], DELTA);
+    }
+
+    @Test
+    public void testGetElevationsForDoesNotCacheNaN() throws IOException {
+        CachingElevationService caching = new CachingElevationService(service, cache);
+        double[] longitudes = new double[]{1.0, 11.0};
+        double[] latitudes = new double[]{1.0, 1.0};
+        double[] result = new double[longitudes.length];
+        caching.getElevationsFor(longitudes, latitudes, result);
+        assertNotNull(cache.get(caching.createKey(1.0, 1.0)));
+        assertNull(cache.get(caching.createKey(11.0, 1.0)));
+
+        caching.getElevationsFor(longitudes, latitudes, result);
+        assertEquals(2, service.batches.size());
+        assertArrayEquals(new double[]{11.0}, service.batches.get(1), DELTA);
+        assertEquals(101.0, result[0], DELTA);
+        assertTrue(Double.isNaN(result[1]));
+    }
+
+    @Test
+    public void testGetElevationsForWithAllPositionsCached() throws IOException {
+        CachingElevationService caching = new CachingElevationService(service, cache);
+        double[] longitudes = new double[]{1.0, 2.0};
+        double[] latitudes = new double[]{1.0, 1.0};
+        double[] result = new double[longitudes.length];
+        caching.getElevationsFor(longitudes, latitudes, result);
+        caching.getElevationsFor(longitudes, latitudes, result);
+
+        assertEquals(1, service.batches.size());
+        assertArrayEquals(new double[]{101.0, 201.0}, result, DELTA);
+    }
+
+    @Test
+    public void testCachedElevationsArePersisted() throws IOException {
+        CachingElevationService caching = new CachingElevationService(service, cache);
+        caching.getElevationFor(1.0, 1.0);
+        cache.close();
+
+        cache = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+        caching = new CachingElevationService(service, cache);
+        assertEquals(101.0, caching.getElevationFor(1.0, 1.0), DELTA);
+        assertEquals(1, service.singleCount);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.geocoding;
+
+import slash.common.io.PersistentLookupCache;
+import slash.navigation.common.NavigationPosition;
+
+import javax.naming.ServiceUnavailableException;
+import java.io.IOException;
+import java.util.List;
+
+import static java.lang.Math.round;
+
+/**
+ * A {@link GeocodingService} that caches the addresses of another
+ * {@link GeocodingService} in a {@link PersistentLookupCache}.
+ *
+ * @author Christian Pesch
+ */
+
+public class CachingGeocodingService implements GeocodingService {
+    private static final double QUANTIZATION = 100000.0; // about one meter
+
+    private final GeocodingService service;
+    private final PersistentLookupCache cache;
+
+    public CachingGeocodingService(GeocodingService service, PersistentLookupCache cache) {
+        this.service = service;
+        this.cache = cache;
+    }
+
+    public GeocodingService getService() {
+        return service;
+    }
+
+    public String getName() {
+        return service.getName();
+    }
+
+    public boolean isDownload() {
+        return service.isDownload();
+    }
+
+    public boolean isOverQueryLimit() {
+        return service.isOverQueryLimit();
+    }
+
+    public List<NavigationPosition> getPositionsFor(String address) throws IOException, ServiceUnavailableException {
+        return service.getPositionsFor(address);
+    }
+
+    String createKey(NavigationPosition position) {
+        return getName() + "/address/" + round(position.getLongitude() * QUANTIZATION) + "/" + round(position.getLatitude() * QUANTIZATION);
+    }
+
+    public String getAddressFor(NavigationPosition position) throws IOException, ServiceUnavailableException {
+        if (!position.hasCoordinates())
+            return service.getAddressFor(position);
+
+        String key = createKey(position);
+        String cached = cache.get(key);
+        if (cached != null)
+            return cached;
+
+        String address = service.getAddressFor(position);
+        if (address != null)
+            cache.put(key, address);
+        return address;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.geocoding;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import slash.common.io.PersistentLookupCache;
+import slash.navigation.common.NavigationPosition;
+import slash.navigation.common.SimpleNavigationPosition;
+
+import javax.naming.ServiceUnavailableException;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static java.io.File.createTempFile;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+public class CachingGeocodingServiceTest {
+    private File file;
+    private PersistentLookupCache cache;
+    private final StubGeocodingService service = new StubGeocodingService();
+
+    @Before
+    public void setUp() throws IOException {
+        file = createTempFile("addresses", ".cache");
+        assertTrue(file.delete());
+        cache = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+        if (file.exists())
+            assertTrue(file.delete());
+    }
+
+    private static class StubGeocodingService implements GeocodingService {
+        private int addressCount, positionsCount;
+
+        public String getName() {
+            return "Stub";
+        }
+
+        public boolean isDownload() {
+            return false;
+        }
+
+        public boolean isOverQueryLimit() {
+            return false;
+        }
+
+        public List<NavigationPosition> getPositionsFor(String address) {
+            positionsCount++;
+            return singletonList(new SimpleNavigationPosition(1.0, 2.0, null, address));
+        }
+
+        // there is no address east of 10 degrees
+        public String getAddressFor(NavigationPosition position) {
+            addressCount++;
+            if (!position.hasCoordinates() || position.getLongitude() > 10.0)
+                return null;
+            return "Address " + position.getLongitude() + "/" + position.getLatitude();
+        }
+    }
+
+    @Test
+    public void testGetAddressForIsCached() throws IOException, ServiceUnavailableException {
+        CachingGeocodingService caching = new CachingGeocodingService(service, cache);
+        assertEquals("Address 1.0/2.0", caching.getAddressFor(new SimpleNavigationPosition(1.0, 2.0)));
+        assertEquals("Address 1.0/2.0", caching.getAddressFor(new SimpleNavigationPosition(1.0, 2.0)));
+        assertEquals(1, service.addressCount);
+    }
+
+    @Test
+    public void testGetAddressForQuantizesPositions() throws IOException, ServiceUnavailableException {
+        CachingGeocodingService caching = new CachingGeocodingService(service, cache);
+        assertEquals("Address 1.0/2.0", caching.getAddressFor(new SimpleNavigationPosition(1.0, 2.0)));
+        assertEquals("Address 1.0/2.0", caching.getAddressFor(new SimpleNavigationPosition(1.000001, 2.000001)));
+        assertEquals("Address 1.0001/2.0", caching.getAddressFor(new SimpleNavigationPosition(1.0001, 2.0)));
+        assertEquals(2, service.addressCount);
+    }
+
+    @Test
+    public void testMissingAddressIsNotCached() throws IOException, ServiceUnavailableException {
+        CachingGeocodingService caching = new CachingGeocodingService(service, cache);
+        assertNull(caching.getAddressFor(new SimpleNavigationPosition(11.0, 2.0)));
+        assertNull(caching.getAddressFor(new SimpleNavigationPosition(11.0, 2.0)));
+        assertEquals(2, service.addressCount);
+        assertNull(cache.get(caching.createKey(new SimpleNavigationPosition(11.0, 2.0))));
+    }
+
+    @Test
+    public void testPositionWithoutCoordinatesIsNotCached() throws IOException, ServiceUnavailableException {
+        CachingGeocodingService caching = new CachingGeocodingService(service, cache);
+        assertNull(caching.getAddressFor(new SimpleNavigationPosition(null, null)));
+        assertEquals(1, service.addressCount);
+    }
+
+    @Test
+    public void testGetPositionsForIsNotCached() throws IOException, ServiceUnavailableException {
+        CachingGeocodingService caching = new CachingGeocodingService(service, cache);
+        assertEquals(1, caching.getPositionsFor("Hamburg").size());
+        assertEquals(1, caching.getPositionsFor("Hamburg").size());
+        assertEquals(2, service.positionsCount);
+    }
+
+    @Test
+    public void testCachedAddressesArePersisted() throws IOException, ServiceUnavailableException {
+        CachingGeocodingService caching = new CachingGeocodingService(service, cache);
+        caching.getAddressFor(new SimpleNavigationPosition(1.0, 2.0));
+        cache.close();
+
+        cache = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+        caching = new CachingGeocodingService(service, cache);
+        assertEquals("Address 1.0/2.0", caching.getAddressFor(new SimpleNavigationPosition(1.0, 2.0)));
+        assertEquals(1, service.addressCount);
+    }
+}
@@ -38,6 +38,9 @@ import java.util.List;
 import java.util.logging.Logger;
 import java.util.prefs.Preferences;
 
+import static java.lang.Double.NaN;
+import static java.lang.Double.isNaN;
+import static java.lang.Math.min;
 import static slash.common.io.Transfer.parseInteger;
 import static slash.common.io.Transfer.trim;
 
@@ -51,6 +54,7 @@ public class GeoNamesService implements ElevationService, GeocodingService {
     private static final Preferences preferences = Preferences.userNodeForPackage(GeoNamesService.class);
     private static final Logger log = Logger.getLogger(GeoNamesService.class.getName());
     private static final String GEONAMES_URL_PREFERENCE = "geonamesUrl";
+    private static final int MAXIMUM_POSITIONS_PER_REQUEST = 20;
     private int overQueryLimitCount;
 
     public String getName() {
@@ -80,22 +84,74 @@ public class GeoNamesService implements ElevationService, GeocodingService {
         return null;
     }
 
+    private Integer parseElevation(String result, Integer nullValue) throws IOException {
+        try {
+            // returns /home/data/asterv2/N82/N82E018.zip for not-existing data
+            if(result.contains("/home/data/aster"))
+                return null;
+
+            Integer elevation = parseInteger(result);
+            if (elevation != null && !elevation.equals(nullValue))
+                return elevation;
+        } catch (NumberFormatException e) {
+            throw new IOException("Cannot unmarshall " + result + ": " + e, e);
+        }
+        return null;
+    }
+
     private Integer getElevationFor(String uri, double longitude, double latitude, Integer nullValue) throws IOException {
-        String result = execute(uri + "?lat=" + latitude + "&lng=" + longitude, uri); // could be up to 20 points
+        String result = execute(uri + "?lat=" + latitude + "&lng=" + longitude, uri);
+        return result != null ? parseElevation(result, nullValue) : null;
+    }
+
+    private Integer[] getElevationsFor(String uri, double[] longitudes, double[] latitudes, Integer nullValue) throws IOException {
+        StringBuilder lats = new StringBuilder();
+        StringBuilder lngs = new StringBuilder();
+        for (int i = 0; i < longitudes.length; i++) {
+            if (i > 0) {
+                lats.append(",");
+                lngs.append(",");
+            }
+            lats.append(latitudes[i]);
+            lngs.append(longitudes[i]);
+        }
+
+        Integer[] elevations = new Integer[longitudes.length];
+        String result = execute(uri + "?lats=" + lats + "&lngs=" + lngs, uri);
         if (result != null) {
-            try {
-                // returns /home/data/asterv2/N82/N82E018.zip for not-existing data
-                if(result.contains("/home/data/aster"))
-                    return null;
-
-                Integer elevation = parseInteger(result);
-                if (elevation != null && !elevation.equals(nullValue))
-                    return elevation;
-            } catch (NumberFormatException e) {
-                throw new IOException("Cannot unmarshall " + result + ": " + e, e);
+            String[] lines = result.trim().split("\\s+");
+            if (lines.length != longitudes.length)
+                throw new IOException("Expected " + longitudes.length + " elevations but got " + result);
+            for (int i = 0; i < lines.length; i++)
+                elevations[i] = parseElevation(lines[i], nullValue);
+        }
+        return elevations;
+    }
+
+    private void fillElevationsFor(String uri, Integer nullValue, double minimumLatitude, double maximumLatitude,
+                                   double[] longitudes, double[] latitudes, double[] result) throws IOException {
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < longitudes.length; i++) {
+            if (isNaN(result[i]) && latitudes[i] < maximumLatitude && latitudes[i] > minimumLatitude)
+                indices.add(i);
+        }
+
+        for (int start = 0; start < indices.size(); start += MAXIMUM_POSITIONS_PER_REQUEST) {
+            int end = min(start + MAXIMUM_POSITIONS_PER_REQUEST, indices.size());
+            double[] requestLongitudes = new double[end - start];
+            double[] requestLatitudes = new double[end - start];
+            for (int i = start; i < end; i++) {
+                requestLongitudes[i - start] = longitudes[indices.get(i)];
+                requestLatitudes[i - start] = latitudes[indices.get(i)];
+            }
+
+            Integer[] elevations = getElevationsFor(uri, requestLongitudes, requestLatitudes, nullValue);
+            for (int i = start; i < end; i++) {
+                Integer elevation = elevations[i - start];
+                if (elevation != null)
+                    result[indices.get(i)] = elevation.doubleValue();
             }
         }
-        return null;
     }
 
     private void checkCurrentlyOverloaded(String url, String result) throws ServiceUnavailableException {
@@ -138,6 +194,15 @@ public class GeoNamesService implements ElevationService, GeocodingService {
         return elevation != null ? elevation.doubleValue() : null;
     }
 
+    public void getElevationsFor(double[] longitudes, double[] latitudes, double[] result) throws IOException {
+        for (int i = 0; i < result.length; i++)
+            result[i] = NaN;
+
+        fillElevationsFor("astergdem", -9999, -65.0, 83.0, longitudes, latitudes, result);
+        fillElevationsFor("srtm3", -32768, -56.0, 60.0, longitudes, latitudes, result);
+        fillElevationsFor("gtopo30", -9999, -91.0, 91.0, longitudes, latitudes, result);
+    }
+
     public List<NavigationPosition> getPositionsFor(String address) {
         return null; // not supported
     }
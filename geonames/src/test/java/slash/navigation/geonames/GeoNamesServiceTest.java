@@ -0,0 +1,116 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.geonames;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import slash.common.helpers.APIKeyRegistry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.prefs.Preferences;
+
+import static org.junit.Assert.assertEquals;
+
+public class GeoNamesServiceTest {
+    private static final Preferences preferences = Preferences.userNodeForPackage(GeoNamesService.class);
+    private final List<String> requests = new ArrayList<>();
+    private GeoNamesService service = new GeoNamesService();
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        preferences.put("geonamesUrl", "http://localhost:" + server.getAddress().getPort() + "/");
+        APIKeyRegistry.getInstance().setAPIKeyPreference("geonames", "test");
+    }
+
+    @After
+    public void tearDown() {
+        APIKeyRegistry.getInstance().setAPIKeyPreference("geonames", "");
+        preferences.remove("geonamesUrl");
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getQuery();
+        requests.add(path);
+
+        String[] lats = null;
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("lats="))
+                lats = parameter.substring(5).split(",");
+        }
+
+        StringBuilder body = new StringBuilder();
+        for (String lat : lats) {
+            double latitude = Double.parseDouble(lat);
+            if (path.equals("/astergdem"))
+                body.append(latitude < 50.0 ? (int) (latitude * 10) : -9999);
+            else if (path.equals("/srtm3"))
+                body.append(latitude < 60.0 ? 111 : -32768);
+            else
+                body.append(7);
+            body.append("\r\n");
+        }
+
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    @Test
+    public void testElevationsForInBatches() throws IOException {
+        double[] longitudes = new double[30];
+        double[] latitudes = new double[30];
+        for (int i = 0; i < longitudes.length; i++) {
+            longitudes[i] = 10.0;
+            latitudes[i] = 40.5 + i;
+        }
+        double[] result = new double[30];
+        service.getElevationsFor(longitudes, latitudes, result);
+
+        for (int i = 0; i < 10; i++)
+            assertEquals((int) (latitudes[i] * 10), result[i], 0.0);
+        for (int i = 10; i < 20; i++)
+            assertEquals(111.0, result[i], 0.0);
+        for (int i = 20; i < 30; i++)
+            assertEquals(7.0, result[i], 0.0);
+
+        assertEquals(4, requests.size());
+        assertEquals("/astergdem", requests.get(0));
+        assertEquals("/astergdem", requests.get(1));
+        assertEquals("/srtm3", requests.get(2));
+        assertEquals("/gtopo30", requests.get(3));
+    }
+}
@@ -41,6 +41,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.logging.Logger;
 
+import static java.lang.Math.min;
 import static java.util.Arrays.sort;
 import static slash.common.io.Transfer.encodeUri;
 import static slash.navigation.common.Bearing.calculateBearing;
@@ -57,6 +58,7 @@ import static slash.navigation.rest.HttpRequest.USER_AGENT;
 
 public class GoogleService implements ElevationService, GeocodingService {
     private static final Logger log = Logger.getLogger(GoogleService.class.getName());
+    private static final int MAXIMUM_LOCATIONS_PER_REQUEST = 256;
     private int overQueryLimitCount, deniedCount;
 
     public String getName() {
@@ -165,10 +167,9 @@ public class GoogleService implements ElevationService, GeocodingService {
         return result;
     }
 
-    public Double getElevationFor(double longitude, double latitude) throws IOException {
-        String url = getElevationUrl("locations=" + latitude + "," + longitude); // could be up to 512 locations
+    private List<Double> getElevationsFor(String locations) throws IOException {
+        String url = getElevationUrl("locations=" + locations);
         Get get = get(url);
-        log.info("Getting elevation for " + longitude + "," + latitude);
         String result = get.executeAsString();
         if (get.isSuccessful())
             try {
@@ -176,8 +177,7 @@ public class GoogleService implements ElevationService, GeocodingService {
                 if (elevationResponse != null) {
                     String status = elevationResponse.getStatus();
                     checkForError(url, status);
-                    List<Double> elevations = extractElevations(elevationResponse.getResult());
-                    return elevations != null && elevations.size() > 0 ? elevations.get(0) : null;
+                    return extractElevations(elevationResponse.getResult());
                 }
             } catch (JAXBException e) {
                 throw new IOException("Cannot unmarshall " + result + ": " + e, e);
@@ -185,6 +185,29 @@ public class GoogleService implements ElevationService, GeocodingService {
         return null;
     }
 
+    public Double getElevationFor(double longitude, double latitude) throws IOException {
+        log.info("Getting elevation for " + longitude + "," + latitude);
+        List<Double> elevations = getElevationsFor(latitude + "," + longitude);
+        return elevations != null && elevations.size() > 0 ? elevations.get(0) : null;
+    }
+
+    public void getElevationsFor(double[] longitudes, double[] latitudes, double[] result) throws IOException {
+        log.info("Getting elevations for " + longitudes.length + " positions");
+        for (int start = 0; start < longitudes.length; start += MAXIMUM_LOCATIONS_PER_REQUEST) {
+            int end = min(start + MAXIMUM_LOCATIONS_PER_REQUEST, longitudes.length);
+            StringBuilder locations = new StringBuilder();
+            for (int i = start; i < end; i++) {
+                if (i > start)
+                    locations.append("%7C");
+                locations.append(latitudes[i]).append(",").append(longitudes[i]);
+            }
+
+            List<Double> elevations = getElevationsFor(locations.toString());
+            for (int i = start; i < end; i++)
+                result[i] = elevations != null && elevations.size() == end - start ? elevations.get(i - start) : Double.NaN;
+        }
+    }
+
     private List<Double> extractElevations(List<ElevationResponse.Result> responses) {
         List<Double> results = new ArrayList<>(responses.size());
         for (ElevationResponse.Result response : responses) {
@@ -58,15 +58,9 @@ public class DownloadableFinder {
 
     private List<DownloadableDescriptor> getDownloadDescriptorsFor(BoundingBox routeBoundingBox) {
         List<DownloadableDescriptor> descriptors = new ArrayList<>();
-        for (File file : dataSource.getFiles()) {
+        // files without a bounding box are not indexed
+        for (File file : dataSource.getFilesContaining(routeBoundingBox)) {
             BoundingBox fileBoundingBox = file.getBoundingBox();
-            if (fileBoundingBox == null) {
-                log.warning(format("File %s doesn't have a bounding box. Ignoring it.", file));
-                continue;
-            }
-            if (!fileBoundingBox.contains(routeBoundingBox))
-                continue;
-
             Double distance = calculateBearing(fileBoundingBox.getCenter().getLongitude(), fileBoundingBox.getCenter().getLatitude(),
                     routeBoundingBox.getCenter().getLongitude(), routeBoundingBox.getCenter().getLatitude()).getDistance();
             boolean existsFile = existsFile(file);
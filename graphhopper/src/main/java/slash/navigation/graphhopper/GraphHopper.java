@@ -23,10 +23,16 @@ import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.PathWrapper;
 import com.graphhopper.reader.osm.GraphHopperOSM;
+import com.graphhopper.routing.Path;
 import com.graphhopper.routing.util.DefaultFlagEncoderFactory;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.DouglasPeucker;
+import com.graphhopper.util.Parameters.CH;
+import com.graphhopper.util.Parameters.Landmark;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.exceptions.PointNotFoundException;
+import com.graphhopper.util.shapes.GHPoint;
 import slash.navigation.common.*;
 import slash.navigation.datasources.DataSource;
 import slash.navigation.datasources.Downloadable;
@@ -39,9 +45,16 @@ import slash.navigation.routing.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Logger;
 import java.util.prefs.Preferences;
 
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Runtime.getRuntime;
 import static java.lang.String.format;
 import static java.lang.System.currentTimeMillis;
 import static java.util.Arrays.asList;
@@ -52,6 +65,9 @@ import static slash.common.io.Files.printArrayToDialogString;
 import static slash.common.io.Files.recursiveDelete;
 import static slash.navigation.graphhopper.PbfUtil.DOT_OSM;
 import static slash.navigation.graphhopper.PbfUtil.DOT_PBF;
+import static slash.navigation.graphhopper.PreparationMode.Flexible;
+import static slash.navigation.graphhopper.StorageMode.InMemory;
+import static slash.navigation.graphhopper.StorageMode.MemoryMapped;
 import static slash.navigation.routing.RoutingResult.Validity.PointNotFound;
 import static slash.navigation.routing.RoutingResult.Validity.Valid;
 
@@ -66,16 +82,23 @@ public class GraphHopper extends BaseRoutingService {
     private static final Logger log = Logger.getLogger(GraphHopper.class.getName());
     private static final String DIRECTORY_PREFERENCE = "directory";
     private static final String BASE_URL_PREFERENCE = "baseUrl";
+    private static final String PREPARATION_MODE_PREFERENCE = "preparationMode";
+    private static final String STORAGE_MODE_PREFERENCE = "storageMode";
     private static final TravelMode CAR = new TravelMode("Car");
     private static final List<TravelMode> TRAVEL_MODES = asList(new TravelMode("Bike"), CAR, new TravelMode("Foot"));
     // omitted: Hike, MotorCycle, MTB, RacingBike, Scooter, Small_Truck, Truck
     private static final int BYTES_FOR_EDGE_FLAGS = 4;
+    private static final String PREPARED_WEIGHTING = "fastest";
+    private static final double WAY_POINT_MAX_DISTANCE = 1.0;
+    private static final int MAXIMUM_PREPARED_HOPPERS = 2;
+    private static final double MAXIMUM_FALLBACK_SNAP_DISTANCE = 500.0;
 
     private final DownloadManager downloadManager;
     private DataSource dataSource;
 
     private DownloadableFinder finder;
-    private com.graphhopper.GraphHopper hopper;
+    private final Map<String, SharedHopper> hoppers = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, FutureTask<SharedHopper>> preparations = new HashMap<>();
     private java.io.File osmPbfFile;
 
     public GraphHopper(DownloadManager downloadManager) {
@@ -119,6 +142,10 @@ public class GraphHopper extends BaseRoutingService {
         return false;
     }
 
+    public boolean isSupportParallelRouting() {
+        return true;
+    }
+
     public List<TravelMode> getAvailableTravelModes() {
         return TRAVEL_MODES;
     }
@@ -135,6 +162,39 @@ public class GraphHopper extends BaseRoutingService {
         preferences.put(DIRECTORY_PREFERENCE, path);
     }
 
+    public String getRoutingDataVersion() {
+        // while the graph is prepared, previously prepared graphs of other data serve the requests
+        synchronized (hoppers) {
+            SharedHopper hopper = getPreparedHopper();
+            return hopper != null ? hopper.getVersion() : null;
+        }
+    }
+
+    public PreparationMode getPreparationMode() {
+        // the graphs of the other modes are imported into directories of their own
+        try {
+            return PreparationMode.valueOf(preferences.get(PREPARATION_MODE_PREFERENCE, Flexible.toString()));
+        } catch (IllegalArgumentException e) {
+            return Flexible;
+        }
+    }
+
+    public void setPreparationMode(PreparationMode preparationMode) {
+        preferences.put(PREPARATION_MODE_PREFERENCE, preparationMode.toString());
+    }
+
+    public StorageMode getStorageMode() {
+        try {
+            return StorageMode.valueOf(preferences.get(STORAGE_MODE_PREFERENCE, InMemory.toString()));
+        } catch (IllegalArgumentException e) {
+            return InMemory;
+        }
+    }
+
+    public void setStorageMode(StorageMode storageMode) {
+        preferences.put(STORAGE_MODE_PREFERENCE, storageMode.toString());
+    }
+
     private String getBaseUrl() {
         return preferences.get(BASE_URL_PREFERENCE, getDataSource().getBaseUrl());
     }
@@ -151,13 +211,14 @@ public class GraphHopper extends BaseRoutingService {
         return new java.io.File(getDirectory(), key);
     }
 
-    private java.io.File createPath(java.io.File file) {
+    private java.io.File createPath(java.io.File file, PreparationMode preparationMode) {
         String name = file.getName().replace(DOT_PBF, "").replace(DOT_OSM, "");
-        return new java.io.File(file.getParent(), name);
+        // a graph is prepared for exactly one mode, thus every mode gets its own directory
+        return new java.io.File(file.getParent(), name + preparationMode.getDirectorySuffix());
     }
 
     public RoutingResult getRouteBetween(NavigationPosition from, NavigationPosition to, TravelMode travelMode) {
-        initializeHopper();
+        SharedHopper hopper = acquireHopper(asList(from, to));
 
         SecondCounter secondCounter = new SecondCounter() {
             protected void second(int second) {
@@ -170,10 +231,15 @@ public class GraphHopper extends BaseRoutingService {
         try {
             GHRequest request = new GHRequest(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
             request.setVehicle(travelMode.getName().toUpperCase());
-            GHResponse response = hopper.route(request);
+            GHResponse response = hopper.getHopper().route(request);
+            if (response.hasErrors() && !isPointNotFound(response) && !Flexible.equals(getPreparationMode())) {
+                // the profile is not prepared for speed or hybrid mode
+                log.info(format("GraphHopper: falling back to flexible mode for %s: %s", travelMode, response.getErrors()));
+                request.getHints().put(CH.DISABLE, true).put(Landmark.DISABLE, true);
+                response = hopper.getHopper().route(request);
+            }
             if(response.hasErrors()) {
-                boolean pointNotFound = response.getErrors().size() > 0 && response.getErrors().get(0) instanceof PointNotFoundException;
-                if(pointNotFound)
+                if(isPointNotFound(response))
                     return new RoutingResult(null, null, PointNotFound);
 
                 String errors = printArrayToDialogString(response.getErrors().toArray(), false);
@@ -183,6 +249,7 @@ public class GraphHopper extends BaseRoutingService {
             PathWrapper best = response.getBest();
             return new RoutingResult(asPositions(best.getPoints()), new DistanceAndTime(best.getDistance(), best.getTime() / 1000), Valid);
         } finally {
+            hopper.release();
             secondCounter.stop();
 
             long end = currentTimeMillis();
@@ -190,6 +257,72 @@ public class GraphHopper extends BaseRoutingService {
         }
     }
 
+    public List<RoutingResult> getRouteVia(List<NavigationPosition> positions, TravelMode travelMode) {
+        if (positions.size() <= 2)
+            return super.getRouteVia(positions, travelMode);
+
+        List<RoutingResult> result = routeVia(positions, travelMode);
+        if (result == null) {
+            // route leg by leg to find out which legs fail
+            log.info(format("GraphHopper: routing via %d positions failed; routing each leg", positions.size()));
+            return super.getRouteVia(positions, travelMode);
+        }
+        return result;
+    }
+
+    private List<RoutingResult> routeVia(List<NavigationPosition> positions, TravelMode travelMode) {
+        SharedHopper hopper = acquireHopper(positions);
+
+        SecondCounter secondCounter = new SecondCounter() {
+            protected void second(int second) {
+                fireRouting(second);
+            }
+        };
+        secondCounter.start();
+
+        long start = currentTimeMillis();
+        try {
+            List<GHPoint> viaPoints = new ArrayList<>();
+            for (NavigationPosition position : positions)
+                viaPoints.add(new GHPoint(position.getLatitude(), position.getLongitude()));
+            GHRequest request = new GHRequest(viaPoints);
+            request.setVehicle(travelMode.getName().toUpperCase());
+            // the positions are snapped once and every leg is returned as a path of its own
+            GHResponse response = new GHResponse();
+            List<Path> paths = hopper.getHopper().calcPaths(request, response);
+            if (response.hasErrors() && !isPointNotFound(response) && !Flexible.equals(getPreparationMode())) {
+                // the profile is not prepared for speed or hybrid mode
+                request.getHints().put(CH.DISABLE, true).put(Landmark.DISABLE, true);
+                response = new GHResponse();
+                paths = hopper.getHopper().calcPaths(request, response);
+            }
+            if (response.hasErrors() || paths.size() != positions.size() - 1)
+                return null;
+
+            List<RoutingResult> result = new ArrayList<>();
+            for (Path path : paths) {
+                if (!path.isFound())
+                    return null;
+
+                PointList points = path.calcPoints();
+                // like GraphHopper#route
+                new DouglasPeucker().setMaxDistance(WAY_POINT_MAX_DISTANCE).simplify(points);
+                result.add(new RoutingResult(asPositions(points), new DistanceAndTime(path.getDistance(), path.getTime() / 1000), Valid));
+            }
+            return result;
+        } finally {
+            hopper.release();
+            secondCounter.stop();
+
+            long end = currentTimeMillis();
+            log.info(format("GraphHopper: routing via %d positions took %d milliseconds", positions.size(), end - start));
+        }
+    }
+
+    private boolean isPointNotFound(GHResponse response) {
+        return response.getErrors().size() > 0 && response.getErrors().get(0) instanceof PointNotFoundException;
+    }
+
     private String getAvailableTravelModeNames() {
         StringBuilder result = new StringBuilder();
         List<TravelMode> availableTravelModes = getAvailableTravelModes();
@@ -201,80 +334,211 @@ public class GraphHopper extends BaseRoutingService {
         return result.toString();
     }
 
-    private static final Object initializationLock = new Object();
-
     private java.io.File getOsmPbfFile() {
-        synchronized (initializationLock) {
+        synchronized (hoppers) {
             return osmPbfFile;
         }
     }
 
     void setOsmPbfFile(java.io.File osmPbfFile) {
-        synchronized (initializationLock) {
+        synchronized (hoppers) {
             this.osmPbfFile = osmPbfFile;
         }
     }
 
+    /**
+     * Prepares the graph for the current osmPbfFile, preparation and storage mode
+     * and waits until it is prepared.
+     */
     void initializeHopper() {
-        synchronized (initializationLock) {
-            java.io.File file = getOsmPbfFile();
-            if (file == null || !file.exists())
+        Future<SharedHopper> preparation;
+        synchronized (hoppers) {
+            if (getPreparedHopper() != null)
                 return;
+            preparation = prepareHopper();
+        }
+        if (preparation != null)
+            waitFor(preparation);
+    }
 
-            if (hopper != null) {
-                // avoid close() and importOrLoad() if the osmPbfFile stayed the same
-                if (((GraphHopperOSM)hopper).getOSMFile().equals(file.getAbsolutePath()))
-                    return;
+    /**
+     * Acquires the graph for the current osmPbfFile. While it is prepared in the
+     * background, a previously prepared graph with roads close to all positions keeps serving.
+     */
+    private SharedHopper acquireHopper(List<NavigationPosition> positions) {
+        while (true) {
+            SharedHopper hopper;
+            Future<SharedHopper> preparation = null;
+            synchronized (hoppers) {
+                hopper = getPreparedHopper();
+                if (hopper == null) {
+                    preparation = prepareHopper();
+                    hopper = findPreparedHopper(positions);
+                }
+            }
 
-                hopper.close();
+            if (hopper == null) {
+                if (preparation == null)
+                    throw new IllegalStateException(format("GraphHopper has no graph for %s", positions));
+                hopper = waitFor(preparation);
             }
 
-            SecondCounter secondCounter = new SecondCounter() {
-                protected void second(int second) {
-                    fireInitializing(second);
-                }
-            };
-            secondCounter.start();
-
-            long start = currentTimeMillis();
-            File path = createPath(file);
-            try {
-                EncodingManager encodingManager = new EncodingManager.
-                        Builder(BYTES_FOR_EDGE_FLAGS).
-                        setEnableInstructions(false).
-                        addAll(new DefaultFlagEncoderFactory(), getAvailableTravelModeNames()).
-                        build();
-                hopper = new GraphHopperOSM().
-                        setOSMFile(file.getAbsolutePath()).
-                        forDesktop().
-                        setEncodingManager(encodingManager).
-                        setCHEnabled(false).
-                        setGraphHopperLocation(path.getAbsolutePath()).
-                        importOrLoad();
-            } catch (IllegalStateException e) {
-                log.warning("Could not initialize GraphHopper: " + e);
-
-                if (e.getMessage().contains("Version of edges unsupported")) {
-                    log.info("Deleting GraphHopper index " + path);
+            // retry if the hopper has been retired in the meantime
+            if (hopper.acquire())
+                return hopper;
+        }
+    }
+
+    private SharedHopper getPreparedHopper() {
+        java.io.File file = getOsmPbfFile();
+        if (file == null)
+            return null;
+
+        SharedHopper hopper = hoppers.get(createPath(file, getPreparationMode()).getAbsolutePath());
+        return hopper != null && hopper.getStorageMode().equals(getStorageMode()) ? hopper : null;
+    }
+
+    private SharedHopper findPreparedHopper(List<NavigationPosition> positions) {
+        for (SharedHopper hopper : hoppers.values()) {
+            // the bounds of a graph cover parts of its neighbours, where positions snap to far away roads
+            if (hopper.contains(positions) && hopper.snaps(positions, MAXIMUM_FALLBACK_SNAP_DISTANCE))
+                return hopper;
+        }
+        return null;
+    }
+
+    private Future<SharedHopper> prepareHopper() {
+        final java.io.File file = getOsmPbfFile();
+        if (file == null || !file.exists())
+            return null;
+
+        final PreparationMode preparationMode = getPreparationMode();
+        final StorageMode storageMode = getStorageMode();
+        final java.io.File path = createPath(file, preparationMode);
+        final String location = path.getAbsolutePath();
+        FutureTask<SharedHopper> preparation = preparations.get(location);
+        if (preparation == null) {
+            preparation = new FutureTask<>(new Callable<SharedHopper>() {
+                public SharedHopper call() {
                     try {
-                        recursiveDelete(path);
-                        log.info("Reinitializing GraphHopper");
-                        initializeHopper();
-                    } catch (IOException e2) {
-                        log.severe("Could not delete GraphHopper index " + path + ": " + e2);
+                        SharedHopper hopper = new SharedHopper(loadHopper(file, path, preparationMode, storageMode),
+                                storageMode, createVersion(path));
+                        addPreparedHopper(location, hopper);
+                        return hopper;
+                    } finally {
+                        synchronized (hoppers) {
+                            preparations.remove(location);
+                        }
                     }
                 }
+            });
+            preparations.put(location, preparation);
+            Thread thread = new Thread(preparation, "GraphHopperPreparation");
+            // an unfinished preparation must not keep the application from exiting
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return preparation;
+    }
+
+    private String createVersion(java.io.File path) {
+        // a graph is imported once and then loaded, thus its version changes only with a new import
+        java.io.File edges = new java.io.File(path, "edges");
+        return edges.exists() ? path.getName() + "/" + edges.lastModified() : null;
+    }
+
+    private void addPreparedHopper(String location, SharedHopper hopper) {
+        synchronized (hoppers) {
+            // the previous graph of the location has another storage mode
+            SharedHopper previous = hoppers.put(location, hopper);
+            if (previous != null)
+                previous.retire();
+
+            // keep the most recently used graphs to switch back without preparation
+            Iterator<SharedHopper> iterator = hoppers.values().iterator();
+            while (hoppers.size() > MAXIMUM_PREPARED_HOPPERS) {
+                SharedHopper eldest = iterator.next();
+                iterator.remove();
+                eldest.retire();
+            }
+        }
+    }
 
-                throw e;
-            } finally {
-                secondCounter.stop();
+    private SharedHopper waitFor(Future<SharedHopper> preparation) {
+        try {
+            return preparation.get();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException("Interrupted while preparing GraphHopper graph", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+    }
+
+    private com.graphhopper.GraphHopper loadHopper(java.io.File file, java.io.File path, PreparationMode preparationMode,
+                                                   StorageMode storageMode) {
+        SecondCounter secondCounter = new SecondCounter() {
+            protected void second(int second) {
+                fireInitializing(second);
+            }
+        };
+        secondCounter.start();
 
-                long end = currentTimeMillis();
-                log.info(format("GraphHopper: initializing from %s took %d milliseconds", file, end-start));
+        long start = currentTimeMillis();
+        try {
+            EncodingManager encodingManager = new EncodingManager.
+                    Builder(BYTES_FOR_EDGE_FLAGS).
+                    setEnableInstructions(false).
+                    addAll(new DefaultFlagEncoderFactory(), getAvailableTravelModeNames()).
+                    build();
+            com.graphhopper.GraphHopper hopper = new GraphHopperOSM().
+                    init(createArguments(file, path, preparationMode));
+            // both modes read and write the same files, thus a graph imported in one mode loads in the other
+            if (MemoryMapped.equals(storageMode))
+                hopper.setMemoryMapped();
+            else
+                hopper.forDesktop();
+            return hopper.
+                    setEncodingManager(encodingManager).
+                    importOrLoad();
+        } catch (IllegalStateException e) {
+            log.warning("Could not initialize GraphHopper: " + e);
+
+            if (e.getMessage().contains("Version of edges unsupported") || e.getMessage().contains("is not equal to loaded")) {
+                log.info("Deleting GraphHopper index " + path);
+                try {
+                    recursiveDelete(path);
+                    log.info("Reinitializing GraphHopper");
+                    return loadHopper(file, path, preparationMode, storageMode);
+                } catch (IOException e2) {
+                    log.severe("Could not delete GraphHopper index " + path + ": " + e2);
+                }
             }
+
+            throw e;
+        } finally {
+            secondCounter.stop();
+
+            long end = currentTimeMillis();
+            log.info(format("GraphHopper: initializing from %s in %s mode with %s storage took %d milliseconds", file, preparationMode, storageMode, end-start));
         }
     }
 
+    private CmdArgs createArguments(java.io.File file, java.io.File path, PreparationMode preparationMode) {
+        // prepare the profiles in parallel but leave a processor for the user interface
+        int threads = max(1, min(getAvailableTravelModes().size(), getRuntime().availableProcessors() - 1));
+        CmdArgs arguments = new CmdArgs();
+        arguments.put("datareader.file", file.getAbsolutePath());
+        arguments.put("graph.location", path.getAbsolutePath());
+        arguments.put(CH.PREPARE + "weightings", preparationMode.isContractionHierarchies() ? PREPARED_WEIGHTING : "no");
+        arguments.put(CH.PREPARE + "threads", threads);
+        arguments.put(CH.INIT_DISABLING_ALLOWED, true);
+        arguments.put(Landmark.PREPARE + "weightings", preparationMode.isLandmarks() ? PREPARED_WEIGHTING : "");
+        arguments.put(Landmark.PREPARE + "threads", threads);
+        arguments.put(Landmark.INIT_DISABLING_ALLOWED, true);
+        return arguments;
+    }
+
     private List<NavigationPosition> asPositions(PointList points) {
         List<NavigationPosition> result = new ArrayList<>();
         for (int i = 0, c = points.getSize(); i < c; i++) {
@@ -319,7 +583,7 @@ public class GraphHopper extends BaseRoutingService {
             if(file == null)
                 return false;
 
-            File path = createPath(file);
+            File path = createPath(file, getPreparationMode());
             File edges = new File(path, "edges");
             return !path.exists() || !edges.exists();
         }
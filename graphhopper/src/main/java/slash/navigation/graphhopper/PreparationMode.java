@@ -0,0 +1,55 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+package slash.navigation.graphhopper;
+
+/**
+ * Enumeration of the preparations of the GraphHopper graph: flexible mode without
+ * preparation, landmarks (hybrid mode) and contraction hierarchies (speed mode).
+ *
+ * @author Christian Pesch
+ */
+
+public enum PreparationMode {
+    Flexible(false, false, ""),
+    Landmarks(false, true, "-lm"),
+    ContractionHierarchies(true, false, "-ch"),
+    ContractionHierarchiesAndLandmarks(true, true, "-ch-lm");
+
+    private final boolean contractionHierarchies, landmarks;
+    private final String directorySuffix;
+
+    PreparationMode(boolean contractionHierarchies, boolean landmarks, String directorySuffix) {
+        this.contractionHierarchies = contractionHierarchies;
+        this.landmarks = landmarks;
+        this.directorySuffix = directorySuffix;
+    }
+
+    public boolean isContractionHierarchies() {
+        return contractionHierarchies;
+    }
+
+    public boolean isLandmarks() {
+        return landmarks;
+    }
+
+    String getDirectorySuffix() {
+        return directorySuffix;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.graphhopper;
+
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.shapes.BBox;
+import slash.navigation.common.NavigationPosition;
+
+import java.util.List;
+
+import static com.graphhopper.routing.util.EdgeFilter.ALL_EDGES;
+
+/**
+ * A GraphHopper graph that is shared by the routing requests. It is closed once
+ * it's retired and the last request that acquired it released it.
+ *
+ * @author Christian Pesch
+ */
+
+class SharedHopper {
+    private final com.graphhopper.GraphHopper hopper;
+    private final StorageMode storageMode;
+    private final String version;
+    private int references;
+    private boolean retired, closed;
+
+    SharedHopper(com.graphhopper.GraphHopper hopper, StorageMode storageMode, String version) {
+        this.hopper = hopper;
+        this.storageMode = storageMode;
+        this.version = version;
+    }
+
+    com.graphhopper.GraphHopper getHopper() {
+        return hopper;
+    }
+
+    StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    String getVersion() {
+        return version;
+    }
+
+    boolean contains(List<NavigationPosition> positions) {
+        BBox bounds = hopper.getGraphHopperStorage().getBounds();
+        for (NavigationPosition position : positions) {
+            if (!bounds.contains(position.getLatitude(), position.getLongitude()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if every position is within the given distance in meters to a road of the graph
+     */
+    boolean snaps(List<NavigationPosition> positions, double maximumDistance) {
+        LocationIndex index = hopper.getLocationIndex();
+        for (NavigationPosition position : positions) {
+            QueryResult result = index.findClosest(position.getLatitude(), position.getLongitude(), ALL_EDGES);
+            if (!result.isValid() || result.getQueryDistance() > maximumDistance)
+                return false;
+        }
+        return true;
+    }
+
+    synchronized boolean acquire() {
+        if (retired)
+            return false;
+        references++;
+        return true;
+    }
+
+    synchronized void release() {
+        references--;
+        closeIfDrained();
+    }
+
+    synchronized void retire() {
+        retired = true;
+        closeIfDrained();
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private void closeIfDrained() {
+        if (retired && references == 0 && !closed) {
+            hopper.close();
+            closed = true;
+        }
+    }
+}
@@ -36,6 +36,7 @@ import slash.navigation.routing.TravelMode;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 
 import static java.io.File.createTempFile;
 import static java.util.Arrays.asList;
@@ -103,4 +104,62 @@ public class GraphHopperIT {
         assertEquals(13658.8, result.getDistanceAndTime().getDistance(), 25.0);
         assertEquals(2920.0, result.getDistanceAndTime().getTime(), 100.0);
     }
+
+    @Test
+    public void testGetRouteVia() {
+        NavigationPosition via = new SimpleNavigationPosition(10.12, 53.45);
+        List<RoutingResult> results = hopper.getRouteVia(asList(FROM, via, TO), getTravelMode("Car"));
+        assertEquals(2, results.size());
+
+        RoutingResult first = hopper.getRouteBetween(FROM, via, getTravelMode("Car"));
+        RoutingResult second = hopper.getRouteBetween(via, TO, getTravelMode("Car"));
+        assertEquals(Valid, results.get(0).getValidity());
+        assertEquals(first.getDistanceAndTime().getDistance(), results.get(0).getDistanceAndTime().getDistance(), 1.0);
+        assertEquals(first.getPositions().size(), results.get(0).getPositions().size(), 5);
+        assertEquals(Valid, results.get(1).getValidity());
+        assertEquals(second.getDistanceAndTime().getDistance(), results.get(1).getDistanceAndTime().getDistance(), 1.0);
+        assertEquals(second.getPositions().size(), results.get(1).getPositions().size(), 5);
+    }
+
+    @Test
+    public void testGetRouteBetweenInAllPreparationModes() {
+        PreparationMode preparationMode = hopper.getPreparationMode();
+        try {
+            hopper.setPreparationMode(PreparationMode.Flexible);
+            hopper.initializeHopper();
+            RoutingResult expected = hopper.getRouteBetween(FROM, TO, getTravelMode("Car"));
+
+            for (PreparationMode mode : PreparationMode.values()) {
+                hopper.setPreparationMode(mode);
+                hopper.initializeHopper();
+
+                RoutingResult result = hopper.getRouteBetween(FROM, TO, getTravelMode("Car"));
+                assertEquals(Valid, result.getValidity());
+                assertEquals(expected.getDistanceAndTime().getDistance(), result.getDistanceAndTime().getDistance(), 25.0);
+                assertEquals(expected.getDistanceAndTime().getTime(), result.getDistanceAndTime().getTime(), 100.0);
+            }
+        } finally {
+            hopper.setPreparationMode(preparationMode);
+        }
+    }
+
+    @Test
+    public void testGetRouteBetweenInAllStorageModes() {
+        StorageMode storageMode = hopper.getStorageMode();
+        try {
+            hopper.setStorageMode(StorageMode.InMemory);
+            hopper.initializeHopper();
+            RoutingResult expected = hopper.getRouteBetween(FROM, TO, getTravelMode("Car"));
+
+            hopper.setStorageMode(StorageMode.MemoryMapped);
+            hopper.initializeHopper();
+            RoutingResult result = hopper.getRouteBetween(FROM, TO, getTravelMode("Car"));
+            assertEquals(Valid, result.getValidity());
+            assertEquals(expected.getPositions().size(), result.getPositions().size());
+            assertEquals(expected.getDistanceAndTime().getDistance(), result.getDistanceAndTime().getDistance(), 0.0);
+            assertEquals(expected.getDistanceAndTime().getTime(), result.getDistanceAndTime().getTime());
+        } finally {
+            hopper.setStorageMode(storageMode);
+        }
+    }
 }
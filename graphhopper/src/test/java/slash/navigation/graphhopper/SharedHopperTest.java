@@ -0,0 +1,75 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+package slash.navigation.graphhopper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static slash.navigation.graphhopper.StorageMode.InMemory;
+
+public class SharedHopperTest {
+    private int closeCount;
+
+    private SharedHopper createHopper() {
+        return new SharedHopper(new com.graphhopper.GraphHopper() {
+            public void close() {
+                closeCount++;
+            }
+        }, InMemory, "1");
+    }
+
+    @Test
+    public void testRetireClosesUnusedHopper() {
+        SharedHopper hopper = createHopper();
+        hopper.retire();
+        assertTrue(hopper.isClosed());
+        assertEquals(1, closeCount);
+        assertFalse(hopper.acquire());
+    }
+
+    @Test
+    public void testRetireClosesAfterLastRelease() {
+        SharedHopper hopper = createHopper();
+        assertTrue(hopper.acquire());
+        assertTrue(hopper.acquire());
+
+        hopper.retire();
+        assertFalse(hopper.isClosed());
+        assertFalse(hopper.acquire());
+
+        hopper.release();
+        assertFalse(hopper.isClosed());
+        hopper.release();
+        assertTrue(hopper.isClosed());
+        assertEquals(1, closeCount);
+
+        hopper.retire();
+        assertEquals(1, closeCount);
+    }
+
+    @Test
+    public void testReleaseWithoutRetireKeepsHopperOpen() {
+        SharedHopper hopper = createHopper();
+        assertTrue(hopper.acquire());
+        hopper.release();
+        assertFalse(hopper.isClosed());
+        assertEquals(0, closeCount);
+    }
+}
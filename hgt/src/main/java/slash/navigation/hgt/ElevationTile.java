@@ -20,8 +20,15 @@
 
 package slash.navigation.hgt;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
 
 /**
  * A tile with elevation data.
@@ -37,20 +44,47 @@ public class ElevationTile {
     public static final int SRTM1_FILE_SIZE = (SRTM1_INTERVALS + 1) * (SRTM1_INTERVALS + 1) * 2;
     private static final int INVALID_VALUE_LIMIT = -15000; // Won't interpolate below this elevation in Meters, guess is: -0x8000
 
-    private final RandomAccessFile file;
+    private final ShortBuffer buffer;
+    private final int intervalCount;
+
+    public ElevationTile(ShortBuffer buffer, int intervalCount) {
+        this.buffer = buffer;
+        this.intervalCount = intervalCount;
+    }
 
-    public ElevationTile(RandomAccessFile file) {
-        this.file = file;
+    /**
+     * Maps the given HGT file read-only into memory. The mapping stays valid
+     * after the channel is closed, so no file handle is kept open.
+     *
+     * @param file the HGT file to map
+     * @return the elevation tile backed by the mapped file
+     * @throws IOException if the file cannot be mapped or has an invalid size
+     */
+    public static ElevationTile map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            long fileLength = channel.size();
+            int intervalCount = getIntervalCount(fileLength, file.toString());
+            MappedByteBuffer mapped = channel.map(READ_ONLY, 0, fileLength);
+            mapped.order(BIG_ENDIAN);
+            return new ElevationTile(mapped.asShortBuffer(), intervalCount);
+        }
     }
-    
-    private int getIntervalCount() throws IOException {
-        long fileLength = file.length();
-        if(fileLength == SRTM3_FILE_SIZE)
-          return SRTM3_INTERVALS;
-        else if(fileLength == SRTM1_FILE_SIZE)
+
+    static int getIntervalCount(long fileLength, String name) throws IOException {
+        if (fileLength == SRTM3_FILE_SIZE)
+            return SRTM3_INTERVALS;
+        else if (fileLength == SRTM1_FILE_SIZE)
             return SRTM1_INTERVALS;
         else
-            throw new IOException("Elevation tile " + file + " has invalid size " + fileLength);
+            throw new IOException("Elevation tile " + name + " has invalid size " + fileLength);
+    }
+
+    public int getIntervalCount() {
+        return intervalCount;
+    }
+
+    public long getByteCount() {
+        return buffer != null ? buffer.capacity() * 2L : 0L;
     }
 
     /**
@@ -67,7 +101,7 @@ public class ElevationTile {
     }
 
     public Double getElevationFor(Double longitude, Double latitude) throws IOException {
-        if (file == null || longitude == null || latitude == null)
+        if (buffer == null || longitude == null || latitude == null)
             return null;
 
         // cut off the decimal places
@@ -84,7 +118,6 @@ public class ElevationTile {
             latitude = ((double) latitudeAsInt + latitude) + (double) latitudeAsInt; // Make positive double latitude (needed for later calculation)
         }
 
-        int intervalCount = getIntervalCount();
         int longitudeIntervalIndex = (int) ((longitude - (double) longitudeAsInt) * intervalCount);
         int latitudeIntervalIndex = (int) ((latitude - (double) latitudeAsInt) * intervalCount);
 
@@ -106,20 +139,16 @@ public class ElevationTile {
         int pos;                                                    // The index of the elevation into the hgt file
 
         pos = (((intervalCount - latitudeIntervalIndex) - 1) * (intervalCount + 1)) + longitudeIntervalIndex; // The index for the left top elevation
-        file.seek(pos * 2);                                // We have 16-bit values for elevation, so multiply by 2
-        dLeftTop = file.readShort();                       // Now read the left top elevation from hgt file
+        dLeftTop = buffer.get(pos);        // Now read the left top elevation from the hgt tile
 
         pos = ((intervalCount - latitudeIntervalIndex) * (intervalCount + 1)) + longitudeIntervalIndex; // The index for the left bottom elevation
-        file.seek(pos * 2);                                // We have 16-bit values for elevation, so multiply by 2
-        dLeftBottom = file.readShort();                    // Now read the left bottom elevation from hgt file
+        dLeftBottom = buffer.get(pos);     // Now read the left bottom elevation from the hgt tile
 
         pos = (((intervalCount - latitudeIntervalIndex) - 1) * (intervalCount + 1)) + longitudeIntervalIndex + 1; // The index for the right top elevation
-        file.seek(pos * 2);                                // We have 16-bit values for elevation, so multiply by 2
-        dRightTop = file.readShort();                      // Now read the right top elevation from hgt file
+        dRightTop = buffer.get(pos);       // Now read the right top elevation from the hgt tile
 
         pos = ((intervalCount - latitudeIntervalIndex) * (intervalCount + 1)) + longitudeIntervalIndex + 1; // The index for the right bottom elevation
-        file.seek(pos * 2);                                // We have 16-bit values for elevation, so multiply by 2
-        dRightBottom = file.readShort();                   // Now read the right bottom top elevation from hgt file
+        dRightBottom = buffer.get(pos);    // Now read the right bottom top elevation from the hgt tile
 
         // if one of the read elevation values is not valid, we cannot interpolate
         if ((dLeftTop < INVALID_VALUE_LIMIT) || (dLeftBottom < INVALID_VALUE_LIMIT) ||
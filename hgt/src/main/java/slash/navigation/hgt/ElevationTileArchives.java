@@ -0,0 +1,201 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+package slash.navigation.hgt;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static java.lang.Integer.MAX_VALUE;
+import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
+import static java.nio.ByteBuffer.wrap;
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static slash.common.io.Files.collectFiles;
+import static slash.common.io.Files.lastPathFragment;
+import static slash.common.io.InputOutput.readBytes;
+
+/**
+ * Provides access to HGT files within the ZIP archives of a directory
+ * without extracting them.
+ *
+ * @author Christian Pesch
+ */
+
+class ElevationTileArchives {
+    private static final Logger log = Logger.getLogger(ElevationTileArchives.class.getName());
+
+    private static class ArchiveEntry {
+        private final File archive;
+        private final String entryName;
+
+        private ArchiveEntry(File archive, String entryName) {
+            this.archive = archive;
+            this.entryName = entryName;
+        }
+    }
+
+    private static final long INDEX_CHECK_INTERVAL = 5 * 1000L;
+
+    private final long indexCheckInterval;
+    private final Map<String, ArchiveEntry> entries = new HashMap<>();
+    private final Map<File, Long> indexedDirectories = new HashMap<>();
+    private File indexedDirectory;
+    private long indexCheckTime;
+    private int indexGeneration;
+
+    ElevationTileArchives(long indexCheckInterval) {
+        this.indexCheckInterval = indexCheckInterval;
+    }
+
+    ElevationTileArchives() {
+        this(INDEX_CHECK_INTERVAL);
+    }
+
+    private void ensureIndex(File directory) {
+        long now = currentTimeMillis();
+        if (!directory.equals(indexedDirectory)) {
+            index(directory);
+            indexedDirectory = directory;
+            indexCheckTime = now;
+        } else if (now - indexCheckTime >= indexCheckInterval) {
+            if (isModified())
+                index(directory);
+            indexCheckTime = now;
+        }
+    }
+
+    private boolean isModified() {
+        // adding or removing an archive modifies the directory that contains it
+        for (Map.Entry<File, Long> entry : indexedDirectories.entrySet()) {
+            if (entry.getKey().lastModified() != entry.getValue())
+                return true;
+        }
+        return false;
+    }
+
+    private void collectDirectories(File directory) {
+        indexedDirectories.put(directory, directory.lastModified());
+        File[] directories = directory.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isDirectory();
+            }
+        });
+        if (directories != null) {
+            for (File subDirectory : directories)
+                collectDirectories(subDirectory);
+        }
+    }
+
+    private synchronized ArchiveEntry getEntry(File directory, String key) {
+        ensureIndex(directory);
+        return entries.get(key.toLowerCase());
+    }
+
+    public synchronized Set<String> getKeys(File directory) {
+        ensureIndex(directory);
+        return new HashSet<>(entries.keySet());
+    }
+
+    /**
+     * Returns a number that changes whenever the archives below the given directory are indexed again.
+     *
+     * @param directory the directory to search for archives
+     * @return the generation of the index
+     */
+    public synchronized int getIndexGeneration(File directory) {
+        ensureIndex(directory);
+        return indexGeneration;
+    }
+
+    private void index(File directory) {
+        entries.clear();
+        indexedDirectories.clear();
+        indexGeneration++;
+        // collect the directories before the archives to notice archives added in between
+        collectDirectories(directory);
+        for (File archive : collectFiles(directory, ".zip")) {
+            try (ZipFile zipFile = new ZipFile(archive)) {
+                Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+                while (zipEntries.hasMoreElements()) {
+                    ZipEntry entry = zipEntries.nextElement();
+                    if (entry.isDirectory())
+                        continue;
+
+                    String key = lastPathFragment(entry.getName(), MAX_VALUE);
+                    key = key.toLowerCase();
+                    if (!entries.containsKey(key))
+                        entries.put(key, new ArchiveEntry(archive, entry.getName()));
+                }
+            } catch (IOException e) {
+                log.warning(format("Cannot index elevation tiles in %s: %s", archive, e));
+            }
+        }
+        log.info(format("Indexed %d elevation tiles in archives below %s", entries.size(), directory));
+    }
+
+    public boolean contains(File directory, String key) {
+        return getEntry(directory, key) != null;
+    }
+
+    /**
+     * Decodes the HGT file with the given key from the archives below the given directory.
+     *
+     * @param directory the directory to search for archives
+     * @param key the key of the HGT file, i.e. N59E011.hgt
+     * @return the elevation tile or null if there is no archive with the HGT file
+     * @throws IOException if the archive cannot be read or the HGT file has an invalid size
+     */
+    public ElevationTile load(File directory, String key) throws IOException {
+        ArchiveEntry archiveEntry = getEntry(directory, key);
+        if (archiveEntry == null)
+            return null;
+
+        try (ZipFile zipFile = new ZipFile(archiveEntry.archive)) {
+            ZipEntry entry = zipFile.getEntry(archiveEntry.entryName);
+            if (entry == null)
+                return null;
+
+            byte[] bytes;
+            try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                long size = entry.getSize();
+                if (size >= 0 && size <= MAX_VALUE) {
+                    bytes = new byte[(int) size];
+                    new DataInputStream(inputStream).readFully(bytes);
+                } else
+                    bytes = readBytes(inputStream);
+            }
+
+            String name = archiveEntry.archive + "!" + archiveEntry.entryName;
+            int intervalCount = ElevationTile.getIntervalCount(bytes.length, name);
+            return new ElevationTile(wrap(bytes).order(BIG_ENDIAN).asShortBuffer(), intervalCount);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+package slash.navigation.hgt;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe cache of {@link ElevationTile}s which is bounded by the number
+ * of bytes of the cached tiles and evicts the least recently used tiles first.
+ *
+ * @author Christian Pesch
+ */
+
+class ElevationTileCache {
+    interface Loader {
+        ElevationTile load(String key) throws IOException;
+    }
+
+    private final Map<String, ElevationTile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maximumByteCount;
+    private long byteCount;
+
+    ElevationTileCache(long maximumByteCount) {
+        this.maximumByteCount = maximumByteCount;
+    }
+
+    /**
+     * Returns the cached tile for the given key or loads it with the given {@link Loader}.
+     * Loading happens outside of the lock, so slow tiles don't block lookups for other
+     * tiles; if two threads load the same tile concurrently, the first one wins.
+     *
+     * @param key the key of the tile
+     * @param loader the loader to use if the tile is not cached
+     * @return the tile or null if the loader could not find it
+     * @throws IOException if the loader fails
+     */
+    ElevationTile get(String key, Loader loader) throws IOException {
+        synchronized (tiles) {
+            ElevationTile tile = tiles.get(key);
+            if (tile != null)
+                return tile;
+        }
+
+        ElevationTile loaded = loader.load(key);
+        if (loaded == null)
+            return null;
+
+        synchronized (tiles) {
+            ElevationTile tile = tiles.get(key);
+            if (tile != null)
+                return tile;
+
+            tiles.put(key, loaded);
+            byteCount += loaded.getByteCount();
+            evict();
+            return loaded;
+        }
+    }
+
+    private void evict() {
+        Iterator<ElevationTile> iterator = tiles.values().iterator();
+        // keep at least the most recently used tile
+        while (byteCount > maximumByteCount && tiles.size() > 1) {
+            ElevationTile tile = iterator.next();
+            iterator.remove();
+            byteCount -= tile.getByteCount();
+        }
+    }
+
+    int size() {
+        synchronized (tiles) {
+            return tiles.size();
+        }
+    }
+
+    long getByteCount() {
+        synchronized (tiles) {
+            return byteCount;
+        }
+    }
+
+    void clear() {
+        synchronized (tiles) {
+            tiles.clear();
+            byteCount = 0;
+        }
+    }
+}
@@ -26,16 +26,23 @@ import slash.navigation.datasources.Downloadable;
 import slash.navigation.datasources.Fragment;
 import slash.navigation.download.Action;
 import slash.navigation.download.Download;
+import slash.navigation.download.DownloadListener;
 import slash.navigation.download.DownloadManager;
 import slash.navigation.download.FileAndChecksum;
+import slash.navigation.elevation.ElevationCoverage;
 import slash.navigation.elevation.ElevationService;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.*;
 import java.util.prefs.Preferences;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import static java.lang.Double.NaN;
+import static java.lang.Integer.parseInt;
 import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Arrays.sort;
 import static slash.common.io.Directories.ensureDirectory;
 import static slash.common.io.Directories.getApplicationDirectory;
 import static slash.common.io.Files.removeExtension;
@@ -50,21 +57,48 @@ public class HgtFiles implements ElevationService {
     private static final Preferences preferences = Preferences.userNodeForPackage(HgtFiles.class);
     private static final String DIRECTORY_PREFERENCE = "directory";
     private static final String BASE_URL_PREFERENCE = "baseUrl";
+    private static final String MAXIMUM_CACHE_SIZE_PREFERENCE = "maximumCacheSize";
     private static final String DOT_HGT = ".hgt";
+    private static final Pattern FILE_KEY_PATTERN = Pattern.compile("([NS])(\\d{2})([EW])(\\d{3})\\" + DOT_HGT, Pattern.CASE_INSENSITIVE);
+    private static final long COVERAGE_CHECK_INTERVAL = 5 * 1000L;
 
-    private final Map<java.io.File, RandomAccessFile> randomAccessFileCache = new HashMap<>();
+    private final ElevationTileCache elevationTileCache = new ElevationTileCache(getMaximumCacheSize());
+    private final ElevationTileArchives elevationTileArchives = new ElevationTileArchives();
     private final DataSource dataSource;
     private final DownloadManager downloadManager;
+    private final DownloadListener downloadListener = new DownloadListener() {
+        public void initialized(Download download) {
+        }
+
+        public void progressed(Download download) {
+        }
+
+        public void failed(Download download) {
+        }
+
+        public void succeeded(Download download) {
+            if (download.getFile().getFile().getAbsolutePath().startsWith(getDirectory().getAbsolutePath()))
+                invalidateCoverage();
+        }
+    };
+    private ElevationCoverage coverage;
+    private long coverageLastModified, coverageCheckTime;
+    private int coverageIndexGeneration;
 
     public HgtFiles(DataSource dataSource, DownloadManager downloadManager) {
         this.dataSource = dataSource;
         this.downloadManager = downloadManager;
+        downloadManager.addDownloadListener(downloadListener);
     }
 
     public String getName() {
         return dataSource.getName();
     }
 
+    private static long getMaximumCacheSize() {
+        return preferences.getLong(MAXIMUM_CACHE_SIZE_PREFERENCE, 512 * 1024 * 1024L);
+    }
+
     String getBaseUrl() {
         return preferences.get(BASE_URL_PREFERENCE + getName(), dataSource.getBaseUrl());
     }
@@ -83,6 +117,8 @@ public class HgtFiles implements ElevationService {
 
     public void setPath(String path) {
         preferences.put(DIRECTORY_PREFERENCE + getName(), path);
+        elevationTileCache.clear();
+        invalidateCoverage();
     }
 
     public java.io.File getDirectory() {
@@ -107,45 +143,126 @@ public class HgtFiles implements ElevationService {
     }
 
     public Double getElevationFor(double longitude, double latitude) throws IOException {
-        java.io.File file = createFile(createFileKey(longitude, latitude));
-        if (!file.exists())
-            return null;
-
-        RandomAccessFile randomAccessFile = randomAccessFileCache.get(file);
-        if (randomAccessFile == null) {
-            randomAccessFile = new RandomAccessFile(file, "r");
-            randomAccessFileCache.put(file, randomAccessFile);
+        ElevationTile elevationTile = elevationTileCache.get(createFileKey(longitude, latitude), this::loadElevationTile);
+        return elevationTile != null ? elevationTile.getElevationFor(longitude, latitude) : null;
+    }
+
+    public void getElevationsFor(double[] longitudes, double[] latitudes, double[] result) throws IOException {
+        // sort the positions by tile to resolve each tile once and to access it in one sweep
+        long[] tileAndIndex = new long[longitudes.length];
+        for (int i = 0; i < longitudes.length; i++)
+            tileAndIndex[i] = ((long) getTileIndex(longitudes[i], latitudes[i]) << 32) | i;
+        sort(tileAndIndex);
+
+        int currentTileIndex = -1;
+        ElevationTile elevationTile = null;
+        for (long entry : tileAndIndex) {
+            int tileIndex = (int) (entry >>> 32);
+            int index = (int) entry;
+            if (tileIndex != currentTileIndex) {
+                elevationTile = elevationTileCache.get(createFileKey(longitudes[index], latitudes[index]), this::loadElevationTile);
+                currentTileIndex = tileIndex;
+            }
+
+            Double elevation = elevationTile != null ? elevationTile.getElevationFor(longitudes[index], latitudes[index]) : null;
+            result[index] = elevation != null ? elevation : NaN;
         }
-        return new ElevationTile(randomAccessFile).getElevationFor(longitude, latitude);
     }
 
-    public void dispose() {
-        for (RandomAccessFile randomAccessFile : randomAccessFileCache.values())
-            try {
-                randomAccessFile.close();
-            } catch (IOException e) {
-                throw new IllegalArgumentException("Cannot close random access file" + randomAccessFile);
+    static int getTileIndex(double longitude, double latitude) {
+        // same cells as #createFileKey but as a non-negative number
+        int longitudeCell = longitude < 0 ? (int) longitude - 1 : (int) longitude;
+        int latitudeCell = latitude < 0 ? (int) latitude - 1 : (int) latitude;
+        return (longitudeCell + 256) * 512 + latitudeCell + 256;
+    }
+
+    private ElevationTile loadElevationTile(String key) throws IOException {
+        java.io.File file = createFile(key);
+        if (file.exists())
+            return ElevationTile.map(file);
+        return elevationTileArchives.load(getDirectory(), key);
+    }
+
+    private boolean exists(String key) {
+        return createFile(key).exists() || elevationTileArchives.contains(getDirectory(), key);
+    }
+
+    public synchronized ElevationCoverage getCoverage() {
+        long now = currentTimeMillis();
+        if (coverage == null || now - coverageCheckTime > COVERAGE_CHECK_INTERVAL) {
+            // adding or removing a file modifies the directory
+            java.io.File directory = getDirectory();
+            long lastModified = directory.lastModified();
+            // archives in subdirectories are noticed by the index of the archives
+            int indexGeneration = elevationTileArchives.getIndexGeneration(directory);
+            if (coverage == null || lastModified != coverageLastModified || indexGeneration != coverageIndexGeneration) {
+                coverage = createCoverage(directory);
+                coverageLastModified = lastModified;
+                coverageIndexGeneration = indexGeneration;
             }
-        randomAccessFileCache.clear();
+            coverageCheckTime = now;
+        }
+        return coverage;
     }
 
-    public void downloadElevationDataFor(List<LongitudeAndLatitude> longitudeAndLatitudes, boolean waitForDownload) {
-        Set<String> keys = new HashSet<>();
+    private synchronized void invalidateCoverage() {
+        coverage = null;
+    }
+
+    private ElevationCoverage createCoverage(java.io.File directory) {
+        ElevationCoverage result = new ElevationCoverage();
+        String[] fileNames = directory.list();
+        if (fileNames != null) {
+            for (String fileName : fileNames)
+                addToCoverage(fileName, result);
+        }
+        for (String key : elevationTileArchives.getKeys(directory))
+            addToCoverage(key, result);
+        return result;
+    }
+
+    static boolean addToCoverage(String key, ElevationCoverage coverage) {
+        Matcher matcher = FILE_KEY_PATTERN.matcher(key);
+        if (!matcher.matches())
+            return false;
+
+        int latitude = parseInt(matcher.group(2));
+        if ("S".equalsIgnoreCase(matcher.group(1)))
+            latitude = -latitude;
+        int longitude = parseInt(matcher.group(4));
+        if ("W".equalsIgnoreCase(matcher.group(3)))
+            longitude = -longitude;
+        coverage.add(longitude, latitude);
+        return true;
+    }
+
+    public void dispose() {
+        downloadManager.removeDownloadListener(downloadListener);
+        elevationTileCache.clear();
+        invalidateCoverage();
+    }
+
+    Set<String> createFileKeys(List<LongitudeAndLatitude> longitudeAndLatitudes) {
+        // keep the order of the positions to download the tiles along the track first
+        Set<String> keys = new LinkedHashSet<>();
         for (LongitudeAndLatitude longitudeAndLatitude : longitudeAndLatitudes) {
             keys.add(createFileKey(longitudeAndLatitude.longitude, longitudeAndLatitude.latitude));
         }
+        return keys;
+    }
 
-        Collection<Downloadable> downloadables = new HashSet<>();
-        for (String key : keys) {
+    public void downloadElevationDataFor(List<LongitudeAndLatitude> longitudeAndLatitudes, boolean waitForDownload) {
+        Collection<Downloadable> downloadables = new LinkedHashSet<>();
+        for (String key : createFileKeys(longitudeAndLatitudes)) {
             Fragment<Downloadable> fragment = dataSource.getFragment(key);
             // fallback as long as .hgt is not part of the keys
             if (fragment == null)
                 fragment = dataSource.getFragment(removeExtension(key));
-            if (fragment != null && !createFile(fragment.getKey()).exists())
+            if (fragment != null && !exists(fragment.getKey()))
                 downloadables.add(fragment.getDownloadable());
         }
 
-        Collection<Download> downloads = new HashSet<>();
+        Collection<Download> downloads = new LinkedHashSet<>();
         for (Downloadable downloadable : downloadables) {
             downloads.add(download(downloadable));
         }
@@ -208,8 +325,7 @@ public class HgtFiles implements ElevationService {
 
         Collection<Downloadable> downloadables = new HashSet<>();
         for (Fragment<Downloadable> fragment : fragments) {
-            java.io.File file = createFile(fragment.getKey());
-            if (!file.exists())
+            if (!exists(fragment.getKey()))
                 downloadables.add(fragment.getDownloadable());
         }
 
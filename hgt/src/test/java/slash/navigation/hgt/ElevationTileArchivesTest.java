@@ -0,0 +1,149 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.hgt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.io.File.createTempFile;
+import static java.util.zip.ZipEntry.STORED;
+import static org.junit.Assert.*;
+import static slash.common.io.Files.recursiveDelete;
+
+public class ElevationTileArchivesTest {
+    private static final int INTERVALS = 1200;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = createTempFile("archives", ".test");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        recursiveDelete(directory);
+    }
+
+    private byte[] createTile(short elevation) {
+        ByteBuffer buffer = ByteBuffer.allocate((INTERVALS + 1) * (INTERVALS + 1) * 2);
+        while (buffer.hasRemaining())
+            buffer.putShort(elevation);
+        return buffer.array();
+    }
+
+    private void createArchive(File file, boolean stored, String... entryNames) throws IOException {
+        try (ZipOutputStream outputStream = new ZipOutputStream(new FileOutputStream(file))) {
+            short elevation = 100;
+            for (String entryName : entryNames) {
+                byte[] bytes = createTile(elevation++);
+                ZipEntry entry = new ZipEntry(entryName);
+                if (stored) {
+                    CRC32 crc = new CRC32();
+                    crc.update(bytes);
+                    entry.setMethod(STORED);
+                    entry.setSize(bytes.length);
+                    entry.setCrc(crc.getValue());
+                }
+                outputStream.putNextEntry(entry);
+                outputStream.write(bytes);
+                outputStream.closeEntry();
+            }
+        }
+    }
+
+    @Test
+    public void testPerTileArchive() throws IOException {
+        createArchive(new File(directory, "N59E011.hgt.zip"), false, "N59E011.hgt");
+
+        ElevationTileArchives archives = new ElevationTileArchives();
+        assertTrue(archives.contains(directory, "N59E011.hgt"));
+        assertFalse(archives.contains(directory, "N60E012.hgt"));
+
+        ElevationTile tile = archives.load(directory, "N59E011.hgt");
+        assertNotNull(tile);
+        assertEquals(100, tile.getElevationFor(11.5, 59.5).intValue());
+        assertNull(archives.load(directory, "N60E012.hgt"));
+    }
+
+    @Test
+    public void testMultiTileArchive() throws IOException {
+        File subDirectory = new File(directory, "Eurasia");
+        assertTrue(subDirectory.mkdir());
+        createArchive(new File(subDirectory, "I36.zip"), true, "I36/N32E034.hgt", "I36/n32e035.hgt");
+
+        ElevationTileArchives archives = new ElevationTileArchives();
+        assertEquals(100, archives.load(directory, "N32E034.hgt").getElevationFor(34.5, 32.5).intValue());
+        assertEquals(101, archives.load(directory, "N32E035.hgt").getElevationFor(35.5, 32.5).intValue());
+    }
+
+    @Test
+    public void testIndexIsUpdatedWhenArchiveIsAdded() throws IOException {
+        ElevationTileArchives archives = new ElevationTileArchives(0);
+        assertFalse(archives.contains(directory, "N59E011.hgt"));
+
+        createArchive(new File(directory, "N59E011.hgt.zip"), false, "N59E011.hgt");
+        // make sure the modification is visible with coarse file system timestamps
+        assertTrue(directory.setLastModified(directory.lastModified() + 2000));
+        assertTrue(archives.contains(directory, "N59E011.hgt"));
+    }
+
+    @Test
+    public void testIndexIsUpdatedWhenArchiveIsAddedToSubDirectory() throws IOException {
+        File subDirectory = new File(directory, "Eurasia");
+        assertTrue(subDirectory.mkdir());
+
+        ElevationTileArchives archives = new ElevationTileArchives(0);
+        assertFalse(archives.contains(directory, "N32E034.hgt"));
+        int generation = archives.getIndexGeneration(directory);
+
+        long directoryLastModified = directory.lastModified();
+        createArchive(new File(subDirectory, "I36.zip"), true, "I36/N32E034.hgt");
+        assertTrue(subDirectory.setLastModified(subDirectory.lastModified() + 2000));
+        assertEquals(directoryLastModified, directory.lastModified());
+        assertTrue(archives.contains(directory, "N32E034.hgt"));
+        assertNotEquals(generation, archives.getIndexGeneration(directory));
+
+        assertTrue(new File(subDirectory, "I36.zip").delete());
+        assertTrue(subDirectory.setLastModified(subDirectory.lastModified() + 2000));
+        assertFalse(archives.contains(directory, "N32E034.hgt"));
+    }
+
+    @Test
+    public void testIndexIsNotCheckedWithinInterval() throws IOException {
+        ElevationTileArchives archives = new ElevationTileArchives(60 * 1000L);
+        assertFalse(archives.contains(directory, "N59E011.hgt"));
+
+        createArchive(new File(directory, "N59E011.hgt.zip"), false, "N59E011.hgt");
+        assertTrue(directory.setLastModified(directory.lastModified() + 2000));
+        assertFalse(archives.contains(directory, "N59E011.hgt"));
+    }
+}
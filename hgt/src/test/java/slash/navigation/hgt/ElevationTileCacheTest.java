@@ -0,0 +1,103 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.hgt;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.junit.Assert.*;
+
+public class ElevationTileCacheTest {
+    private final AtomicInteger loadCount = new AtomicInteger();
+
+    private ElevationTile load(String key) {
+        loadCount.incrementAndGet();
+        return key.startsWith("missing") ? null : new ElevationTile(ShortBuffer.allocate(50), 1200);
+    }
+
+    @Test
+    public void testCaches() throws IOException {
+        ElevationTileCache cache = new ElevationTileCache(1000);
+        ElevationTile tile = cache.get("a", this::load);
+        assertSame(tile, cache.get("a", this::load));
+        assertEquals(1, loadCount.get());
+        assertEquals(1, cache.size());
+        assertEquals(100, cache.getByteCount());
+    }
+
+    @Test
+    public void testDoesNotCacheMissingTiles() throws IOException {
+        ElevationTileCache cache = new ElevationTileCache(1000);
+        assertNull(cache.get("missing", this::load));
+        assertNull(cache.get("missing", this::load));
+        assertEquals(2, loadCount.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws IOException {
+        ElevationTileCache cache = new ElevationTileCache(200);
+        ElevationTile a = cache.get("a", this::load);
+        cache.get("b", this::load);
+        cache.get("a", this::load);
+        cache.get("c", this::load);
+        assertEquals(2, cache.size());
+        assertEquals(200, cache.getByteCount());
+        assertSame(a, cache.get("a", this::load));
+        assertEquals(3, loadCount.get());
+        cache.get("b", this::load);
+        assertEquals(4, loadCount.get());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final ElevationTileCache cache = new ElevationTileCache(500);
+        ExecutorService executor = newFixedThreadPool(8);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final int offset = i;
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        for (int j = 0; j < 10000; j++)
+                            assertNotNull(cache.get("tile" + ((j + offset) % 20), ElevationTileCacheTest.this::load));
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(5, cache.size());
+        assertEquals(500, cache.getByteCount());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.hgt;
+
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ShortBuffer;
+
+import static java.io.File.createTempFile;
+import static org.junit.Assert.*;
+
+public class ElevationTileTest {
+    private static final int INTERVALS = 1200;
+
+    private File createTile(short elevation) throws IOException {
+        File file = createTempFile("N00E000", ".hgt");
+        try (DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < (INTERVALS + 1) * (INTERVALS + 1); i++)
+                outputStream.writeShort(elevation);
+        }
+        return file;
+    }
+
+    @Test
+    public void testMap() throws IOException {
+        File file = createTile((short) 1234);
+        // mapped files cannot be deleted on every platform
+        file.deleteOnExit();
+
+        ElevationTile tile = ElevationTile.map(file);
+        assertEquals(INTERVALS, tile.getIntervalCount());
+        assertEquals(1234, tile.getElevationFor(0.5, 0.5).intValue());
+        assertEquals(1234, tile.getElevationFor(0.0, 0.0).intValue());
+        assertEquals(1234, tile.getElevationFor(0.99999, 0.99999).intValue());
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidSize() throws IOException {
+        ElevationTile.getIntervalCount(4711, "invalid");
+    }
+
+    @Test
+    public void testInvalidValue() throws IOException {
+        ShortBuffer buffer = ShortBuffer.allocate((INTERVALS + 1) * (INTERVALS + 1));
+        for (int i = 0; i < buffer.capacity(); i++)
+            buffer.put(i, (short) -32768);
+        assertNull(new ElevationTile(buffer, INTERVALS).getElevationFor(0.5, 0.5));
+    }
+
+    @Test
+    public void testInterpolation() throws IOException {
+        ShortBuffer buffer = ShortBuffer.allocate((INTERVALS + 1) * (INTERVALS + 1));
+        for (int row = 0; row <= INTERVALS; row++)
+            for (int column = 0; column <= INTERVALS; column++)
+                buffer.put(row * (INTERVALS + 1) + column, (short) column);
+        ElevationTile tile = new ElevationTile(buffer, INTERVALS);
+        assertEquals(600, tile.getElevationFor(0.5, 0.5).intValue());
+        assertEquals(600, tile.getElevationFor(0.5, 0.1).intValue());
+        assertEquals(300, tile.getElevationFor(0.25, 0.9).intValue());
+    }
+}
@@ -1,9 +1,18 @@
 package slash.navigation.hgt;
 
 import org.junit.Test;
+import slash.navigation.common.LongitudeAndLatitude;
 import slash.navigation.download.DownloadManager;
+import slash.navigation.elevation.ElevationCoverage;
 
+import java.util.ArrayList;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static slash.common.TestCase.assertNotEquals;
 
 public class HgtFilesTest {
     private HgtFiles files = new HgtFiles(null, new DownloadManager(null));
@@ -21,4 +30,42 @@ public class HgtFilesTest {
         assertEquals("N42E000.hgt", files.createFileKey(0.15052, 42.42091));
         assertEquals("N42W001.hgt", files.createFileKey(-0.55289, 42.55803));
     }
+
+    @Test
+    public void getTileIndex() {
+        assertEquals(HgtFiles.getTileIndex(0.1, 42.1), HgtFiles.getTileIndex(0.9, 42.9));
+        assertEquals(HgtFiles.getTileIndex(-0.1, 42.0), HgtFiles.getTileIndex(-0.9, 42.9));
+        assertEquals(HgtFiles.getTileIndex(-0.1, -42.1), HgtFiles.getTileIndex(-0.9, -42.9));
+
+        assertNotEquals(HgtFiles.getTileIndex(0.1, 42.0), HgtFiles.getTileIndex(-0.1, 42.0));
+        assertNotEquals(HgtFiles.getTileIndex(0.1, 0.1), HgtFiles.getTileIndex(0.1, -0.1));
+        assertNotEquals(HgtFiles.getTileIndex(0.1, 41.9), HgtFiles.getTileIndex(0.1, 42.0));
+        assertNotEquals(HgtFiles.getTileIndex(179.9, 0.1), HgtFiles.getTileIndex(-179.9, 0.1));
+    }
+
+    @Test
+    public void createFileKeysInTrackOrder() {
+        Set<String> keys = files.createFileKeys(asList(new LongitudeAndLatitude(11.2, 59.0),
+                new LongitudeAndLatitude(11.9, 59.9), new LongitudeAndLatitude(12.1, 60.2),
+                new LongitudeAndLatitude(11.5, 59.5), new LongitudeAndLatitude(-0.5, 42.5)));
+        assertEquals(asList("N59E011.hgt", "N60E012.hgt", "N42W001.hgt"), new ArrayList<>(keys));
+    }
+
+    @Test
+    public void addToCoverage() {
+        ElevationCoverage coverage = new ElevationCoverage();
+        assertTrue(HgtFiles.addToCoverage("N42E000.hgt", coverage));
+        assertTrue(HgtFiles.addToCoverage("n42w001.HGT", coverage));
+        assertTrue(HgtFiles.addToCoverage("S01W180.hgt", coverage));
+        assertFalse(HgtFiles.addToCoverage("N42E000.zip", coverage));
+        assertFalse(HgtFiles.addToCoverage("readme.txt", coverage));
+        assertEquals(3, coverage.getCellCount());
+
+        assertTrue(coverage.covers(0.15052, 42.42091));
+        assertTrue(coverage.covers(-0.55289, 42.55803));
+        assertTrue(coverage.covers(-179.5, -0.5));
+        assertFalse(coverage.covers(0.15052, 43.42091));
+        assertFalse(coverage.covers(1.15052, 42.42091));
+        assertFalse(coverage.covers(179.5, -0.5));
+    }
 }
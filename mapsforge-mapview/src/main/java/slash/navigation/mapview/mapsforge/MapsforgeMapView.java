@@ -253,6 +253,7 @@ public class MapsforgeMapView extends BaseMapView {
             }
 
             private void internalRemove(List<PairWithLayer> pairWithLayers) {
+                routeRenderer.cancelRoute(pairWithLayers);
                 // speed optimization for large numbers of pairWithLayers
                 if (pairs.size() == pairWithLayers.size())
                     pairs.clear();
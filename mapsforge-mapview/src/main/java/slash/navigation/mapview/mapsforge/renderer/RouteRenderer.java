@@ -22,7 +22,6 @@ package slash.navigation.mapview.mapsforge.renderer;
 import org.mapsforge.core.graphics.GraphicFactory;
 import org.mapsforge.core.graphics.Paint;
 import org.mapsforge.core.model.LatLong;
-import org.mapsforge.map.layer.Layer;
 import slash.navigation.common.DistanceAndTime;
 import slash.navigation.common.LongitudeAndLatitude;
 import slash.navigation.common.NavigationPosition;
@@ -36,13 +35,21 @@ import slash.navigation.mapview.mapsforge.updater.PairWithLayer;
 import slash.navigation.routing.DownloadFuture;
 import slash.navigation.routing.RoutingResult;
 import slash.navigation.routing.RoutingService;
+import slash.navigation.routing.TravelMode;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
 import java.util.prefs.Preferences;
 
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Runtime.getRuntime;
+import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
 import static java.lang.Thread.sleep;
+import static java.util.Collections.newSetFromMap;
+import static slash.common.helpers.ThreadHelper.createFixedThreadPool;
 import static slash.common.helpers.ThreadHelper.createSingleThreadExecutor;
 import static slash.common.io.Transfer.isEmpty;
 import static slash.navigation.mapview.MapViewConstants.ROUTE_LINE_WIDTH_PREFERENCE;
@@ -57,10 +64,16 @@ import static slash.navigation.routing.RoutingResult.Validity.*;
 
 public class RouteRenderer {
     private static final Preferences preferences = Preferences.userNodeForPackage(MapsforgeMapView.class);
+    private static final Logger log = Logger.getLogger(RouteRenderer.class.getName());
+    private static final int MAXIMUM_LEGS_PER_CHUNK = 25;
     private Paint ROUTE_NOT_VALID_PAINT, ROUTE_DOWNLOADING_PAINT;
 
     private final Object notificationMutex = new Object();
     private boolean drawingRoute, drawingBeeline;
+    private final Map<PairWithLayer, Future<List<RoutingResult>>> legFutures = new IdentityHashMap<>();
+    // the legs which are drawn outside of the lock of the leg futures and the ones cancelled meanwhile
+    private final Set<PairWithLayer> drawingLegs = newSetFromMap(new IdentityHashMap<PairWithLayer, Boolean>());
+    private final Set<PairWithLayer> cancelledLegs = newSetFromMap(new IdentityHashMap<PairWithLayer, Boolean>());
 
     private MapsforgeMapView mapView;
     private MapViewCallbackOpenSource mapViewCallback;
@@ -90,9 +103,12 @@ public class RouteRenderer {
         synchronized (notificationMutex) {
             this.drawingRoute = false;
         }
+        cancelAllLegs();
+        legExecutor.shutdownNow();
     }
 
     private final ExecutorService executor = createSingleThreadExecutor("RouteRenderer");
+    private final ExecutorService legExecutor = createFixedThreadPool("RouteRendererLeg", getRuntime().availableProcessors());
 
     public void renderRoute(final List<PairWithLayer> pairWithLayers, final Runnable invokeAfterRenderingRunnable) {
         executor.execute(() -> {
@@ -225,20 +241,204 @@ public class RouteRenderer {
         RoutingService routingService = mapViewCallback.getRoutingService();
 
         DownloadFuture future = routingService.isDownload() ? routingService.downloadRoutingDataFor(asLongitudeAndLatitude(pairWithLayers)) : null;
+        if (routingService.isSupportParallelRouting())
+            pairWithLayers = drawRouteInParallel(routingService, future, pairWithLayers, paint);
+
         for (PairWithLayer pairWithLayer : pairWithLayers) {
             if (!pairWithLayer.hasCoordinates())
                 continue;
 
             // first calculate route, then remove beeline layer then add polyline layer from routing
-            Layer layer = pairWithLayer.getLayer();
-            IntermediateRoute intermediateRoute = calculateRoute(routingService, future, pairWithLayer);
+            RoutingResult result = calculateResult(routingService, future, pairWithLayer);
+            drawLeg(pairWithLayer, result, paint);
+        }
+    }
+
+    private void drawLeg(PairWithLayer pairWithLayer, RoutingResult result, Paint paint) {
+        IntermediateRoute intermediateRoute = calculateRoute(pairWithLayer, result);
 
-            mapView.removeLayer(layer);
+        mapView.removeLayer(pairWithLayer.getLayer());
+        pairWithLayer.setLayer(null);
+
+        Polyline polyline = new Polyline(intermediateRoute.getLatLongs(), intermediateRoute.isValid() ? paint : ROUTE_NOT_VALID_PAINT, mapView.getTileSize());
+        pairWithLayer.setLayer(polyline);
+        mapView.addLayer(polyline);
+    }
+
+    /**
+     * Splits the legs into chunks of connected legs which are routed via their positions.
+     */
+    private List<List<PairWithLayer>> createChunks(List<PairWithLayer> pairWithLayers) {
+        int legCount = 0;
+        for (PairWithLayer pairWithLayer : pairWithLayers) {
+            if (pairWithLayer.hasCoordinates())
+                legCount++;
+        }
+        // keep all threads busy and draw the first legs early
+        int threadCount = getRuntime().availableProcessors();
+        int chunkSize = max(1, min(MAXIMUM_LEGS_PER_CHUNK, (legCount + threadCount - 1) / threadCount));
+
+        List<List<PairWithLayer>> result = new ArrayList<>();
+        List<PairWithLayer> chunk = new ArrayList<>();
+        for (PairWithLayer pairWithLayer : pairWithLayers) {
+            if (!pairWithLayer.hasCoordinates())
+                continue;
+
+            if (!chunk.isEmpty() && (chunk.size() == chunkSize || chunk.get(chunk.size() - 1).getSecond() != pairWithLayer.getFirst())) {
+                result.add(chunk);
+                chunk = new ArrayList<>();
+            }
+            chunk.add(pairWithLayer);
+        }
+        if (!chunk.isEmpty())
+            result.add(chunk);
+        return result;
+    }
+
+    private List<NavigationPosition> asPositions(List<PairWithLayer> chunk) {
+        List<NavigationPosition> result = new ArrayList<>();
+        result.add(chunk.get(0).getFirst());
+        for (PairWithLayer pairWithLayer : chunk)
+            result.add(pairWithLayer.getSecond());
+        return result;
+    }
+
+    /**
+     * Routes chunks of legs on a pool of threads and draws the legs of a chunk as soon as it is routed.
+     *
+     * @return the legs whose points were not found and which are routed one after another
+     * to allow the {@link DownloadFuture} to switch to the next download
+     */
+    private List<PairWithLayer> drawRouteInParallel(final RoutingService routingService, DownloadFuture future,
+                                                    List<PairWithLayer> pairWithLayers, Paint paint) {
+        waitForDownload(future);
+        final TravelMode travelMode = mapViewCallback.getTravelMode();
+        long start = currentTimeMillis();
+
+        List<List<PairWithLayer>> chunks = createChunks(pairWithLayers);
+        CompletionService<List<RoutingResult>> completionService = new ExecutorCompletionService<>(legExecutor);
+        Map<Future<List<RoutingResult>>, List<PairWithLayer>> futureToChunk = new HashMap<>();
+        int legCount = 0;
+        synchronized (legFutures) {
+            for (final List<PairWithLayer> chunk : chunks) {
+                Future<List<RoutingResult>> chunkFuture = completionService.submit(new Callable<List<RoutingResult>>() {
+                    public List<RoutingResult> call() {
+                        return routingService.getRouteVia(asPositions(chunk), travelMode);
+                    }
+                });
+                futureToChunk.put(chunkFuture, chunk);
+                for (PairWithLayer pairWithLayer : chunk)
+                    legFutures.put(pairWithLayer, chunkFuture);
+                legCount += chunk.size();
+            }
+        }
+
+        List<PairWithLayer> pointNotFound = new ArrayList<>();
+        try {
+            for (int i = 0, c = futureToChunk.size(); i < c; i++) {
+                synchronized (notificationMutex) {
+                    if (!drawingRoute)
+                        break;
+                }
+
+                Future<List<RoutingResult>> chunkFuture = completionService.take();
+                List<PairWithLayer> chunk = futureToChunk.get(chunkFuture);
+                List<RoutingResult> results;
+                try {
+                    results = chunkFuture.get();
+                } catch (CancellationException e) {
+                    continue;
+                }
+
+                List<PairWithLayer> legsToDraw = new ArrayList<>();
+                List<RoutingResult> resultsToDraw = new ArrayList<>();
+                synchronized (legFutures) {
+                    for (int j = 0; j < chunk.size(); j++) {
+                        PairWithLayer pairWithLayer = chunk.get(j);
+                        // the positions of the leg changed while it was routed
+                        if (legFutures.get(pairWithLayer) != chunkFuture)
+                            continue;
+                        legFutures.remove(pairWithLayer);
+
+                        RoutingResult result = results.get(j);
+                        if (result.getValidity().equals(PointNotFound) && future != null && future.hasNextDownload()) {
+                            pointNotFound.add(pairWithLayer);
+                            continue;
+                        }
+                        legsToDraw.add(pairWithLayer);
+                        resultsToDraw.add(result);
+                        drawingLegs.add(pairWithLayer);
+                    }
+                }
+                drawLegs(legsToDraw, resultsToDraw, paint);
+            }
+        } catch (InterruptedException e) {
+            // intentionally left empty
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } finally {
+            cancelLegs(futureToChunk.keySet());
+
+            long end = currentTimeMillis();
+            log.info(format("Routing %d legs in %d chunks on %d threads took %d milliseconds", legCount, futureToChunk.size(),
+                    min(futureToChunk.size(), getRuntime().availableProcessors()), end - start));
+        }
+        return pointNotFound;
+    }
+
+    /**
+     * Draws the legs without holding the lock of the leg futures, which {@link #cancelRoute} needs
+     * on the event dispatch thread, and removes the legs that were cancelled while being drawn.
+     */
+    private void drawLegs(List<PairWithLayer> pairWithLayers, List<RoutingResult> results, Paint paint) {
+        List<PairWithLayer> cancelled = new ArrayList<>();
+        try {
+            for (int i = 0; i < pairWithLayers.size(); i++)
+                drawLeg(pairWithLayers.get(i), results.get(i), paint);
+        } finally {
+            synchronized (legFutures) {
+                for (PairWithLayer pairWithLayer : pairWithLayers) {
+                    drawingLegs.remove(pairWithLayer);
+                    if (cancelledLegs.remove(pairWithLayer))
+                        cancelled.add(pairWithLayer);
+                }
+            }
+        }
+        for (PairWithLayer pairWithLayer : cancelled) {
+            mapView.removeLayer(pairWithLayer.getLayer());
             pairWithLayer.setLayer(null);
+        }
+    }
+
+    private void cancelLegs(Collection<Future<List<RoutingResult>>> futures) {
+        synchronized (legFutures) {
+            for (Future<List<RoutingResult>> future : futures) {
+                future.cancel(false);
+            }
+            legFutures.values().removeAll(futures);
+        }
+    }
+
+    /**
+     * Cancels the routing of the given legs since their positions changed.
+     */
+    public void cancelRoute(List<PairWithLayer> pairWithLayers) {
+        synchronized (legFutures) {
+            for (PairWithLayer pairWithLayer : pairWithLayers) {
+                if (drawingLegs.contains(pairWithLayer))
+                    cancelledLegs.add(pairWithLayer);
+                Future<List<RoutingResult>> future = legFutures.remove(pairWithLayer);
+                // the other legs of the chunk are still drawn
+                if (future != null && !legFutures.containsValue(future))
+                    future.cancel(false);
+            }
+        }
+    }
 
-            Polyline polyline = new Polyline(intermediateRoute.getLatLongs(), intermediateRoute.isValid() ? paint : ROUTE_NOT_VALID_PAINT, mapView.getTileSize());
-            pairWithLayer.setLayer(polyline);
-            mapView.addLayer(polyline);
+    private void cancelAllLegs() {
+        synchronized (legFutures) {
+            cancelLegs(new ArrayList<>(legFutures.values()));
         }
     }
 
@@ -246,11 +446,10 @@ public class RouteRenderer {
         return preferences.getInt(ROUTE_LINE_WIDTH_PREFERENCE, 4);
     }
 
-    private IntermediateRoute calculateRoute(RoutingService routingService, DownloadFuture future, PairWithLayer pairWithLayer) {
+    private IntermediateRoute calculateRoute(PairWithLayer pairWithLayer, RoutingResult result) {
         List<LatLong> latLongs = new ArrayList<>();
         latLongs.add(mapView.asLatLong(pairWithLayer.getFirst()));
 
-        RoutingResult result = calculateResult(routingService, future, pairWithLayer);
         if (result.getValidity().equals(Valid)) {
             // TODO could extract elevation from RoutingResult and set it on first/second if there is no elevation
             latLongs.addAll(mapView.asLatLong(result.getPositions()));
@@ -55,6 +55,7 @@ import static slash.common.type.CompactCalendar.fromCalendar;
 import static slash.navigation.base.NavigationFormatConverter.asFormat;
 import static slash.navigation.base.NavigationFormatConverter.convertRoute;
 import static slash.navigation.base.RouteComments.*;
+import static slash.navigation.rest.HttpCache.getDefaultCache;
 import static slash.navigation.url.GoogleMapsUrlFormat.isGoogleMapsLinkUrl;
 import static slash.navigation.url.GoogleMapsUrlFormat.isGoogleMapsProfileUrl;
 import static slash.navigation.url.KurvigerUrlFormat.isKurvigerUrl;
@@ -332,7 +333,14 @@ public class NavigationFormatParser {
         // make sure HTTPS requests use HTTP Client with it's SSL tweaks
         if (urlString.contains("https://")) {
             Get get = new Get(urlString);
-            return get.executeAsStream();
+            get.setCache(getDefaultCache());
+            InputStream inputStream = get.executeAsStream();
+            if (!get.isSuccessful() || inputStream == null) {
+                // the connection is returned to the pool only when the body is closed or the request released
+                get.release();
+                throw new IOException(format("Cannot read %s: status code %d", urlString, get.getStatusCode()));
+            }
+            return inputStream;
         }
         return url.openStream();
     }
@@ -19,9 +19,28 @@
 */
 package slash.navigation.rest;
 
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
 
-import static org.apache.http.HttpHeaders.RANGE;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.logging.Logger;
+
+import static java.lang.String.format;
+import static org.apache.http.HttpHeaders.*;
+import static org.apache.http.HttpStatus.SC_NOT_MODIFIED;
+import static org.apache.http.HttpStatus.SC_OK;
+import static slash.common.helpers.ExceptionHelper.getLocalizedMessage;
+import static slash.navigation.rest.RFC2616.formatDate;
+import static slash.navigation.rest.RFC2616.parseDate;
 
 /**
  * Wrapper to initiate an HTTP GET Request.
@@ -30,6 +49,9 @@ import static org.apache.http.HttpHeaders.RANGE;
  */
 
 public class Get extends ReadRequest {
+    private static final Logger log = Logger.getLogger(Get.class.getName());
+    private HttpCache cache;
+
     public Get(String url) {
         super(new HttpGet(url));
     }
@@ -40,4 +62,113 @@ public class Get extends ReadRequest {
         // Apache accepts just bytes=1234-1235 while the spec says bytes 1234-1235/1236
         setHeader(RANGE, "bytes=" + startIndex + "-" + (endIndex != null ? endIndex : ""));
     }
+
+    public void setIfRange(String eTag) {
+        // the server answers with the complete resource if it no longer matches the ETag
+        setHeader(IF_RANGE, eTag);
+    }
+
+    public void setCache(HttpCache cache) {
+        this.cache = cache;
+    }
+
+    private boolean isCacheable() {
+        // conditional and partial requests are answered by the caller
+        HttpRequestBase method = getMethod();
+        return cache != null && method.getFirstHeader(RANGE) == null &&
+                method.getFirstHeader(IF_NONE_MATCH) == null && method.getFirstHeader(IF_MODIFIED_SINCE) == null;
+    }
+
+    protected HttpResponse execute() throws IOException {
+        if (!isCacheable())
+            return super.execute();
+
+        String url = getMethod().getURI().toString();
+        HttpCache.Entry entry = cache.get(url);
+        if (entry != null) {
+            if (entry.getETag() != null)
+                setIfNoneMatch(entry.getETag());
+            if (entry.getLastModified() != null)
+                setIfModifiedSince(entry.getLastModified());
+        }
+
+        HttpResponse response = super.execute();
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode == SC_NOT_MODIFIED && entry != null) {
+            close(response);
+            return createResponse(response, entry);
+        }
+
+        Header eTag = response.getFirstHeader(ETAG);
+        Header lastModified = response.getFirstHeader(LAST_MODIFIED);
+        HttpEntity entity = response.getEntity();
+        // bodies of unknown length are cached if they turn out to be small enough
+        if (statusCode == SC_OK && entity != null && (eTag != null || lastModified != null) &&
+                entity.getContentLength() <= cache.getMaximumByteCount()) {
+            try {
+                entry = cache.put(url, eTag != null ? eTag.getValue() : null, parseLastModified(lastModified), entity.getContent());
+            } catch (IOException e) {
+                // the response is requested again and served without the cache
+                log.warning(format("Cannot cache %s: %s", url, getLocalizedMessage(e)));
+                entry = null;
+            } finally {
+                close(response);
+            }
+            return createResponse(response, entry);
+        }
+        return response;
+    }
+
+    private Long parseLastModified(Header lastModified) {
+        if (lastModified == null)
+            return null;
+        try {
+            return parseDate(lastModified.getValue()).getTimeInMillis();
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private void close(HttpResponse response) throws IOException {
+        if (response instanceof Closeable)
+            ((Closeable) response).close();
+    }
+
+    private static class CachedResponse extends BasicHttpResponse implements Closeable {
+        private final InputStream body;
+
+        private CachedResponse(ProtocolVersion protocolVersion, InputStream body) {
+            super(protocolVersion, SC_OK, "OK");
+            this.body = body;
+        }
+
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+
+    private HttpResponse createResponse(HttpResponse response, HttpCache.Entry entry) throws IOException {
+        InputStream body = entry != null ? cache.open(entry) : null;
+        if (body == null) {
+            // the body is larger than the cache or has been evicted meanwhile
+            getMethod().removeHeaders(IF_NONE_MATCH);
+            getMethod().removeHeaders(IF_MODIFIED_SINCE);
+            return super.execute();
+        }
+
+        CachedResponse result = new CachedResponse(response.getProtocolVersion(), body);
+        for (Header header : response.getAllHeaders()) {
+            String name = header.getName();
+            if (!name.equalsIgnoreCase(CONTENT_LENGTH) && !name.equalsIgnoreCase(CONTENT_ENCODING) && !name.equalsIgnoreCase(TRANSFER_ENCODING))
+                result.addHeader(header);
+        }
+        if (entry.getETag() != null && result.getFirstHeader(ETAG) == null)
+            result.setHeader(ETAG, entry.getETag());
+        if (entry.getLastModified() != null && result.getFirstHeader(LAST_MODIFIED) == null)
+            result.setHeader(LAST_MODIFIED, formatDate(entry.getLastModified()));
+        long contentLength = entry.getBody().length();
+        result.setHeader(CONTENT_LENGTH, Long.toString(contentLength));
+        result.setEntity(new InputStreamEntity(body, contentLength));
+        return result;
+    }
 }
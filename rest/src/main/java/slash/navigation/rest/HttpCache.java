@@ -0,0 +1,298 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.rest;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static java.io.File.createTempFile;
+import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static slash.common.helpers.ExceptionHelper.getLocalizedMessage;
+import static slash.common.io.Files.createMessageDigest;
+import static slash.common.io.Files.generateChecksum;
+import static slash.common.io.InputOutput.copyAndClose;
+
+/**
+ * An on-disk cache for the bodies of HTTP responses with their validators. A {@link Get}
+ * with a cache sends conditional requests and serves the body from disk when the server
+ * answers with 304 Not Modified. The least recently used entries are evicted once the
+ * cache exceeds its maximum size, except for the bodies that are currently read.
+ *
+ * @author Christian Pesch
+ */
+
+public class HttpCache {
+    private static final Logger log = Logger.getLogger(HttpCache.class.getName());
+    private static final String BODY_EXTENSION = ".body";
+    private static final String META_EXTENSION = ".meta";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static HttpCache defaultCache;
+
+    private final File directory;
+    private final long maximumByteCount;
+    private final Map<File, Integer> bodyToReaderCount = new HashMap<>();
+
+    public HttpCache(File directory, long maximumByteCount) {
+        this.directory = directory;
+        this.maximumByteCount = maximumByteCount;
+    }
+
+    public static synchronized HttpCache getDefaultCache() {
+        return defaultCache;
+    }
+
+    public static synchronized void setDefaultCache(HttpCache defaultCache) {
+        HttpCache.defaultCache = defaultCache;
+    }
+
+    public long getMaximumByteCount() {
+        return maximumByteCount;
+    }
+
+    public static class Entry {
+        private final String url;
+        private final String eTag;
+        private final Long lastModified;
+        private final File body;
+
+        private Entry(String url, String eTag, Long lastModified, File body) {
+            this.url = url;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public Long getLastModified() {
+            return lastModified;
+        }
+
+        public File getBody() {
+            return body;
+        }
+    }
+
+    private String createKey(String url) throws IOException {
+        MessageDigest messageDigest = createMessageDigest();
+        messageDigest.update(url.getBytes(StandardCharsets.UTF_8));
+        return generateChecksum(messageDigest);
+    }
+
+    private File getMetaFile(String key) {
+        return new File(directory, key + META_EXTENSION);
+    }
+
+    private File getBodyFile(String key) {
+        return new File(directory, key + BODY_EXTENSION);
+    }
+
+    public synchronized Entry get(String url) {
+        try {
+            String key = createKey(url);
+            File meta = getMetaFile(key);
+            File body = getBodyFile(key);
+            if (!meta.exists() || !body.exists())
+                return null;
+
+            try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(meta)))) {
+                String cachedUrl = inputStream.readUTF();
+                // a different url with the same hash
+                if (!cachedUrl.equals(url))
+                    return null;
+                String eTag = inputStream.readBoolean() ? inputStream.readUTF() : null;
+                Long lastModified = inputStream.readBoolean() ? inputStream.readLong() : null;
+                return new Entry(url, eTag, lastModified, body);
+            }
+        } catch (IOException e) {
+            log.warning(format("Cannot read %s from HTTP cache %s: %s", url, directory, getLocalizedMessage(e)));
+            return null;
+        }
+    }
+
+    /**
+     * Marks the entry as recently used.
+     */
+    public synchronized void touch(Entry entry) {
+        if (!entry.getBody().setLastModified(currentTimeMillis()))
+            log.fine(format("Cannot touch %s in HTTP cache %s", entry.getBody(), directory));
+    }
+
+    /**
+     * Marks the entry as recently used and opens its body. The body is not evicted
+     * until the returned stream is closed.
+     *
+     * @param entry the entry to read the body from
+     * @return the body or null if it has been evicted in the meantime
+     */
+    public synchronized InputStream open(Entry entry) {
+        final File body = entry.getBody();
+        InputStream inputStream;
+        try {
+            inputStream = new FileInputStream(body);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        touch(entry);
+
+        Integer readerCount = bodyToReaderCount.get(body);
+        bodyToReaderCount.put(body, readerCount != null ? readerCount + 1 : 1);
+        return new FilterInputStream(inputStream) {
+            private boolean closed;
+
+            public void close() throws IOException {
+                super.close();
+                if (!closed) {
+                    closed = true;
+                    closed(body);
+                }
+            }
+        };
+    }
+
+    private synchronized void closed(File body) {
+        Integer readerCount = bodyToReaderCount.get(body);
+        if (readerCount == null || readerCount <= 1)
+            bodyToReaderCount.remove(body);
+        else
+            bodyToReaderCount.put(body, readerCount - 1);
+    }
+
+    /**
+     * Stores the body and the validators of a response. The body is written without
+     * blocking the other users of the cache.
+     *
+     * @param url the url of the request
+     * @param eTag the ETag of the response
+     * @param lastModified the Last-Modified timestamp of the response
+     * @param inputStream the body of the response, is closed afterwards
+     * @return the stored entry or null if the body is larger than the cache or the
+     * previous body of the url is still read
+     * @throws IOException if the body cannot be written
+     */
+    public Entry put(String url, String eTag, Long lastModified, InputStream inputStream) throws IOException {
+        synchronized (this) {
+            if (!directory.exists() && !directory.mkdirs())
+                throw new IOException(format("Cannot create HTTP cache directory %s", directory));
+        }
+
+        String key = createKey(url);
+        File temp = createTempFile(key + "-", TEMP_EXTENSION, directory);
+        try {
+            copyAndClose(inputStream, new FileOutputStream(temp));
+            if (temp.length() > maximumByteCount) {
+                log.info(format("Not caching %s with %d bytes in HTTP cache %s", url, temp.length(), directory));
+                return null;
+            }
+            return store(key, url, eTag, lastModified, temp);
+        } finally {
+            delete(temp);
+        }
+    }
+
+    private synchronized Entry store(String key, String url, String eTag, Long lastModified, File temp) throws IOException {
+        File meta = getMetaFile(key);
+        File body = getBodyFile(key);
+        // replacing a body that is open fails on Windows, keep the previous body and its validators
+        if (bodyToReaderCount.containsKey(body)) {
+            log.info(format("Not caching %s in HTTP cache %s since its previous body is read", url, directory));
+            return null;
+        }
+        java.nio.file.Files.move(temp.toPath(), body.toPath(), REPLACE_EXISTING);
+
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(meta)))) {
+            outputStream.writeUTF(url);
+            outputStream.writeBoolean(eTag != null);
+            if (eTag != null)
+                outputStream.writeUTF(eTag);
+            outputStream.writeBoolean(lastModified != null);
+            if (lastModified != null)
+                outputStream.writeLong(lastModified);
+        }
+
+        evict(body);
+        return new Entry(url, eTag, lastModified, body);
+    }
+
+    public synchronized void remove(String url) throws IOException {
+        String key = createKey(url);
+        delete(getBodyFile(key));
+        delete(getMetaFile(key));
+    }
+
+    private void delete(File file) {
+        if (file.exists() && !file.delete())
+            log.warning(format("Cannot delete %s from HTTP cache %s", file, directory));
+    }
+
+    private void evict(File stored) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(BODY_EXTENSION);
+            }
+        });
+        if (files == null)
+            return;
+
+        long byteCount = 0;
+        List<File> bodies = new ArrayList<>();
+        for (File file : files) {
+            byteCount += file.length();
+            bodies.add(file);
+        }
+        if (byteCount <= maximumByteCount)
+            return;
+
+        Collections.sort(bodies, new Comparator<File>() {
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        for (File body : bodies) {
+            if (byteCount <= maximumByteCount)
+                break;
+            // the body just stored and bodies that are currently read are kept
+            if (body.equals(stored) || bodyToReaderCount.containsKey(body))
+                continue;
+            byteCount -= body.length();
+            String key = body.getName().substring(0, body.getName().length() - BODY_EXTENSION.length());
+            delete(body);
+            delete(getMetaFile(key));
+        }
+        log.info(format("Evicted HTTP cache %s to %d bytes", directory, byteCount));
+    }
+}
@@ -31,14 +31,12 @@ import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.protocol.HttpClientContext;
-import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.message.BasicHttpResponse;
-import slash.navigation.rest.ssl.SSLConnectionManagerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -56,6 +54,7 @@ import static org.apache.http.HttpStatus.*;
 import static org.apache.http.HttpVersion.HTTP_1_1;
 import static slash.common.helpers.ExceptionHelper.getLocalizedMessage;
 import static slash.common.io.InputOutput.readBytes;
+import static slash.navigation.rest.SharedConnectionManager.getConnectionManager;
 
 /**
  * Wrapper for a simple HTTP Request.
@@ -79,13 +78,13 @@ public abstract class HttpRequest {
         requestConfigBuilder = RequestConfig.custom();
         requestConfigBuilder.setConnectTimeout(15 * 1000);
         requestConfigBuilder.setSocketTimeout(90 * 1000);
-        clientBuilder.setRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
-        try {
-            HttpClientConnectionManager connectionManager = new SSLConnectionManagerFactory().createConnectionManager();
-            clientBuilder.setConnectionManager(connectionManager);
-        } catch (Exception e) {
-            log.severe("Cannot create SSL connection manager that supports letsencrypt root certificate: " + getLocalizedMessage(e));
-        }
+        // fail instead of waiting forever if the shared pool has no connection to lease
+        requestConfigBuilder.setConnectionRequestTimeout(60 * 1000);
+        // a pooled connection may have been closed by the server, retry idempotent requests once
+        clientBuilder.setRetryHandler(new DefaultHttpRequestRetryHandler(1, false));
+        clientBuilder.setConnectionManager(getConnectionManager());
+        // the clients are built per request and must not shut down the shared connections
+        clientBuilder.setConnectionManagerShared(true);
         setUserAgent("RouteConverter REST Client/" + System.getProperty("rest", "2.27"));
         this.method = method;
     }
@@ -0,0 +1,84 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.rest;
+
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import slash.navigation.rest.ssl.SSLConnectionManagerFactory;
+
+import java.util.logging.Logger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static slash.common.helpers.ExceptionHelper.getLocalizedMessage;
+
+/**
+ * Holds the {@link HttpClientConnectionManager} that is shared by all {@link HttpRequest}s
+ * to reuse connections instead of paying the TCP and TLS setup for every request.
+ *
+ * @author Christian Pesch
+ */
+
+class SharedConnectionManager {
+    private static final Logger log = Logger.getLogger(SharedConnectionManager.class.getName());
+    private static final int MAXIMUM_CONNECTION_COUNT = 64;
+    private static final int MAXIMUM_CONNECTION_PER_ROUTE_COUNT = 32;
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2 * 1000;
+    private static final int EVICTION_INTERVAL_SECONDS = 10;
+    private static final int MAXIMUM_IDLE_SECONDS = 30;
+
+    private static PoolingHttpClientConnectionManager connectionManager;
+
+    static synchronized HttpClientConnectionManager getConnectionManager() {
+        if (connectionManager == null) {
+            connectionManager = createConnectionManager();
+            startEviction(connectionManager);
+        }
+        return connectionManager;
+    }
+
+    static PoolingHttpClientConnectionManager createConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager;
+        try {
+            connectionManager = new SSLConnectionManagerFactory().createConnectionManager();
+        } catch (Exception e) {
+            log.severe("Cannot create SSL connection manager that supports letsencrypt root certificate: " + getLocalizedMessage(e));
+            connectionManager = new PoolingHttpClientConnectionManager();
+        }
+        connectionManager.setMaxTotal(MAXIMUM_CONNECTION_COUNT);
+        connectionManager.setDefaultMaxPerRoute(MAXIMUM_CONNECTION_PER_ROUTE_COUNT);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+        return connectionManager;
+    }
+
+    private static void startEviction(final PoolingHttpClientConnectionManager connectionManager) {
+        final IdleConnectionEvictor evictor = new IdleConnectionEvictor(connectionManager,
+                EVICTION_INTERVAL_SECONDS, SECONDS, MAXIMUM_IDLE_SECONDS, SECONDS);
+        evictor.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                evictor.shutdown();
+                connectionManager.shutdown();
+            }
+        }, "SharedConnectionManagerShutdown"));
+    }
+}
@@ -46,7 +46,7 @@ import static slash.common.io.InputOutput.closeQuietly;
  */
 
 public class SSLConnectionManagerFactory {
-    public HttpClientConnectionManager createConnectionManager() throws CertificateException, NoSuchAlgorithmException, KeyStoreException, IOException, KeyManagementException {
+    public PoolingHttpClientConnectionManager createConnectionManager() throws CertificateException, NoSuchAlgorithmException, KeyStoreException, IOException, KeyManagementException {
         SSLContext sslContext = createSSLContext();
         SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(sslContext);
         return new PoolingHttpClientConnectionManager(
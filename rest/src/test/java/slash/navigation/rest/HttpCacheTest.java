@@ -0,0 +1,260 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.rest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.io.File.createTempFile;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.*;
+import static slash.common.io.Files.recursiveDelete;
+import static slash.common.io.InputOutput.readBytes;
+
+public class HttpCacheTest {
+    private static final String BODY = "<catalog>content</catalog>";
+    private static final String ETAG = "\"4711\"";
+
+    private File directory;
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger bodies = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = createTempFile("httpcache", "");
+        assertTrue(directory.delete());
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+
+                bodies.incrementAndGet();
+                byte[] body = BODY.getBytes();
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(body);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop(0);
+        if (directory.exists())
+            recursiveDelete(directory);
+    }
+
+    private String getUrl(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        HttpCache cache = new HttpCache(directory, 1024);
+        assertNull(cache.get("http://host/a"));
+        cache.put("http://host/a", ETAG, 1000L, new ByteArrayInputStream(BODY.getBytes()));
+
+        HttpCache.Entry entry = cache.get("http://host/a");
+        assertEquals(ETAG, entry.getETag());
+        assertEquals(1000L, entry.getLastModified().longValue());
+        assertEquals(BODY.length(), entry.getBody().length());
+        assertNull(cache.get("http://host/b"));
+
+        cache.remove("http://host/a");
+        assertNull(cache.get("http://host/a"));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws IOException {
+        HttpCache cache = new HttpCache(directory, 2 * BODY.length());
+        cache.put("http://host/a", ETAG, null, new ByteArrayInputStream(BODY.getBytes()));
+        cache.put("http://host/b", ETAG, null, new ByteArrayInputStream(BODY.getBytes()));
+        assertTrue(cache.get("http://host/a").getBody().setLastModified(System.currentTimeMillis() - 60 * 1000));
+        cache.touch(cache.get("http://host/a"));
+        assertTrue(cache.get("http://host/b").getBody().setLastModified(System.currentTimeMillis() - 120 * 1000));
+
+        cache.put("http://host/c", ETAG, null, new ByteArrayInputStream(BODY.getBytes()));
+        assertNotNull(cache.get("http://host/a"));
+        assertNull(cache.get("http://host/b"));
+        assertNotNull(cache.get("http://host/c"));
+    }
+
+    @Test
+    public void testDoesNotCacheBodiesLargerThanCache() throws IOException {
+        HttpCache cache = new HttpCache(directory, BODY.length() - 1);
+        assertNull(cache.put("http://host/a", ETAG, null, new ByteArrayInputStream(BODY.getBytes())));
+        assertNull(cache.get("http://host/a"));
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void testKeepsBodiesThatAreRead() throws IOException {
+        HttpCache cache = new HttpCache(directory, 2 * BODY.length());
+        cache.put("http://host/a", ETAG, null, new ByteArrayInputStream(BODY.getBytes()));
+        InputStream inputStream = cache.open(cache.get("http://host/a"));
+        assertTrue(cache.get("http://host/a").getBody().setLastModified(System.currentTimeMillis() - 60 * 1000));
+
+        cache.put("http://host/b", ETAG, null, new ByteArrayInputStream(BODY.getBytes()));
+        cache.put("http://host/c", ETAG, null, new ByteArrayInputStream(BODY.getBytes()));
+        assertNotNull(cache.get("http://host/a"));
+        assertNull(cache.get("http://host/b"));
+        assertEquals(BODY, new String(readBytes(inputStream)));
+
+        cache.put("http://host/d", ETAG, null, new ByteArrayInputStream(BODY.getBytes()));
+        assertNull(cache.get("http://host/a"));
+        assertNotNull(cache.get("http://host/c"));
+        assertNotNull(cache.get("http://host/d"));
+    }
+
+    @Test
+    public void testDoesNotReplaceBodiesThatAreRead() throws IOException {
+        HttpCache cache = new HttpCache(directory, 1024);
+        cache.put("http://host/a", ETAG, null, new ByteArrayInputStream(BODY.getBytes()));
+        InputStream inputStream = cache.open(cache.get("http://host/a"));
+
+        assertNull(cache.put("http://host/a", "\"4712\"", null, new ByteArrayInputStream("changed".getBytes())));
+        assertEquals(ETAG, cache.get("http://host/a").getETag());
+        assertEquals(BODY, new String(readBytes(inputStream)));
+
+        assertNotNull(cache.put("http://host/a", "\"4712\"", null, new ByteArrayInputStream("changed".getBytes())));
+        assertEquals("\"4712\"", cache.get("http://host/a").getETag());
+        assertEquals(2, directory.list().length);
+    }
+
+    @Test
+    public void testOpenEvictedBody() throws IOException {
+        HttpCache cache = new HttpCache(directory, 1024);
+        cache.put("http://host/a", ETAG, null, new ByteArrayInputStream(BODY.getBytes()));
+        HttpCache.Entry entry = cache.get("http://host/a");
+        cache.remove("http://host/a");
+        assertNull(cache.open(entry));
+    }
+
+    @Test
+    public void testPutDoesNotBlockCache() throws Exception {
+        final HttpCache cache = new HttpCache(directory, 1024);
+        cache.put("http://host/a", ETAG, null, new ByteArrayInputStream(BODY.getBytes()));
+
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    cache.put("http://host/slow", ETAG, null, new ByteArrayInputStream(BODY.getBytes()) {
+                        public synchronized int read(byte[] b, int off, int len) {
+                            reading.countDown();
+                            try {
+                                proceed.await();
+                            } catch (InterruptedException e) {
+                                throw new IllegalStateException(e);
+                            }
+                            return super.read(b, off, len);
+                        }
+                    });
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        thread.start();
+        assertTrue(reading.await(5, SECONDS));
+
+        // while the slow body is transferred
+        assertNotNull(cache.get("http://host/a"));
+        InputStream inputStream = cache.open(cache.get("http://host/a"));
+        assertEquals(BODY, new String(readBytes(inputStream)));
+        assertNull(cache.get("http://host/slow"));
+
+        proceed.countDown();
+        thread.join();
+        assertNotNull(cache.get("http://host/slow"));
+    }
+
+    @Test
+    public void testServesLargeResponseWithoutCaching() throws IOException {
+        HttpCache cache = new HttpCache(directory, BODY.length() - 1);
+        for (int i = 0; i < 2; i++) {
+            Get get = new Get(getUrl("/catalog"));
+            get.setCache(cache);
+            assertEquals(BODY, get.executeAsString());
+        }
+        assertEquals(2, bodies.get());
+        assertNull(cache.get(getUrl("/catalog")));
+    }
+
+    @Test
+    public void testServesResponseIfCacheFails() throws IOException {
+        // the cache directory cannot be created where a file exists
+        assertTrue(directory.createNewFile());
+        HttpCache cache = new HttpCache(directory, 1024);
+        Get get = new Get(getUrl("/catalog"));
+        get.setCache(cache);
+        assertEquals(BODY, get.executeAsString());
+        assertTrue(get.isSuccessful());
+        assertTrue(directory.delete());
+    }
+
+    @Test
+    public void testServesNotModifiedFromDisk() throws IOException {
+        HttpCache cache = new HttpCache(directory, 1024);
+        for (int i = 0; i < 3; i++) {
+            Get get = new Get(getUrl("/catalog"));
+            get.setCache(cache);
+            assertEquals(BODY, get.executeAsString());
+            assertTrue(get.isSuccessful());
+            assertEquals(ETAG, get.getETag());
+        }
+        assertEquals(3, requests.get());
+        assertEquals(1, bodies.get());
+    }
+
+    @Test
+    public void testWithoutCache() throws IOException {
+        for (int i = 0; i < 2; i++) {
+            Get get = new Get(getUrl("/catalog"));
+            assertEquals(BODY, get.executeAsString());
+        }
+        assertEquals(2, bodies.get());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.rest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static slash.navigation.rest.SharedConnectionManager.createConnectionManager;
+import static slash.navigation.rest.SharedConnectionManager.getConnectionManager;
+
+public class SharedConnectionManagerTest {
+    private HttpServer server;
+    private final Set<InetSocketAddress> clients = Collections.synchronizedSet(new HashSet<InetSocketAddress>());
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                clients.add(exchange.getRemoteAddress());
+                byte[] body = "ok".getBytes();
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(body);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void get(HttpClientConnectionManager connectionManager) throws IOException {
+        // like HttpRequest, build a client per request
+        HttpClientBuilder builder = HttpClientBuilder.create().setConnectionManager(connectionManager).setConnectionManagerShared(true);
+        try (CloseableHttpResponse response = builder.build().execute(new HttpGet("http://127.0.0.1:" + server.getAddress().getPort() + "/"))) {
+            assertEquals(200, response.getStatusLine().getStatusCode());
+            assertEquals("ok", EntityUtils.toString(response.getEntity()));
+        }
+    }
+
+    @Test
+    public void testReusesConnections() throws IOException {
+        HttpClientConnectionManager connectionManager = createConnectionManager();
+        try {
+            for (int i = 0; i < 10; i++)
+                get(connectionManager);
+            assertEquals(1, clients.size());
+        } finally {
+            connectionManager.shutdown();
+        }
+    }
+
+    @Test
+    public void testShared() {
+        assertSame(getConnectionManager(), getConnectionManager());
+    }
+}
@@ -23,6 +23,8 @@ import slash.common.helpers.APIKeyRegistry;
 import slash.navigation.converter.gui.helpers.AutomaticElevationService;
 import slash.navigation.converter.gui.helpers.AutomaticGeocodingService;
 import slash.navigation.converter.gui.helpers.GoogleDirections;
+import slash.navigation.elevation.CachingElevationService;
+import slash.navigation.geocoding.CachingGeocodingService;
 import slash.navigation.googlemaps.GoogleService;
 import slash.navigation.mapview.MapViewCallback;
 import slash.navigation.routing.RoutingService;
@@ -97,7 +99,7 @@ public class RouteConverterGoogle extends RouteConverter {
         getElevationServiceFacade().addElevationService(service);
         getElevationServiceFacade().setPreferredElevationService(service);
 
-        getElevationServiceFacade().addElevationService(new GoogleService());
+        getElevationServiceFacade().addElevationService(new CachingElevationService(new GoogleService(), getLookupCache()));
     }
 
     protected void updateElevationServices() {
@@ -108,7 +110,7 @@ public class RouteConverterGoogle extends RouteConverter {
         getGeocodingServiceFacade().addGeocodingService(service);
         getGeocodingServiceFacade().setPreferredGeocodingService(service);
 
-        getGeocodingServiceFacade().addGeocodingService(new GoogleService());
+        getGeocodingServiceFacade().addGeocodingService(new CachingGeocodingService(new GoogleService(), getLookupCache()));
     }
 
     protected void initializeRoutingServices() {
@@ -27,6 +27,7 @@ import slash.navigation.converter.gui.helpers.AutomaticGeocodingService;
 import slash.navigation.converter.gui.helpers.MapViewImplementation;
 import slash.navigation.converter.gui.helpers.OverlaysMenu;
 import slash.navigation.datasources.DataSource;
+import slash.navigation.geocoding.CachingGeocodingService;
 import slash.navigation.geonames.GeoNamesService;
 import slash.navigation.graphhopper.GraphHopper;
 import slash.navigation.gui.Application;
@@ -42,6 +43,7 @@ import slash.navigation.mapview.mapsforge.MapsforgeMapView;
 import slash.navigation.nominatim.NominatimService;
 import slash.navigation.photon.PhotonService;
 import slash.navigation.routing.Beeline;
+import slash.navigation.routing.CachingRoutingService;
 
 import javax.swing.*;
 import java.io.File;
@@ -154,20 +156,20 @@ public class RouteConverterOpenSource extends RouteConverter {
         getGeocodingServiceFacade().addGeocodingService(service);
         getGeocodingServiceFacade().setPreferredGeocodingService(service);
 
-        getGeocodingServiceFacade().addGeocodingService(new GeoNamesService());
-        getGeocodingServiceFacade().addGeocodingService(new NominatimService());
-        getGeocodingServiceFacade().addGeocodingService(new PhotonService());
+        getGeocodingServiceFacade().addGeocodingService(new CachingGeocodingService(new GeoNamesService(), getLookupCache()));
+        getGeocodingServiceFacade().addGeocodingService(new CachingGeocodingService(new NominatimService(), getLookupCache()));
+        getGeocodingServiceFacade().addGeocodingService(new CachingGeocodingService(new PhotonService(), getLookupCache()));
     }
 
     protected void initializeRoutingServices() {
         Beeline beeline = new Beeline();
         getRoutingServiceFacade().addRoutingService(beeline);
 
-        BRouter router = new BRouter(getDownloadManager());
+        CachingRoutingService router = new CachingRoutingService(new BRouter(getDownloadManager()), getRoutingCache());
         getRoutingServiceFacade().addRoutingService(router);
         getRoutingServiceFacade().setPreferredRoutingService(router);
 
-        GraphHopper hopper = new GraphHopper(getDownloadManager());
+        CachingRoutingService hopper = new CachingRoutingService(new GraphHopper(getDownloadManager()), getRoutingCache());
         getRoutingServiceFacade().addRoutingService(hopper);
 
         configureRoutingServices();
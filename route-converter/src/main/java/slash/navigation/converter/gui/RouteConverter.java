@@ -22,6 +22,7 @@ package slash.navigation.converter.gui;
 import com.intellij.uiDesigner.core.GridConstraints;
 import com.intellij.uiDesigner.core.GridLayoutManager;
 import slash.common.helpers.APIKeyRegistry;
+import slash.common.io.PersistentLookupCache;
 import slash.common.log.LoggingHelper;
 import slash.common.system.Version;
 import slash.navigation.babel.BabelException;
@@ -52,6 +53,7 @@ import slash.navigation.mapview.AbstractMapViewListener;
 import slash.navigation.mapview.MapView;
 import slash.navigation.mapview.MapViewCallback;
 import slash.navigation.rest.Credentials;
+import slash.navigation.rest.HttpCache;
 
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
@@ -107,6 +109,7 @@ import static slash.navigation.download.Action.Extract;
 import static slash.navigation.gui.helpers.JMenuHelper.findItem;
 import static slash.navigation.gui.helpers.JMenuHelper.findMenu;
 import static slash.navigation.gui.helpers.UIHelper.*;
+import static slash.navigation.rest.HttpCache.setDefaultCache;
 
 /**
  * A small graphical user interface for the route conversion.
@@ -172,6 +175,12 @@ public abstract class RouteConverter extends SingleFrameApplication {
     private static final String ADD_AUDIO_PREFERENCE = "addAudio";
     private static final String UPLOAD_ROUTE_PREFERENCE = "uploadRoute";
 
+    private static final String LOOKUP_CACHE_TIME_TO_LIVE_PREFERENCE = "lookupCacheTimeToLive";
+    private static final String LOOKUP_CACHE_MAXIMUM_SIZE_PREFERENCE = "lookupCacheMaximumSize";
+    private static final String ROUTING_CACHE_TIME_TO_LIVE_PREFERENCE = "routingCacheTimeToLive";
+    private static final String ROUTING_CACHE_MAXIMUM_SIZE_PREFERENCE = "routingCacheMaximumSize";
+    private static final String HTTP_CACHE_MAXIMUM_SIZE_PREFERENCE = "httpCacheMaximumSize";
+
     private static final String SHOWED_MISSING_TRANSLATOR_PREFERENCE = "showedMissingTranslator-2.27"; // versioned preference
     public static final String AUTOMATIC_UPDATE_CHECK_PREFERENCE = "automaticUpdateCheck-2.27";
 
@@ -179,6 +188,7 @@ public abstract class RouteConverter extends SingleFrameApplication {
     private RouteServiceOperator routeServiceOperator;
     private UpdateChecker updateChecker;
     private DataSourceManager dataSourceManager;
+    private PersistentLookupCache lookupCache, routingCache;
     private ElevationServiceFacade elevationServiceFacade = new ElevationServiceFacade();
     private GeocodingServiceFacade geocodingServiceFacade = new GeocodingServiceFacade();
     private RoutingServiceFacade routingServiceFacade = new RoutingServiceFacade();
@@ -454,6 +464,8 @@ public abstract class RouteConverter extends SingleFrameApplication {
         getDataSourceManager().dispose();
         getDownloadManager().saveQueue();
         getTileServerMapManager().dispose();
+        getLookupCache().close();
+        getRoutingCache().close();
         super.shutdown();
 
         log.info("Shutdown " + getTitle() + " for " + parseVersionFromManifest().getOperationSystem() + " with locale " + Locale.getDefault() +
@@ -759,6 +771,14 @@ public abstract class RouteConverter extends SingleFrameApplication {
         return getDataSourceManager().getDownloadManager();
     }
 
+    public PersistentLookupCache getLookupCache() {
+        return lookupCache;
+    }
+
+    public PersistentLookupCache getRoutingCache() {
+        return routingCache;
+    }
+
     private PositionAugmenter positionAugmenter;
 
     public synchronized PositionAugmenter getPositionAugmenter() {
@@ -1160,6 +1180,14 @@ public abstract class RouteConverter extends SingleFrameApplication {
         downloadManager.addDownloadListener(new ChecksumSender());
         downloadManager.addDownloadListener(new DownloadNotifier());
         dataSourceManager = new DataSourceManager(downloadManager);
+        lookupCache = new PersistentLookupCache(new File(getApplicationDirectory("cache"), getEditionId() + "-lookups.cache"),
+                preferences.getLong(LOOKUP_CACHE_TIME_TO_LIVE_PREFERENCE, 90 * 24 * 60 * 60 * 1000L),
+                preferences.getLong(LOOKUP_CACHE_MAXIMUM_SIZE_PREFERENCE, 32 * 1024 * 1024L));
+        routingCache = new PersistentLookupCache(new File(getApplicationDirectory("cache"), getEditionId() + "-routes.cache"),
+                preferences.getLong(ROUTING_CACHE_TIME_TO_LIVE_PREFERENCE, 90 * 24 * 60 * 60 * 1000L),
+                preferences.getLong(ROUTING_CACHE_MAXIMUM_SIZE_PREFERENCE, 64 * 1024 * 1024L));
+        setDefaultCache(new HttpCache(getApplicationDirectory("cache/http"),
+                preferences.getLong(HTTP_CACHE_MAXIMUM_SIZE_PREFERENCE, 64 * 1024 * 1024L)));
         timeZoneModel.addChangeListener(e -> {
             ColumbusV1000Device.setTimeZone(timeZoneModel.getTimeZoneId()); // for TimeAlbum
         });
@@ -21,6 +21,7 @@ package slash.navigation.converter.gui.helpers;
 
 import slash.navigation.common.BoundingBox;
 import slash.navigation.common.LongitudeAndLatitude;
+import slash.navigation.elevation.ElevationCoverage;
 import slash.navigation.elevation.ElevationService;
 
 import java.io.File;
@@ -28,6 +29,9 @@ import java.io.IOException;
 import java.util.*;
 import java.util.logging.Logger;
 
+import static java.lang.Double.NaN;
+import static java.lang.Double.isNaN;
+import static java.util.Arrays.fill;
 import static java.util.Arrays.sort;
 
 /**
@@ -42,6 +46,10 @@ public class AutomaticElevationService implements ElevationService {
     private static final String JONATHAN_DE_FERRANTI_DEM_3 = "Jonathan de Ferranti DEM 3";
 
     private final ElevationServiceFacade elevationServiceFacade;
+    // chunks are resolved concurrently, but online services enforce query limits
+    private final Object onlineServiceLock = new Object();
+    private List<ElevationService> sortedElevationServices;
+    private ElevationService[] elevationServicesByBestEffort;
 
     public AutomaticElevationService(ElevationServiceFacade elevationServiceFacade) {
         this.elevationServiceFacade = elevationServiceFacade;
@@ -69,7 +77,7 @@ public class AutomaticElevationService implements ElevationService {
     }
 
     public File getDirectory() {
-        for (ElevationService service : sortByBestEffort(elevationServiceFacade.getElevationServices())) {
+        for (ElevationService service : getElevationServicesByBestEffort()) {
             if (!service.isDownload())
                 continue;
 
@@ -85,12 +93,17 @@ public class AutomaticElevationService implements ElevationService {
     public Double getElevationFor(double longitude, double latitude) throws IOException {
         IOException lastException = null;
 
-        for (ElevationService service : sortByBestEffort(elevationServiceFacade.getElevationServices())) {
+        for (ElevationService service : getElevationServicesByBestEffort()) {
             try {
                 if(service.isOverQueryLimit())
                     continue;
 
-                Double elevation = service.getElevationFor(longitude, latitude);
+                // skip services which are known to have no data for the position
+                ElevationCoverage coverage = service.getCoverage();
+                if (coverage != null && !coverage.covers(longitude, latitude))
+                    continue;
+
+                Double elevation = getElevationFor(service, longitude, latitude);
                 if (elevation != null) {
                     log.fine("Used " + service.getName() + " to retrieve elevation " + elevation + " for " + longitude + "/" + latitude);
                     return elevation;
@@ -107,6 +120,96 @@ public class AutomaticElevationService implements ElevationService {
             return null;
     }
 
+    public void getElevationsFor(double[] longitudes, double[] latitudes, double[] result) throws IOException {
+        fill(result, NaN);
+        IOException lastException = null;
+        boolean foundElevation = false;
+
+        for (ElevationService service : getElevationServicesByBestEffort()) {
+            int missing = 0;
+            for (double elevation : result) {
+                if (isNaN(elevation))
+                    missing++;
+            }
+            if (missing == 0)
+                break;
+
+            if (service.isOverQueryLimit())
+                continue;
+
+            // only ask for the missing positions which the service has data for
+            ElevationCoverage coverage = service.getCoverage();
+            int[] indices = new int[missing];
+            int covered = 0;
+            for (int i = 0; i < result.length; i++) {
+                if (isNaN(result[i]) && (coverage == null || coverage.covers(longitudes[i], latitudes[i])))
+                    indices[covered++] = i;
+            }
+            if (covered == 0)
+                continue;
+
+            missing = covered;
+            double[] missingLongitudes = new double[missing];
+            double[] missingLatitudes = new double[missing];
+            for (int j = 0; j < missing; j++) {
+                missingLongitudes[j] = longitudes[indices[j]];
+                missingLatitudes[j] = latitudes[indices[j]];
+            }
+
+            double[] elevations = new double[missing];
+            try {
+                getElevationsFor(service, missingLongitudes, missingLatitudes, elevations);
+            } catch (IOException e) {
+                lastException = e;
+                continue;
+            }
+
+            int found = 0;
+            for (int j = 0; j < missing; j++) {
+                if (!isNaN(elevations[j])) {
+                    result[indices[j]] = elevations[j];
+                    found++;
+                }
+            }
+            if (found > 0) {
+                log.fine("Used " + service.getName() + " to retrieve " + found + " of " + missing + " elevations");
+                foundElevation = true;
+            }
+        }
+
+        if (!foundElevation && lastException != null)
+            throw lastException;
+    }
+
+    private Double getElevationFor(ElevationService service, double longitude, double latitude) throws IOException {
+        if (service.isDownload())
+            return service.getElevationFor(longitude, latitude);
+
+        synchronized (onlineServiceLock) {
+            return service.getElevationFor(longitude, latitude);
+        }
+    }
+
+    private void getElevationsFor(ElevationService service, double[] longitudes, double[] latitudes, double[] result) throws IOException {
+        if (service.isDownload()) {
+            service.getElevationsFor(longitudes, latitudes, result);
+            return;
+        }
+
+        synchronized (onlineServiceLock) {
+            service.getElevationsFor(longitudes, latitudes, result);
+        }
+    }
+
+    private synchronized ElevationService[] getElevationServicesByBestEffort() {
+        List<ElevationService> elevationServices = elevationServiceFacade.getElevationServices();
+        if (elevationServicesByBestEffort == null || !elevationServices.equals(sortedElevationServices)) {
+            sortedElevationServices = new ArrayList<>(elevationServices);
+            elevationServicesByBestEffort = sortByBestEffort(sortedElevationServices);
+        }
+        return elevationServicesByBestEffort;
+    }
+
     private ElevationService[] sortByBestEffort(List<ElevationService> elevationServices) {
         List<ElevationService> toSort = new ArrayList<>(elevationServices);
         toSort.remove(this);
@@ -96,6 +96,14 @@ public class ElevationServiceFacade {
         return elevation != null ? formatElevation(elevation).doubleValue() : null;
     }
 
+    public void getElevationsFor(double[] longitudes, double[] latitudes, double[] result) throws IOException {
+        getElevationService().getElevationsFor(longitudes, latitudes, result);
+        for (int i = 0; i < result.length; i++) {
+            if (!Double.isNaN(result[i]))
+                result[i] = formatElevation(result[i]).doubleValue();
+        }
+    }
+
     public boolean isDownload() {
         return getElevationService().isDownload();
     }
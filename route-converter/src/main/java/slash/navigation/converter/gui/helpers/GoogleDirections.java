@@ -76,6 +76,10 @@ public class GoogleDirections extends BaseRoutingService {
         return true;
     }
 
+    public boolean isSupportParallelRouting() {
+        return false;
+    }
+
     public List<TravelMode> getAvailableTravelModes() {
         return TRAVEL_MODES;
     }
@@ -92,6 +96,10 @@ public class GoogleDirections extends BaseRoutingService {
         throw new UnsupportedOperationException();
     }
 
+    public String getRoutingDataVersion() {
+        return null;
+    }
+
     public RoutingResult getRouteBetween(NavigationPosition from, NavigationPosition to, TravelMode travelMode) {
         throw new UnsupportedOperationException();
     }
@@ -39,19 +39,24 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import static java.lang.Math.abs;
+import static java.lang.Double.isNaN;
 import static java.lang.Math.min;
+import static java.lang.Runtime.getRuntime;
 import static java.lang.String.format;
 import static java.util.Arrays.asList;
+import static java.util.Arrays.copyOfRange;
 import static javax.swing.JOptionPane.ERROR_MESSAGE;
 import static javax.swing.JOptionPane.showMessageDialog;
 import static javax.swing.SwingUtilities.invokeLater;
 import static javax.swing.event.TableModelEvent.ALL_COLUMNS;
 import static slash.common.helpers.ExceptionHelper.getLocalizedMessage;
 import static slash.common.helpers.ExceptionHelper.printStackTrace;
+import static slash.common.helpers.ThreadHelper.createFixedThreadPool;
 import static slash.common.helpers.ThreadHelper.createSingleThreadExecutor;
 import static slash.common.io.Transfer.widthInDigits;
 import static slash.common.type.CompactCalendar.fromMillis;
@@ -72,12 +77,15 @@ import static slash.navigation.gui.helpers.JTableHelper.scrollToPosition;
 
 public class PositionAugmenter {
     private static final Logger log = Logger.getLogger(PositionAugmenter.class.getName());
+    private static final int CHUNK_SIZE = 1000;
 
     private final JFrame frame;
     private final JTable positionsView;
     private final PositionsModel positionsModel;
 
     private final ExecutorService executor = createSingleThreadExecutor("AugmentPositions");
+    private final ExecutorService chunkExecutor = createFixedThreadPool("AugmentPositionsChunk", getRuntime().availableProcessors());
+    private final ExecutorService sequentialChunkExecutor = createSingleThreadExecutor("AugmentPositionsSequentialChunk");
     private final ElevationServiceFacade elevationServiceFacade;
     private final GeocodingServiceFacade geocodingServiceFacade;
     private static final Object notificationMutex = new Object();
@@ -102,6 +110,8 @@ public class PositionAugmenter {
     public void dispose() {
         interrupt();
         executor.shutdownNow();
+        chunkExecutor.shutdownNow();
+        sequentialChunkExecutor.shutdownNow();
     }
 
     private interface OverwritePredicate {
@@ -128,6 +138,37 @@ public class PositionAugmenter {
         String getMessagePrefix();
     }
 
+    private interface ChunkOperation {
+        String getName();
+        int getColumnIndex();
+        void performOnStart();
+        /**
+         * @return true if the chunks may be resolved concurrently, false if they have to be resolved one after the other
+         */
+        boolean isParallel();
+        /**
+         * Resolves the new values for a chunk of positions. Is called concurrently for different chunks
+         * if the operation {@link #isParallel() is parallel}.
+         *
+         * @param rows the rows of the positions
+         * @param positions the positions to resolve
+         * @return the new value for each position or null if the position doesn't change
+         * @throws Exception if the lookup fails
+         */
+        Object[] resolve(int[] rows, NavigationPosition[] positions) throws Exception;
+        String getMessagePrefix();
+    }
+
+    private static class ChunkResult {
+        private final int[] rows;
+        private final Object[] values;
+
+        private ChunkResult(int[] rows, Object[] values) {
+            this.rows = rows;
+            this.values = values;
+        }
+    }
+
     private NotificationManager getNotificationManager() {
         return Application.getInstance().getContext().getNotificationManager();
     }
@@ -225,6 +266,125 @@ public class PositionAugmenter {
         });
     }
 
+    private boolean isInterrupted(CancelAction cancelAction) {
+        synchronized (notificationMutex) {
+            return cancelAction.isCanceled() || !running;
+        }
+    }
+
+    private void executeChunkOperation(final JTable positionsTable,
+                                       final PositionsModel positionsModel,
+                                       final int[] rows,
+                                       final OverwritePredicate predicate,
+                                       final ChunkOperation operation) {
+        synchronized (notificationMutex) {
+            this.running = true;
+        }
+
+        final CancelAction cancelAction = new CancelAction();
+        executor.execute(new Runnable() {
+            public void run() {
+                final AtomicInteger count = new AtomicInteger();
+                List<Future<ChunkResult>> futures = new ArrayList<>();
+
+                try {
+                    invokeLater(new Runnable() {
+                        public void run() {
+                            if (positionsTable != null && rows.length > 0)
+                                scrollToPosition(positionsTable, rows[0]);
+                        }
+                    });
+                    operation.performOnStart();
+
+                    CompletionService<ChunkResult> completionService = new ExecutorCompletionService<>(operation.isParallel() ? chunkExecutor : sequentialChunkExecutor);
+                    for (int start = 0; start < rows.length; start += CHUNK_SIZE) {
+                        final int[] chunkRows = copyOfRange(rows, start, min(start + CHUNK_SIZE, rows.length));
+                        futures.add(completionService.submit(new Callable<ChunkResult>() {
+                            public ChunkResult call() throws Exception {
+                                List<Integer> resolveRows = new ArrayList<>(chunkRows.length);
+                                List<NavigationPosition> resolvePositions = new ArrayList<>(chunkRows.length);
+                                for (int row : chunkRows) {
+                                    NavigationPosition position = positionsModel.getPosition(row);
+                                    if (predicate.shouldOverwrite(position)) {
+                                        resolveRows.add(row);
+                                        resolvePositions.add(position);
+                                    }
+                                }
+
+                                int[] rowsToResolve = new int[resolveRows.size()];
+                                for (int i = 0; i < rowsToResolve.length; i++)
+                                    rowsToResolve[i] = resolveRows.get(i);
+                                Object[] values = operation.resolve(rowsToResolve, resolvePositions.toArray(new NavigationPosition[0]));
+                                return new ChunkResult(rowsToResolve, values);
+                            }
+                        }));
+                    }
+
+                    Exception lastException = null;
+                    for (int i = 0; i < futures.size(); i++) {
+                        if (isInterrupted(cancelAction))
+                            break;
+
+                        try {
+                            final ChunkResult result = completionService.take().get();
+                            invokeLater(new Runnable() {
+                                public void run() {
+                                    applyChunkResult(positionsTable, positionsModel, operation.getColumnIndex(), result);
+                                }
+                            });
+                            count.addAndGet(result.rows.length);
+                        } catch (ExecutionException e) {
+                            log.warning(format("Error while running operation %s: %s, %s", operation.getName(), e.getCause(), printStackTrace(e.getCause())));
+                            lastException = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                        }
+
+                        getNotificationManager().showNotification(MessageFormat.format(
+                                RouteConverter.getBundle().getString("augmenting-progress"), count.get(), rows.length), cancelAction);
+                    }
+
+                    if (lastException != null && !isInterrupted(cancelAction)) {
+                        String errorMessage = RouteConverter.getBundle().getString(operation.getMessagePrefix() + "error");
+                        showMessageDialog(frame,
+                                MessageFormat.format(errorMessage, getLocalizedMessage(lastException)), frame.getTitle(), ERROR_MESSAGE);
+                    }
+                } catch (InterruptedException e) {
+                    log.info(format("Interrupted operation %s", operation.getName()));
+                } finally {
+                    for (Future<ChunkResult> future : futures)
+                        future.cancel(true);
+
+                    invokeLater(new Runnable() {
+                        public void run() {
+                            getNotificationManager().showNotification(MessageFormat.format(
+                                    RouteConverter.getBundle().getString("augmenting-finished"), count.get()), null);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private void applyChunkResult(JTable positionsTable, PositionsModel positionsModel, int columnIndex, ChunkResult result) {
+        int firstIndex = -1, lastIndex = -1;
+        for (int i = 0; i < result.rows.length; i++) {
+            Object value = result.values[i];
+            int row = result.rows[i];
+            if (value == null || row >= positionsModel.getRowCount())
+                continue;
+
+            positionsModel.edit(row, new PositionColumnValues(columnIndex, value), false, true);
+            if (firstIndex == -1)
+                firstIndex = row;
+            lastIndex = row;
+        }
+
+        if (firstIndex != -1) {
+            positionsModel.fireTableRowsUpdated(firstIndex, lastIndex, columnIndex);
+            if (positionsTable != null)
+                scrollToPosition(positionsTable, lastIndex);
+        }
+    }
+
     private void processCoordinates(final JTable positionsTable,
                                     final PositionsModel positionsModel,
                                     final int[] rows,
@@ -269,8 +429,8 @@ public class PositionAugmenter {
                                    final PositionsModel positionsModel,
                                    final int[] rows,
                                    final OverwritePredicate predicate) {
-        executeOperation(positionsTable, positionsModel, rows, true, predicate,
-                new Operation() {
+        executeChunkOperation(positionsTable, positionsModel, rows, predicate,
+                new ChunkOperation() {
                     public String getName() {
                         return "ElevationPositionAugmenter";
                     }
@@ -280,16 +440,25 @@ public class PositionAugmenter {
                     }
 
                     public void performOnStart() {
-                        downloadElevationData(rows, true);
+                        // queue the tiles in track order but resolve the chunks as soon as their tiles are available
+                        downloadElevationData(rows, false);
                     }
 
-                    public boolean run(int index, NavigationPosition position) throws Exception {
-                        String previousElevation = formatElevation(position.getElevation());
-                        String nextElevation = getElevationFor(position);
-                        boolean changed = nextElevation != null && !nextElevation.equals(previousElevation);
-                        if (changed)
-                            positionsModel.edit(index, new PositionColumnValues(ELEVATION_COLUMN_INDEX, nextElevation), false, true);
-                        return changed;
+                    public boolean isParallel() {
+                        // online services enforce query limits, only local elevation data is resolved concurrently;
+                        // the AutomaticElevationService asks its online services one chunk at a time
+                        return elevationServiceFacade.isDownload();
+                    }
+
+                    public Object[] resolve(int[] rows, NavigationPosition[] positions) throws Exception {
+                        downloadElevationData(asList(positions), true);
+                        String[] nextElevations = getElevationsFor(positions);
+                        for (int i = 0; i < positions.length; i++) {
+                            String previousElevation = formatElevation(positions[i].getElevation());
+                            if (nextElevations[i] != null && nextElevations[i].equals(previousElevation))
+                                nextElevations[i] = null;
+                        }
+                        return nextElevations;
                     }
 
                     public String getMessagePrefix() {
@@ -310,12 +479,41 @@ public class PositionAugmenter {
         return formatElevation(elevation);
     }
 
+    private String[] getElevationsFor(NavigationPosition[] positions) throws IOException {
+        double[] longitudes = new double[positions.length];
+        double[] latitudes = new double[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            NavigationPosition position = positions[i];
+            // positions without coordinates are looked up at 0/0 and ignored below
+            if (position.hasCoordinates()) {
+                longitudes[i] = position.getLongitude();
+                latitudes[i] = position.getLatitude();
+            }
+        }
+
+        double[] elevations = new double[positions.length];
+        elevationServiceFacade.getElevationsFor(longitudes, latitudes, elevations);
+
+        String[] result = new String[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i].hasCoordinates() && !isNaN(elevations[i]))
+                result[i] = formatElevation(elevations[i]);
+        }
+        return result;
+    }
+
     private void downloadElevationData(int[] rows, boolean waitForDownload) {
+        List<NavigationPosition> positions = new ArrayList<>(rows.length);
+        for (int row : rows)
+            positions.add(positionsModel.getPosition(row));
+        downloadElevationData(positions, waitForDownload);
+    }
+
+    private void downloadElevationData(List<NavigationPosition> positions, boolean waitForDownload) {
         if (!elevationServiceFacade.isDownload())
             return;
         List<LongitudeAndLatitude> longitudeAndLatitudes = new ArrayList<>();
-        for (int row : rows) {
-            NavigationPosition position = positionsModel.getPosition(row);
+        for (NavigationPosition position : positions) {
             if (position.hasCoordinates())
                 longitudeAndLatitudes.add(new LongitudeAndLatitude(position.getLongitude(), position.getLatitude()));
         }
@@ -370,8 +568,8 @@ public class PositionAugmenter {
                                final PositionsModel positionsModel,
                                final int[] rows,
                                final OverwritePredicate predicate) {
-        executeOperation(positionsTable, positionsModel, rows, false, predicate,
-                new Operation() {
+        executeChunkOperation(positionsTable, positionsModel, rows, predicate,
+                new ChunkOperation() {
                     public String getName() {
                         return "SpeedPositionAugmenter";
                     }
@@ -383,17 +581,24 @@ public class PositionAugmenter {
                     public void performOnStart() {
                     }
 
-                    public boolean run(int index, NavigationPosition position) {
-                        NavigationPosition predecessor = index > 0 && index < positionsModel.getRowCount() ? positionsModel.getPosition(index - 1) : null;
-                        if (predecessor != null) {
-                            String previousSpeed = formatSpeed(position.getSpeed());
-                            String nextSpeed = formatSpeed(position.calculateSpeed(predecessor));
-                            boolean changed = nextSpeed != null && !nextSpeed.equals(previousSpeed);
-                            if (changed)
-                                positionsModel.edit(index, new PositionColumnValues(SPEED_COLUMN_INDEX, nextSpeed), false, true);
-                            return changed;
+                    public boolean isParallel() {
+                        return true;
+                    }
+
+                    public Object[] resolve(int[] rows, NavigationPosition[] positions) {
+                        String[] nextSpeeds = new String[positions.length];
+                        for (int i = 0; i < positions.length; i++) {
+                            int index = rows[i];
+                            NavigationPosition predecessor = index > 0 && index < positionsModel.getRowCount() ? positionsModel.getPosition(index - 1) : null;
+                            if (predecessor != null) {
+                                String previousSpeed = formatSpeed(positions[i].getSpeed());
+                                String nextSpeed = formatSpeed(positions[i].calculateSpeed(predecessor));
+                                boolean changed = nextSpeed != null && !nextSpeed.equals(previousSpeed);
+                                if (changed)
+                                    nextSpeeds[i] = nextSpeed;
+                            }
                         }
-                        return false;
+                        return nextSpeeds;
                     }
 
                     public String getMessagePrefix() {
@@ -20,6 +20,7 @@
 
 package slash.navigation.converter.gui.helpers;
 
+import slash.navigation.routing.CachingRoutingService;
 import slash.navigation.routing.RoutingService;
 import slash.navigation.routing.RoutingServiceListener;
 import slash.navigation.routing.TravelMode;
@@ -55,6 +56,7 @@ public class RoutingServiceFacade {
     public void addRoutingService(RoutingService routingService) {
         routingServices.add(routingService);
         routingService.addRoutingServiceListener(new RoutingServiceEventForwarder());
+        updateAvoidOptions(routingService);
         log.info(format("Added routing service '%s'", routingService.getName()));
     }
 
@@ -69,6 +71,8 @@ public class RoutingServiceFacade {
     @SuppressWarnings("unchecked")
     public <T> T getRoutingService(Class<T> clazz) {
         for(RoutingService service : getRoutingServices()) {
+            if(service instanceof CachingRoutingService)
+                service = ((CachingRoutingService) service).getService();
             if(service.getClass().equals(clazz))
                 return (T)service;
         }
@@ -123,6 +127,7 @@ public class RoutingServiceFacade {
 
     public void setAvoidFerries(boolean avoidFerries) {
         preferences.putBoolean(AVOID_FERRIES_PREFERENCE + getRoutingService().getName(), avoidFerries);
+        updateAvoidOptions(getRoutingService());
         firePreferencesChanged();
     }
 
@@ -132,6 +137,7 @@ public class RoutingServiceFacade {
 
     public void setAvoidHighways(boolean avoidHighways) {
         preferences.putBoolean(AVOID_HIGHWAYS_PREFERENCE + getRoutingService().getName(), avoidHighways);
+        updateAvoidOptions(getRoutingService());
         firePreferencesChanged();
     }
 
@@ -141,9 +147,19 @@ public class RoutingServiceFacade {
 
     public void setAvoidTolls(boolean avoidTolls) {
         preferences.putBoolean(AVOID_TOLLS_PREFERENCE + getRoutingService().getName(), avoidTolls);
+        updateAvoidOptions(getRoutingService());
         firePreferencesChanged();
     }
 
+    private void updateAvoidOptions(RoutingService service) {
+        // the cached routes depend on the avoid options
+        if (service instanceof CachingRoutingService)
+            ((CachingRoutingService) service).setAvoidOptions(
+                    preferences.getBoolean(AVOID_FERRIES_PREFERENCE + service.getName(), false),
+                    preferences.getBoolean(AVOID_HIGHWAYS_PREFERENCE + service.getName(), false),
+                    preferences.getBoolean(AVOID_TOLLS_PREFERENCE + service.getName(), false));
+    }
+
     private void fireDownloading() {
         Object[] listeners = listenerList.getListenerList();
         for (int i = listeners.length - 2; i >= 0; i -= 2) {
@@ -37,6 +37,7 @@ import java.io.IOException;
 import java.util.logging.Logger;
 
 import static java.lang.String.format;
+import static slash.navigation.rest.HttpCache.getDefaultCache;
 import static slash.navigation.rest.HttpRequest.APPLICATION_JSON;
 import static slash.navigation.routes.remote.helpers.RoutesUtil.unmarshal;
 
@@ -73,6 +74,7 @@ public class RemoteCatalog implements Catalog {
         String urlWithXml = url + FORMAT_XML;
         try {
             Get get = new Get(urlWithXml);
+            get.setCache(getDefaultCache());
             String result = get.executeAsString();
             if (get.isSuccessful())
                 try {
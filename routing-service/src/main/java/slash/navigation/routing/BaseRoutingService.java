@@ -20,7 +20,11 @@
 
 package slash.navigation.routing;
 
+import slash.navigation.common.NavigationPosition;
+
 import javax.swing.event.EventListenerList;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The base of all {@link RoutingService} implementations.
@@ -31,6 +35,19 @@ import javax.swing.event.EventListenerList;
 public abstract class BaseRoutingService implements RoutingService {
     private EventListenerList listenerList = new EventListenerList();
 
+    /**
+     * Routes the legs between the positions one after another. Services that
+     * route via several positions at once override this.
+     *
+     * @return the {@link RoutingResult} for each leg between two positions
+     */
+    public List<RoutingResult> getRouteVia(List<NavigationPosition> positions, TravelMode travelMode) {
+        List<RoutingResult> result = new ArrayList<>();
+        for (int i = 0; i < positions.size() - 1; i++)
+            result.add(getRouteBetween(positions.get(i), positions.get(i + 1), travelMode));
+        return result;
+    }
+
     protected void fireDownloading() {
         Object[] listeners = listenerList.getListenerList();
         for (int i = listeners.length - 2; i >= 0; i -= 2) {
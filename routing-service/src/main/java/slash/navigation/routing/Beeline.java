@@ -69,6 +69,10 @@ public class Beeline extends BaseRoutingService {
         return false;
     }
 
+    public boolean isSupportParallelRouting() {
+        return true;
+    }
+
     public List<TravelMode> getAvailableTravelModes() {
         return singletonList(BEELINE);
     }
@@ -85,6 +89,11 @@ public class Beeline extends BaseRoutingService {
         throw new UnsupportedOperationException();
     }
 
+    public String getRoutingDataVersion() {
+        // beelines are cheaper to calculate than to cache
+        return null;
+    }
+
     public static RoutingResult getRouteBetween(NavigationPosition from, NavigationPosition to) {
         double distance = calculateBearing(from.getLongitude(), from.getLatitude(), to.getLongitude(), to.getLatitude()).getDistance();
         return new RoutingResult(asList(from, to), new DistanceAndTime(distance, null), Invalid);
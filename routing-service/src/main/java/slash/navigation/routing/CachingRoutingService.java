@@ -0,0 +1,343 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.routing;
+
+import slash.common.io.PersistentLookupCache;
+import slash.navigation.common.BoundingBox;
+import slash.navigation.common.DistanceAndTime;
+import slash.navigation.common.LongitudeAndLatitude;
+import slash.navigation.common.NavigationPosition;
+import slash.navigation.common.SimpleNavigationPosition;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static java.lang.Double.NaN;
+import static java.lang.Double.isNaN;
+import static java.lang.Math.round;
+import static java.lang.String.format;
+import static java.util.Base64.getDecoder;
+import static java.util.Base64.getEncoder;
+import static slash.navigation.routing.RoutingResult.Validity.Valid;
+
+/**
+ * A {@link RoutingService} that caches the valid routes between two positions of
+ * another {@link RoutingService} in memory and optionally in a {@link PersistentLookupCache}.
+ *
+ * The routes are keyed by the positions, the travel mode, the avoid options and the
+ * version of the routing data of the {@link RoutingService} so that loading new
+ * routing data invalidates the cached routes.
+ *
+ * @author Christian Pesch
+ */
+
+public class CachingRoutingService implements RoutingService {
+    private static final Logger log = Logger.getLogger(CachingRoutingService.class.getName());
+    private static final double QUANTIZATION = 100000.0; // about one meter
+    private static final double COORDINATE_FACTOR = 10000000.0;
+    private static final int MAXIMUM_MEMORY_ENTRIES = 1000;
+
+    private final RoutingService service;
+    private final PersistentLookupCache cache;
+    private final Map<String, CachedRoute> memory = new LinkedHashMap<String, CachedRoute>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<String, CachedRoute> eldest) {
+            return size() > MAXIMUM_MEMORY_ENTRIES;
+        }
+    };
+    private volatile boolean avoidFerries, avoidHighways, avoidTolls;
+
+    public CachingRoutingService(RoutingService service, PersistentLookupCache cache) {
+        this.service = service;
+        this.cache = cache;
+    }
+
+    public RoutingService getService() {
+        return service;
+    }
+
+    public void setAvoidOptions(boolean avoidFerries, boolean avoidHighways, boolean avoidTolls) {
+        this.avoidFerries = avoidFerries;
+        this.avoidHighways = avoidHighways;
+        this.avoidTolls = avoidTolls;
+    }
+
+    public String getName() {
+        return service.getName();
+    }
+
+    public boolean isInitialized() {
+        return service.isInitialized();
+    }
+
+    public boolean isDownload() {
+        return service.isDownload();
+    }
+
+    public boolean isSupportTurnpoints() {
+        return service.isSupportTurnpoints();
+    }
+
+    public boolean isSupportAvoidFerries() {
+        return service.isSupportAvoidFerries();
+    }
+
+    public boolean isSupportAvoidHighways() {
+        return service.isSupportAvoidHighways();
+    }
+
+    public boolean isSupportAvoidTolls() {
+        return service.isSupportAvoidTolls();
+    }
+
+    public boolean isSupportParallelRouting() {
+        return service.isSupportParallelRouting();
+    }
+
+    public List<TravelMode> getAvailableTravelModes() {
+        return service.getAvailableTravelModes();
+    }
+
+    public TravelMode getPreferredTravelMode() {
+        return service.getPreferredTravelMode();
+    }
+
+    public String getPath() {
+        return service.getPath();
+    }
+
+    public void setPath(String path) {
+        service.setPath(path);
+    }
+
+    public String getRoutingDataVersion() {
+        return service.getRoutingDataVersion();
+    }
+
+    private String createAvoidOptions() {
+        // only the options that the service considers change the route
+        return (isSupportAvoidFerries() && avoidFerries ? "F" : "") +
+                (isSupportAvoidHighways() && avoidHighways ? "H" : "") +
+                (isSupportAvoidTolls() && avoidTolls ? "T" : "");
+    }
+
+    String createKey(NavigationPosition from, NavigationPosition to, TravelMode travelMode, String version) {
+        return getName() + "/route/" + travelMode.getName() + "/" + createAvoidOptions() + "/" + version + "/" +
+                round(from.getLongitude() * QUANTIZATION) + "/" + round(from.getLatitude() * QUANTIZATION) + "/" +
+                round(to.getLongitude() * QUANTIZATION) + "/" + round(to.getLatitude() * QUANTIZATION);
+    }
+
+    public RoutingResult getRouteBetween(NavigationPosition from, NavigationPosition to, TravelMode travelMode) {
+        if (!from.hasCoordinates() || !to.hasCoordinates())
+            return service.getRouteBetween(from, to, travelMode);
+
+        String version = getRoutingDataVersion();
+        if (version != null) {
+            CachedRoute cached = get(createKey(from, to, travelMode, version));
+            if (cached != null)
+                return cached.toRoutingResult();
+        }
+
+        RoutingResult result = service.getRouteBetween(from, to, travelMode);
+        putIfUnchanged(from, to, travelMode, version, result);
+        return result;
+    }
+
+    public List<RoutingResult> getRouteVia(List<NavigationPosition> positions, TravelMode travelMode) {
+        String version = getRoutingDataVersion();
+        List<RoutingResult> result = new ArrayList<>();
+        for (int i = 0; i < positions.size() - 1; i++) {
+            NavigationPosition from = positions.get(i), to = positions.get(i + 1);
+            CachedRoute cached = version != null && from.hasCoordinates() && to.hasCoordinates() ?
+                    get(createKey(from, to, travelMode, version)) : null;
+            result.add(cached != null ? cached.toRoutingResult() : null);
+        }
+
+        // route the consecutive legs that are not cached via their positions
+        int first = 0;
+        while (first < result.size()) {
+            if (result.get(first) != null) {
+                first++;
+                continue;
+            }
+
+            int last = first;
+            while (last < result.size() && result.get(last) == null)
+                last++;
+
+            List<RoutingResult> routed = service.getRouteVia(positions.subList(first, last + 1), travelMode);
+            for (int i = first; i < last; i++) {
+                RoutingResult leg = routed.get(i - first);
+                result.set(i, leg);
+                putIfUnchanged(positions.get(i), positions.get(i + 1), travelMode, version, leg);
+            }
+            first = last;
+        }
+        return result;
+    }
+
+    private void putIfUnchanged(NavigationPosition from, NavigationPosition to, TravelMode travelMode, String version,
+                                RoutingResult result) {
+        // while the routing data changes, the route may stem from the data that is replaced
+        if (version != null && version.equals(getRoutingDataVersion()))
+            put(from, to, travelMode, version, result);
+    }
+
+    private void put(NavigationPosition from, NavigationPosition to, TravelMode travelMode, String version, RoutingResult result) {
+        if (version != null && from.hasCoordinates() && to.hasCoordinates() &&
+                result.getValidity().equals(Valid) && result.getPositions() != null)
+            put(createKey(from, to, travelMode, version), new CachedRoute(result));
+    }
+
+    private CachedRoute get(String key) {
+        synchronized (memory) {
+            CachedRoute cached = memory.get(key);
+            if (cached != null)
+                return cached;
+        }
+
+        if (cache == null)
+            return null;
+        String value = cache.get(key);
+        if (value == null)
+            return null;
+
+        try {
+            CachedRoute cached = CachedRoute.decode(value);
+            synchronized (memory) {
+                memory.put(key, cached);
+            }
+            return cached;
+        } catch (IOException | IllegalArgumentException e) {
+            log.warning(format("Cannot decode cached route %s: %s", key, e));
+            return null;
+        }
+    }
+
+    private void put(String key, CachedRoute route) {
+        synchronized (memory) {
+            memory.put(key, route);
+        }
+
+        if (cache == null)
+            return;
+        try {
+            cache.put(key, route.encode());
+        } catch (IOException e) {
+            log.warning(format("Cannot encode route %s: %s", key, e));
+        }
+    }
+
+    public DownloadFuture downloadRoutingDataFor(List<LongitudeAndLatitude> longitudeAndLatitudes) {
+        return service.downloadRoutingDataFor(longitudeAndLatitudes);
+    }
+
+    public long calculateRemainingDownloadSize(List<BoundingBox> boundingBoxes) {
+        return service.calculateRemainingDownloadSize(boundingBoxes);
+    }
+
+    public void downloadRoutingData(List<BoundingBox> boundingBoxes) {
+        service.downloadRoutingData(boundingBoxes);
+    }
+
+    public void addRoutingServiceListener(RoutingServiceListener routingServiceListener) {
+        service.addRoutingServiceListener(routingServiceListener);
+    }
+
+    /**
+     * An immutable route from which every cache hit creates new positions
+     * since the callers are free to modify the positions of a {@link RoutingResult}.
+     */
+    static class CachedRoute {
+        private final double[] longitudes, latitudes, elevations;
+        private final Double distance;
+        private final Long time;
+
+        private CachedRoute(double[] longitudes, double[] latitudes, double[] elevations, Double distance, Long time) {
+            this.longitudes = longitudes;
+            this.latitudes = latitudes;
+            this.elevations = elevations;
+            this.distance = distance;
+            this.time = time;
+        }
+
+        CachedRoute(RoutingResult result) {
+            List<NavigationPosition> positions = result.getPositions();
+            longitudes = new double[positions.size()];
+            latitudes = new double[positions.size()];
+            elevations = new double[positions.size()];
+            for (int i = 0; i < positions.size(); i++) {
+                NavigationPosition position = positions.get(i);
+                longitudes[i] = position.getLongitude();
+                latitudes[i] = position.getLatitude();
+                elevations[i] = position.getElevation() != null ? position.getElevation() : NaN;
+            }
+            DistanceAndTime distanceAndTime = result.getDistanceAndTime();
+            distance = distanceAndTime != null ? distanceAndTime.getDistance() : null;
+            time = distanceAndTime != null ? distanceAndTime.getTime() : null;
+        }
+
+        RoutingResult toRoutingResult() {
+            List<NavigationPosition> positions = new ArrayList<>(longitudes.length);
+            for (int i = 0; i < longitudes.length; i++)
+                positions.add(new SimpleNavigationPosition(longitudes[i], latitudes[i], isNaN(elevations[i]) ? null : elevations[i], null));
+            return new RoutingResult(positions, new DistanceAndTime(distance, time), Valid);
+        }
+
+        String encode() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream outputStream = new DataOutputStream(bytes);
+            outputStream.writeDouble(distance != null ? distance : NaN);
+            outputStream.writeLong(time != null ? time : -1L);
+            outputStream.writeInt(longitudes.length);
+            for (int i = 0; i < longitudes.length; i++) {
+                outputStream.writeInt((int) round(longitudes[i] * COORDINATE_FACTOR));
+                outputStream.writeInt((int) round(latitudes[i] * COORDINATE_FACTOR));
+                outputStream.writeFloat((float) elevations[i]);
+            }
+            outputStream.flush();
+            return getEncoder().encodeToString(bytes.toByteArray());
+        }
+
+        static CachedRoute decode(String value) throws IOException {
+            DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(getDecoder().decode(value)));
+            double distance = inputStream.readDouble();
+            long time = inputStream.readLong();
+            int count = inputStream.readInt();
+            double[] longitudes = new double[count];
+            double[] latitudes = new double[count];
+            double[] elevations = new double[count];
+            for (int i = 0; i < count; i++) {
+                longitudes[i] = inputStream.readInt() / COORDINATE_FACTOR;
+                latitudes[i] = inputStream.readInt() / COORDINATE_FACTOR;
+                elevations[i] = inputStream.readFloat();
+            }
+            return new CachedRoute(longitudes, latitudes, elevations, isNaN(distance) ? null : distance, time != -1L ? time : null);
+        }
+    }
+}
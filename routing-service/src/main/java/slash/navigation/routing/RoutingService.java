@@ -40,12 +40,15 @@ public interface RoutingService {
     boolean isSupportAvoidFerries();
     boolean isSupportAvoidHighways();
     boolean isSupportAvoidTolls();
+    boolean isSupportParallelRouting();
     List<TravelMode> getAvailableTravelModes();
     TravelMode getPreferredTravelMode();
     String getPath();
     void setPath(String path);
+    String getRoutingDataVersion();
 
     RoutingResult getRouteBetween(NavigationPosition from, NavigationPosition to, TravelMode travelMode);
+    List<RoutingResult> getRouteVia(List<NavigationPosition> positions, TravelMode travelMode);
 
     DownloadFuture downloadRoutingDataFor(List<LongitudeAndLatitude> longitudeAndLatitudes);
     long calculateRemainingDownloadSize(List<BoundingBox> boundingBoxes);
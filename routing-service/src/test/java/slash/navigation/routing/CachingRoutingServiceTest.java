@@ -0,0 +1,234 @@
+/*
+    This file is part of RouteConverter.
+
+    RouteConverter is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    RouteConverter is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with RouteConverter; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+    Copyright (C) 2007 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.navigation.routing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import slash.common.io.PersistentLookupCache;
+import slash.navigation.common.DistanceAndTime;
+import slash.navigation.common.NavigationPosition;
+import slash.navigation.common.SimpleNavigationPosition;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.io.File.createTempFile;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import static slash.navigation.routing.RoutingResult.Validity.Invalid;
+import static slash.navigation.routing.RoutingResult.Validity.Valid;
+
+public class CachingRoutingServiceTest {
+    private static final TravelMode CAR = new TravelMode("Car");
+    private static final TravelMode BIKE = new TravelMode("Bike");
+
+    private File file;
+    private CountingRoutingService service = new CountingRoutingService();
+
+    @Before
+    public void setUp() throws IOException {
+        file = createTempFile("routes", ".cache");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        if (file.exists())
+            assertTrue(file.delete());
+    }
+
+    private static class CountingRoutingService extends Beeline {
+        private int count, viaCount;
+        private String version = "1", versionAfterRouting;
+        private RoutingResult.Validity validity = Valid;
+
+        public String getRoutingDataVersion() {
+            return version;
+        }
+
+        public RoutingResult getRouteBetween(NavigationPosition from, NavigationPosition to, TravelMode travelMode) {
+            count++;
+            if (versionAfterRouting != null)
+                version = versionAfterRouting;
+            NavigationPosition middle = new SimpleNavigationPosition((from.getLongitude() + to.getLongitude()) / 2,
+                    (from.getLatitude() + to.getLatitude()) / 2, 42.5, null);
+            return new RoutingResult(asList(new SimpleNavigationPosition(from.getLongitude(), from.getLatitude()), middle,
+                    new SimpleNavigationPosition(to.getLongitude(), to.getLatitude())), new DistanceAndTime(1000.0, 60L), validity);
+        }
+
+        public List<RoutingResult> getRouteVia(List<NavigationPosition> positions, TravelMode travelMode) {
+            viaCount++;
+            return super.getRouteVia(positions, travelMode);
+        }
+    }
+
+    private List<NavigationPosition> createWaypoints(int count) {
+        List<NavigationPosition> result = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            result.add(new SimpleNavigationPosition(10.0 + i * 0.01, 53.0 + (i % 2) * 0.01));
+        return result;
+    }
+
+    private void routeLegs(RoutingService routingService, List<NavigationPosition> waypoints) {
+        for (int i = 0; i < waypoints.size() - 1; i++) {
+            RoutingResult result = routingService.getRouteBetween(waypoints.get(i), waypoints.get(i + 1), CAR);
+            assertEquals(Valid, result.getValidity());
+            assertEquals(3, result.getPositions().size());
+        }
+    }
+
+    @Test
+    public void testCachesRoute() {
+        CachingRoutingService caching = new CachingRoutingService(service, null);
+        NavigationPosition from = new SimpleNavigationPosition(10.0, 53.0);
+        NavigationPosition to = new SimpleNavigationPosition(10.1, 53.1);
+
+        RoutingResult first = caching.getRouteBetween(from, to, CAR);
+        RoutingResult second = caching.getRouteBetween(from, to, CAR);
+        assertEquals(1, service.count);
+        assertNotSame(first.getPositions().get(1), second.getPositions().get(1));
+        assertEquals(10.05, second.getPositions().get(1).getLongitude(), 0.0);
+        assertEquals(42.5, second.getPositions().get(1).getElevation(), 0.0);
+        assertNull(second.getPositions().get(0).getElevation());
+        assertEquals(1000.0, second.getDistanceAndTime().getDistance(), 0.0);
+        assertEquals(60L, second.getDistanceAndTime().getTime().longValue());
+
+        caching.getRouteBetween(new SimpleNavigationPosition(10.000001, 53.000001), to, CAR);
+        assertEquals(1, service.count);
+        caching.getRouteBetween(from, to, BIKE);
+        assertEquals(2, service.count);
+    }
+
+    @Test
+    public void testRecomputesOnlyChangedLegs() {
+        CachingRoutingService caching = new CachingRoutingService(service, null);
+        List<NavigationPosition> waypoints = createWaypoints(301);
+        routeLegs(caching, waypoints);
+        assertEquals(300, service.count);
+
+        waypoints.set(150, new SimpleNavigationPosition(11.5, 53.5));
+        routeLegs(caching, waypoints);
+        assertEquals(302, service.count);
+    }
+
+    @Test
+    public void testRoutesLegsViaPositions() {
+        CachingRoutingService caching = new CachingRoutingService(service, null);
+        List<NavigationPosition> waypoints = createWaypoints(11);
+        List<RoutingResult> results = caching.getRouteVia(waypoints, CAR);
+        assertEquals(10, results.size());
+        assertEquals(1, service.viaCount);
+        assertEquals(10, service.count);
+
+        waypoints.set(5, new SimpleNavigationPosition(11.5, 53.5));
+        waypoints.set(8, new SimpleNavigationPosition(11.8, 53.8));
+        results = caching.getRouteVia(waypoints, CAR);
+        assertEquals(10, results.size());
+        assertEquals(3, service.viaCount);
+        assertEquals(14, service.count);
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(Valid, results.get(i).getValidity());
+            assertEquals(waypoints.get(i + 1).getLongitude(), results.get(i).getPositions().get(2).getLongitude(), 0.0);
+        }
+
+        caching.getRouteVia(waypoints, CAR);
+        assertEquals(3, service.viaCount);
+        assertEquals(14, service.count);
+    }
+
+    @Test
+    public void testInvalidatesWithNewRoutingData() {
+        CachingRoutingService caching = new CachingRoutingService(service, null);
+        List<NavigationPosition> waypoints = createWaypoints(3);
+        routeLegs(caching, waypoints);
+        assertEquals(2, service.count);
+
+        service.version = "2";
+        routeLegs(caching, waypoints);
+        assertEquals(4, service.count);
+    }
+
+    @Test
+    public void testDoesNotCacheWithoutRoutingDataVersion() {
+        CachingRoutingService caching = new CachingRoutingService(service, null);
+        service.version = null;
+        List<NavigationPosition> waypoints = createWaypoints(3);
+        routeLegs(caching, waypoints);
+        routeLegs(caching, waypoints);
+        assertEquals(4, service.count);
+    }
+
+    @Test
+    public void testDoesNotCacheWhileRoutingDataChanges() {
+        CachingRoutingService caching = new CachingRoutingService(service, null);
+        NavigationPosition from = new SimpleNavigationPosition(10.0, 53.0);
+        NavigationPosition to = new SimpleNavigationPosition(10.1, 53.1);
+        service.version = null;
+        service.versionAfterRouting = "2";
+        caching.getRouteBetween(from, to, CAR);
+        service.versionAfterRouting = "3";
+        caching.getRouteVia(createWaypoints(3), CAR);
+        service.versionAfterRouting = "4";
+        caching.getRouteBetween(from, to, CAR);
+        assertEquals(4, service.count);
+
+        service.versionAfterRouting = null;
+        caching.getRouteBetween(from, to, CAR);
+        caching.getRouteBetween(from, to, CAR);
+        assertEquals(5, service.count);
+    }
+
+    @Test
+    public void testDoesNotCacheInvalidRoutes() {
+        CachingRoutingService caching = new CachingRoutingService(service, null);
+        service.validity = Invalid;
+        NavigationPosition from = new SimpleNavigationPosition(10.0, 53.0);
+        NavigationPosition to = new SimpleNavigationPosition(10.1, 53.1);
+        assertEquals(Invalid, caching.getRouteBetween(from, to, CAR).getValidity());
+        assertEquals(Invalid, caching.getRouteBetween(from, to, CAR).getValidity());
+        assertEquals(2, service.count);
+    }
+
+    @Test
+    public void testPersistsRoutes() {
+        PersistentLookupCache cache = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+        List<NavigationPosition> waypoints = createWaypoints(11);
+        routeLegs(new CachingRoutingService(service, cache), waypoints);
+        cache.close();
+        assertEquals(10, service.count);
+
+        PersistentLookupCache reloaded = new PersistentLookupCache(file, 60 * 1000, 1024 * 1024);
+        CachingRoutingService caching = new CachingRoutingService(service, reloaded);
+        routeLegs(caching, waypoints);
+        assertEquals(10, service.count);
+
+        RoutingResult result = caching.getRouteBetween(waypoints.get(0), waypoints.get(1), CAR);
+        assertEquals(10.005, result.getPositions().get(1).getLongitude(), 0.0000001);
+        assertEquals(53.005, result.getPositions().get(1).getLatitude(), 0.0000001);
+        assertEquals(42.5, result.getPositions().get(1).getElevation(), 0.0);
+        assertNull(result.getPositions().get(2).getElevation());
+        assertEquals(1000.0, result.getDistanceAndTime().getDistance(), 0.0);
+        reloaded.close();
+    }
+}